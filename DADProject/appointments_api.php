@@ -1,6 +1,20 @@
 <?php
 include 'config.php';
 
+// change tracking for GET /changes (see getAppointmentChanges)
+const SYNC_OVERLAP_MS = 2000;
+const TOMBSTONE_RETENTION_DAYS = 30;
+// bookable day for GET /slots; the doctor_slot key holds one appointment per slot
+const SLOT_MINUTES = 30;
+const DAY_START = '08:00';
+const DAY_END = '20:00';
+const SLOT_TAKEN = 'The doctor already has an appointment at that time';
+// how far ahead PUT /allocate looks for a free slot, by default and at most
+const ALLOCATE_DAYS = 60;
+const MAX_ALLOCATE_DAYS = 366;
+// booking by specialization picks the doctor with the fewest booked slots over this many days
+const BALANCE_DAYS = 14;
+
 $method = $_SERVER['REQUEST_METHOD'];
 $request = isset($_SERVER['PATH_INFO']) ? explode('/', trim($_SERVER['PATH_INFO'], '/')) : [];
 error_log("== appointments_api.php hit ==");
@@ -12,8 +26,14 @@ switch($method) {
     case 'GET':
         if(isset($request[0]) && is_numeric($request[0])) {
             getAppointment($pdo, $request[0]);
+        } elseif (isset($request[0]) && $request[0] === 'changes') {
+            getAppointmentChanges($pdo, $_GET);
+        } elseif (isset($request[0]) && $request[0] === 'slots') {
+            getAppointmentSlots($pdo, $_GET);
+        } elseif (isset($request[0]) && $request[0] === 'availability') {
+            getAppointmentAvailability($pdo, $_GET);
         } else {
-            getAllAppointments($pdo);
+            getAllAppointments($pdo, $_GET);
         }
         break;
     case 'POST':
@@ -22,6 +42,15 @@ switch($method) {
     case 'PUT':
         if(isset($request[0]) && is_numeric($request[0])) {
             updateAppointment($pdo, $request[0]);
+        } elseif (isset($request[0]) && $request[0] === 'status') {
+            updateAppointmentStatuses($pdo, $raw);
+        } elseif (isset($request[0]) && $request[0] === 'allocate') {
+            allocateAppointmentSlots($pdo, $raw);
+        }
+        break;
+    case 'PATCH':
+        if(isset($request[0]) && is_numeric($request[0])) {
+            patchAppointment($pdo, $request[0], $raw);
         }
         break;
     case 'DELETE':
@@ -30,6 +59,106 @@ switch($method) {
         }
         break;
 }
+
+// true when a write was refused by the doctor_slot unique key; a missing
+// patient or doctor (1452) or any other duplicate is not a double booking
+function isSlotTaken($e) {
+    return $e instanceof PDOException && isset($e->errorInfo[1]) && $e->errorInfo[1] == 1062
+        && strpos($e->getMessage(), 'doctor_slot') !== false;
+}
+
+// reply body for a failed write: 409 with reason "slot" when the slot was
+// taken (the status is set here), the driver's message otherwise
+function writeFailure($e) {
+    if (!isSlotTaken($e)) return ['success' => false, 'error' => $e->getMessage()];
+    http_response_code(409);
+    return ['success' => false, 'error' => SLOT_TAKEN, 'reason' => 'slot'];
+}
+
+function slotTime($index) {
+    $minutes = $index * SLOT_MINUTES;
+    return sprintf('%02d:%02d', intdiv($minutes, 60), $minutes % 60);
+}
+
+function slotIndex($time) {
+    $parts = explode(':', $time);
+    return intdiv((int)$parts[0] * 60 + (int)($parts[1] ?? 0), SLOT_MINUTES);
+}
+
+// bitmask of the slots inside working hours
+function workingMask() {
+    $mask = 0;
+    for ($i = slotIndex(DAY_START); $i < slotIndex(DAY_END); $i++) {
+        $mask |= 1 << $i;
+    }
+    return $mask;
+}
+
+// GET /slots?doctor_id=&date=: the doctor's free and booked slots that day
+// within working hours, as "HH:mm" start times.
+function getAppointmentSlots($pdo, $query) {
+    if (!isset($query['doctor_id']) || !is_numeric($query['doctor_id']) || empty($query['date'])) {
+        http_response_code(400);
+        echo json_encode(['success' => false, 'error' => 'doctor_id and date are required']);
+        return;
+    }
+    $stmt = $pdo->prepare("SELECT appointment_time FROM appointments
+                           WHERE doctor_id = ? AND appointment_date = ? AND appointment_time IS NOT NULL
+                             AND (status IS NULL OR status <> 'cancelled')");
+    $stmt->execute([(int)$query['doctor_id'], $query['date']]);
+    $taken = [];
+    foreach ($stmt->fetchAll(PDO::FETCH_COLUMN) as $time) {
+        $taken[slotIndex($time)] = true;
+    }
+    ksort($taken);
+
+    $free = [];
+    for ($i = slotIndex(DAY_START); $i < slotIndex(DAY_END); $i++) {
+        if (!isset($taken[$i])) $free[] = slotTime($i);
+    }
+    echo json_encode([
+        'success'      => true,
+        'doctor_id'    => (int)$query['doctor_id'],
+        'date'         => $query['date'],
+        'slot_minutes' => SLOT_MINUTES,
+        'free'         => $free,
+        'booked'       => array_map('slotTime', array_keys($taken))
+    ]);
+}
+
+// GET /availability?doctor_id=&month=yyyy-mm: the doctor's month in one
+// reply. "days" holds one bitmask per day of the month, bit i set when the
+// slot starting i * SLOT_MINUTES after midnight is booked; "working" is the
+// mask of bookable slots, so a day is full when (day & working) == working.
+function getAppointmentAvailability($pdo, $query) {
+    if (!isset($query['doctor_id']) || !is_numeric($query['doctor_id'])
+            || empty($query['month']) || !preg_match('/^(\d{4})-(\d{2})$/', $query['month'], $m)
+            || !checkdate((int)$m[2], 1, (int)$m[1])) {
+        http_response_code(400);
+        echo json_encode(['success' => false, 'error' => 'doctor_id and month (yyyy-mm) are required']);
+        return;
+    }
+    $first = $query['month'] . '-01';
+    $length = (int)date('t', strtotime($first));
+    $stmt = $pdo->prepare("SELECT DAY(appointment_date), appointment_time FROM appointments
+                           WHERE doctor_id = ? AND appointment_date BETWEEN ? AND LAST_DAY(?)
+                             AND appointment_time IS NOT NULL AND (status IS NULL OR status <> 'cancelled')");
+    $stmt->execute([(int)$query['doctor_id'], $first, $first]);
+    $days = array_fill(0, $length, 0);
+    foreach ($stmt->fetchAll(PDO::FETCH_NUM) as [$day, $time]) {
+        $days[$day - 1] |= 1 << slotIndex($time);
+    }
+    $working = workingMask();
+    echo json_encode([
+        'success'      => true,
+        'doctor_id'    => (int)$query['doctor_id'],
+        'month'        => $query['month'],
+        'slot_minutes' => SLOT_MINUTES,
+        'working'      => $working,
+        'days'         => $days
+    ]);
+}
+
 function getAppointment($pdo, $id) {
     $sql = "SELECT a.*, 
                    CONCAT(p.first_name, ' ', p.last_name) as patient_name,
@@ -48,31 +177,165 @@ function getAppointment($pdo, $id) {
 }
 
 
-function getAllAppointments($pdo) {
+// Optional filters: doctor_id, patient_id, status, date_from, date_to
+// (inclusive, on appointment_date) plus limit/offset paging, or keyset
+// paging with after_date/after_time/after_id (sort key of the last row seen).
+// With no parameters this still returns every appointment.
+function getAllAppointments($pdo, $query = []) {
+    // rows carry patient and doctor names, so those tables count too
+    if (notModified(tableVersionETag($pdo, ['appointments', 'doctors', 'patients']))) return;
+    $where  = [];
+    $params = [];
+
+    if (isset($query['doctor_id']) && is_numeric($query['doctor_id'])) {
+        $where[] = 'a.doctor_id = ?';
+        $params[] = (int)$query['doctor_id'];
+    }
+    if (isset($query['patient_id']) && is_numeric($query['patient_id'])) {
+        $where[] = 'a.patient_id = ?';
+        $params[] = (int)$query['patient_id'];
+    }
+    if (!empty($query['status'])) {
+        $where[] = 'a.status = ?';
+        $params[] = $query['status'];
+    }
+    if (!empty($query['date_from'])) {
+        $where[] = 'a.appointment_date >= ?';
+        $params[] = $query['date_from'];
+    }
+    if (!empty($query['date_to'])) {
+        $where[] = 'a.appointment_date <= ?';
+        $params[] = $query['date_to'];
+    }
+    if (isset($query['after_id']) && is_numeric($query['after_id'])) {
+        $where[] = appointmentKeyset($query, $params);
+    }
+
     $sql = "SELECT a.*, 
                    CONCAT(p.first_name, ' ', p.last_name) as patient_name,
                    CONCAT(d.first_name, ' ', d.last_name) as doctor_name,
                    d.specialization
             FROM appointments a
             JOIN patients p ON a.patient_id = p.patient_id
-            JOIN doctors d ON a.doctor_id = d.doctor_id
-            ORDER BY a.appointment_date, a.appointment_time";
-    
-    $stmt = $pdo->query($sql);
+            JOIN doctors d ON a.doctor_id = d.doctor_id";
+    if ($where) {
+        $sql .= " WHERE " . implode(' AND ', $where);
+    }
+    $sql .= " ORDER BY a.appointment_date, a.appointment_time, a.appointment_id";
+
+    // LIMIT/OFFSET are inlined as ints: emulated prepares would quote them
+    if (isset($query['limit']) && is_numeric($query['limit'])) {
+        $limit  = max(1, min((int)$query['limit'], 1000));
+        $offset = isset($query['offset']) && is_numeric($query['offset']) ? max(0, (int)$query['offset']) : 0;
+        $sql .= " LIMIT $limit OFFSET $offset";
+    }
+
+    $stmt = $pdo->prepare($sql);
+    $stmt->execute($params);
     $appointments = $stmt->fetchAll(PDO::FETCH_ASSOC);
     echo json_encode($appointments);
 }
 
+// Rows after the cursor in (appointment_date, appointment_time, appointment_id)
+// order. MySQL sorts NULL first, so an empty cursor date/time means every
+// non-NULL value comes after it.
+function appointmentKeyset($query, &$params) {
+    $afterDate = !empty($query['after_date']) ? $query['after_date'] : null;
+    $afterTime = !empty($query['after_time']) ? $query['after_time'] : null;
+    $afterId   = (int)$query['after_id'];
+
+    if ($afterTime === null) {
+        $timePart = "(a.appointment_time IS NOT NULL OR (a.appointment_time IS NULL AND a.appointment_id > ?))";
+    } else {
+        $timePart = "(a.appointment_time > ? OR (a.appointment_time = ? AND a.appointment_id > ?))";
+    }
+
+    if ($afterDate === null) {
+        $cond = "(a.appointment_date IS NOT NULL OR (a.appointment_date IS NULL AND $timePart))";
+    } else {
+        $cond = "(a.appointment_date > ? OR (a.appointment_date = ? AND $timePart))";
+        $params[] = $afterDate;
+        $params[] = $afterDate;
+    }
+    if ($afterTime !== null) {
+        $params[] = $afterTime;
+        $params[] = $afterTime;
+    }
+    $params[] = $afterId;
+    return $cond;
+}
+
+// GET /changes?since=<token>: appointments written since the token, ids
+// deleted since then (from appointment_tombstones) and the next token.
+// Without since only the current token is returned. Rows from the last
+// two seconds before the token are sent again so a write that committed
+// late is not missed; a token older than the tombstone retention gets
+// reset=true and the client reloads everything. The token is read the same
+// way as AppointmentsHandler.SQL_NOW, inside the transaction of the reads.
+function getAppointmentChanges($pdo, $query = []) {
+    if (isset($query['since']) && !is_numeric($query['since'])) {
+        http_response_code(400);
+        echo json_encode(["success" => false, "error" => "Invalid since: " . $query['since']]);
+        return;
+    }
+    $pdo->beginTransaction();
+    $now = (int)$pdo->query("SELECT FLOOR(UNIX_TIMESTAMP(NOW(3)) * 1000.0)")->fetchColumn();
+    $result = ["success" => true, "token" => $now, "reset" => false];
+
+    if (!isset($query['since'])) {
+        $pdo->commit();
+        echo json_encode($result);
+        return;
+    }
+    $since = (int)$query['since'];
+    if ($since < $now - TOMBSTONE_RETENTION_DAYS * 86400000) {
+        $pdo->commit();
+        $result['reset'] = true;
+        echo json_encode($result);
+        return;
+    }
+
+    $from = $since - SYNC_OVERLAP_MS;
+    $stmt = $pdo->prepare("SELECT a.*,
+                   CONCAT(p.first_name, ' ', p.last_name) as patient_name,
+                   CONCAT(d.first_name, ' ', d.last_name) as doctor_name,
+                   d.specialization
+            FROM appointments a
+            JOIN patients p ON a.patient_id = p.patient_id
+            JOIN doctors d ON a.doctor_id = d.doctor_id
+            WHERE a.updated_at >= FROM_UNIXTIME(? / 1000.0)");
+    $stmt->execute([$from]);
+    $result['appointments'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+
+    $stmt = $pdo->prepare("SELECT appointment_id, doctor_id FROM appointment_tombstones
+                           WHERE deleted_at >= FROM_UNIXTIME(? / 1000.0)");
+    $stmt->execute([$from]);
+    $result['deleted'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+    $pdo->commit();
+
+    echo json_encode($result);
+}
+
+// Deleting leaves a tombstone for /changes in the same transaction.
 function deleteAppointment($pdo, $id) {
-    $stmt = $pdo->prepare("DELETE FROM appointments WHERE appointment_id = ?");
-    
     try {
+        $pdo->beginTransaction();
+        $pdo->exec("DELETE FROM appointment_tombstones
+                    WHERE deleted_at < NOW() - INTERVAL " . TOMBSTONE_RETENTION_DAYS . " DAY");
+        $stmt = $pdo->prepare("INSERT INTO appointment_tombstones (appointment_id, doctor_id)
+                               SELECT appointment_id, doctor_id FROM appointments WHERE appointment_id = ?");
+        $stmt->execute([$id]);
+        $stmt = $pdo->prepare("DELETE FROM appointments WHERE appointment_id = ?");
         $stmt->execute([$id]);
+        $pdo->commit();
         echo json_encode([
             "success" => true,
             "message" => "Appointment deleted successfully"
         ]);
     } catch(Exception $e) {
+        if ($pdo->inTransaction()) {
+            $pdo->rollBack();
+        }
         echo json_encode(["error" => $e->getMessage()]);
     }
 }
@@ -101,7 +364,11 @@ function createAppointment($pdo) {
     $appointmentTime = $data['appointmentTime'] ?? null;
     $notes           = $data['notes']           ?? null;
 
-    // 3. validate required fields
+    // 3. validate required fields; a specialization lets the server pick the doctor
+    if ($patientId && !$doctorId && !empty($data['specialization'])) {
+        createBySpecialization($pdo, $data);
+        return;
+    }
     if (!$patientId || !$doctorId) {
         echo json_encode([
             'success' => false,
@@ -136,6 +403,11 @@ function createAppointment($pdo) {
         ]);
 
     } catch (Exception $e) {
+        if (isSlotTaken($e)) {
+            http_response_code(409);
+            echo json_encode(['success' => false, 'error' => SLOT_TAKEN, 'reason' => 'slot']);
+            return;
+        }
         // return the exception message as JSON
         echo json_encode([
             'success' => false,
@@ -145,6 +417,353 @@ function createAppointment($pdo) {
 }
 
 
+// Booked slots of the given doctors from $from on: doctor id -> date -> bitmask.
+function bookedMasks($pdo, $doctors, $from) {
+    $busy = [];
+    if (!$doctors) return $busy;
+    $in = implode(',', array_fill(0, count($doctors), '?'));
+    $stmt = $pdo->prepare("SELECT doctor_id, appointment_date, appointment_time FROM appointments
+                           WHERE doctor_id IN ($in) AND appointment_date >= ? AND appointment_time IS NOT NULL
+                             AND (status IS NULL OR status <> 'cancelled')");
+    $stmt->execute(array_merge($doctors, [$from]));
+    foreach ($stmt->fetchAll(PDO::FETCH_NUM) as [$doctor, $date, $time]) {
+        $busy[$doctor][$date] = ($busy[$doctor][$date] ?? 0) | 1 << slotIndex($time);
+    }
+    return $busy;
+}
+
+// Earliest [date, slot] within working hours that is free in $busy
+// (date -> bitmask), searching $days days from $from; today only counts
+// slots still ahead. Null when there is none.
+function earliestFreeSlot($busy, $from, $days) {
+    $today = date('Y-m-d');
+    $next = intdiv((int)date('G') * 60 + (int)date('i') + SLOT_MINUTES - 1, SLOT_MINUTES);
+    $laterToday = $next >= intdiv(24 * 60, SLOT_MINUTES) ? 0 : -1 << $next;
+    $working = workingMask();
+    for ($d = 0; $d < $days; $d++) {
+        $date = date('Y-m-d', strtotime("$from +$d day"));
+        $free = $working & ~($busy[$date] ?? 0);
+        if ($date === $today) $free &= $laterToday;
+        if ($free) {
+            // lowest set bit = earliest free slot
+            $index = 0;
+            while (!($free >> $index & 1)) $index++;
+            return [$date, $index];
+        }
+    }
+    return null;
+}
+
+// POST with "specialization" instead of "doctorId": the appointment goes to
+// the doctor of that specialization with the fewest booked slots over the
+// next BALANCE_DAYS days, summed from the per-day counts the triggers of
+// migrations/006 keep in doctor_day_load. With a date and time only doctors free then are tried; without, the
+// chosen doctor's earliest free slot is booked so the next booking already
+// sees the added load.
+function createBySpecialization($pdo, $data) {
+    $stmt = $pdo->prepare("SELECT d.doctor_id FROM doctors d
+                           LEFT JOIN doctor_day_load l ON l.doctor_id = d.doctor_id AND l.appointment_date BETWEEN ? AND ?
+                           WHERE d.specialization = ?
+                           GROUP BY d.doctor_id
+                           ORDER BY COALESCE(SUM(l.booked), 0), d.doctor_id");
+    $stmt->execute([date('Y-m-d'), date('Y-m-d', strtotime('+' . (BALANCE_DAYS - 1) . ' day')),
+                    trim($data['specialization'])]);
+    $doctors = array_map('intval', $stmt->fetchAll(PDO::FETCH_COLUMN));
+    if (!$doctors) {
+        http_response_code(400);
+        echo json_encode(['success' => false, 'error' => 'No doctor with specialization ' . $data['specialization']]);
+        return;
+    }
+    $date = $data['appointmentDate'] ?? null;
+    $time = $data['appointmentTime'] ?? null;
+    $fixed = $date && $time;
+    $today = date('Y-m-d');
+    $busy = $fixed ? [] : bookedMasks($pdo, $doctors, $today);
+
+    $insert = $pdo->prepare("INSERT INTO appointments
+                               (patient_id, doctor_id, appointment_date, appointment_time, notes, status)
+                             VALUES (?, ?, ?, ?, ?, 'scheduled')");
+    foreach ($doctors as $doctor) {
+        $slotDate = $date;
+        $slotTime = $time;
+        if (!$fixed) {
+            $slot = earliestFreeSlot($busy[$doctor] ?? [], $today, ALLOCATE_DAYS);
+            if ($slot === null) continue;
+            $slotDate = $slot[0];
+            $slotTime = slotTime($slot[1]);
+        }
+        try {
+            $insert->execute([$data['patientId'], $doctor, $slotDate, $slotTime, $data['notes'] ?? null]);
+        } catch (PDOException $e) {
+            if (isSlotTaken($e)) continue;
+            echo json_encode(['success' => false, 'error' => $e->getMessage()]);
+            return;
+        }
+        echo json_encode([
+            'success'          => true,
+            'appointment_id'   => $pdo->lastInsertId(),
+            'doctor_id'        => $doctor,
+            'appointment_date' => $slotDate,
+            'appointment_time' => $slotTime,
+            'message'          => 'Appointment created successfully'
+        ]);
+        return;
+    }
+    if ($fixed) {
+        http_response_code(409);
+        echo json_encode([
+            'success' => false,
+            'error'   => 'No ' . $data['specialization'] . ' doctor is free at that time',
+            'reason'  => 'slot'
+        ]);
+        return;
+    }
+    // nobody has a free slot in the search window: leave it pending with the least loaded doctor
+    $insert->execute([$data['patientId'], $doctors[0], $date, null, $data['notes'] ?? null]);
+    echo json_encode([
+        'success'        => true,
+        'appointment_id' => $pdo->lastInsertId(),
+        'doctor_id'      => $doctors[0],
+        'message'        => 'Appointment created successfully'
+    ]);
+}
+
+// PUT /allocate: gives pending requests (scheduled, no date or time yet) the
+// earliest free slot of their doctor within working hours, oldest request
+// first. The body picks them: "ids", or all pending of a "doctorId" or of a
+// "specialization". Optional "from" (yyyy-mm-dd, default today; today only
+// counts slots still ahead) and "days" bound the search. The doctors'
+// bookings are read once as a bitmask per day, so each request costs a few
+// array lookups; a row the doctor_slot key still refuses stays pending.
+function allocateAppointmentSlots($pdo, $raw) {
+    $data = json_decode($raw, true);
+    if (!is_array($data)) {
+        http_response_code(400);
+        echo json_encode(['success' => false, 'error' => 'Invalid JSON']);
+        return;
+    }
+    $sql = "SELECT a.appointment_id, a.doctor_id, a.appointment_date FROM appointments a
+            JOIN doctors d ON a.doctor_id = d.doctor_id
+            WHERE a.status = 'scheduled' AND (a.appointment_date IS NULL OR a.appointment_time IS NULL)";
+    if (!empty($data['ids']) && is_array($data['ids'])) {
+        if (count($data['ids']) > 1000) {
+            http_response_code(400);
+            echo json_encode(['success' => false, 'error' => 'At most 1000 ids per request']);
+            return;
+        }
+        $params = array_values(array_unique(array_map('intval', $data['ids'])));
+        $sql .= ' AND a.appointment_id IN (' . implode(',', array_fill(0, count($params), '?')) . ')';
+    } elseif (isset($data['doctorId'])) {
+        $params = [(int)$data['doctorId']];
+        $sql .= ' AND a.doctor_id = ?';
+    } elseif (isset($data['specialization'])) {
+        $params = [$data['specialization']];
+        $sql .= ' AND d.specialization = ?';
+    } else {
+        http_response_code(400);
+        echo json_encode(['success' => false, 'error' => 'Expected ids, doctorId or specialization']);
+        return;
+    }
+    $sql .= ' ORDER BY a.created_at, a.appointment_id';
+
+    $today = date('Y-m-d');
+    $from = $data['from'] ?? $today;
+    if (!DateTime::createFromFormat('!Y-m-d', $from)) {
+        http_response_code(400);
+        echo json_encode(['success' => false, 'error' => 'Invalid from: ' . $from]);
+        return;
+    }
+    if ($from < $today) $from = $today;
+    $days = max(1, min((int)($data['days'] ?? ALLOCATE_DAYS), MAX_ALLOCATE_DAYS));
+
+    $assigned = [];
+    $unassigned = [];
+    try {
+        $pdo->beginTransaction();
+        $stmt = $pdo->prepare($sql);
+        $stmt->execute($params);
+        $pending = $stmt->fetchAll(PDO::FETCH_ASSOC);
+
+        $busy = bookedMasks($pdo, array_values(array_unique(array_column($pending, 'doctor_id'))), $from);
+
+        $assign = $pdo->prepare("UPDATE appointments SET appointment_date = ?, appointment_time = ?, version = version + 1
+                                 WHERE appointment_id = ? AND status = 'scheduled'
+                                   AND (appointment_date IS NULL OR appointment_time IS NULL)");
+        foreach ($pending as $row) {
+            $doctor = $row['doctor_id'];
+            $start = $row['appointment_date'] !== null && $row['appointment_date'] > $from ? $row['appointment_date'] : $from;
+            $slot = earliestFreeSlot($busy[$doctor] ?? [], $start, $days);
+            if ($slot === null) {
+                $unassigned[] = (int)$row['appointment_id'];
+                continue;
+            }
+            [$date, $index] = $slot;
+            try {
+                $assign->execute([$date, slotTime($index), $row['appointment_id']]);
+                $written = $assign->rowCount() === 1;
+            } catch (PDOException $e) {
+                if (!isSlotTaken($e)) throw $e;
+                $written = false;
+            }
+            if (!$written) {
+                $unassigned[] = (int)$row['appointment_id'];
+                continue;
+            }
+            $busy[$doctor][$date] = ($busy[$doctor][$date] ?? 0) | 1 << $index;
+            $assigned[] = [
+                'appointment_id'   => (int)$row['appointment_id'],
+                'doctor_id'        => (int)$doctor,
+                'appointment_date' => $date,
+                'appointment_time' => slotTime($index)
+            ];
+        }
+        $pdo->commit();
+    } catch (Exception $e) {
+        if ($pdo->inTransaction()) $pdo->rollBack();
+        echo json_encode(['success' => false, 'error' => $e->getMessage()]);
+        return;
+    }
+    echo json_encode([
+        'success'    => true,
+        'assigned'   => $assigned,
+        'unassigned' => $unassigned,
+        'message'    => count($assigned) . ' appointment(s) scheduled, ' . count($unassigned) . ' left pending'
+    ]);
+}
+
+
+// PUT /status with {"ids":[...],"status":"completed","notes":"..."}: moves
+// every listed appointment to the new status in one transaction. Notes are
+// only replaced when given; ids that do not exist come back in "missing".
+function updateAppointmentStatuses($pdo, $raw) {
+    $data   = json_decode($raw, true);
+    $ids    = $data['ids'] ?? null;
+    $status = $data['status'] ?? null;
+
+    if (!is_array($ids) || count($ids) === 0 || count($ids) > 1000) {
+        http_response_code(400);
+        echo json_encode(['success' => false, 'error' => 'Expected 1 to 1000 ids']);
+        return;
+    }
+    if (!in_array($status, ['scheduled', 'completed', 'cancelled'], true)) {
+        http_response_code(400);
+        echo json_encode(['success' => false, 'error' => 'Invalid status: ' . $status]);
+        return;
+    }
+    $ids = array_values(array_unique(array_map('intval', $ids)));
+    $in  = implode(',', array_fill(0, count($ids), '?'));
+
+    try {
+        $pdo->beginTransaction();
+        $stmt = $pdo->prepare("SELECT appointment_id FROM appointments WHERE appointment_id IN ($in) FOR UPDATE");
+        $stmt->execute($ids);
+        $found = array_map('intval', $stmt->fetchAll(PDO::FETCH_COLUMN));
+
+        $stmt = $pdo->prepare("UPDATE appointments SET status = ?, notes = COALESCE(?, notes),
+                               version = version + 1 WHERE appointment_id IN ($in)");
+        $stmt->execute(array_merge([$status, $data['notes'] ?? null], $ids));
+        $pdo->commit();
+
+        echo json_encode([
+            'success' => true,
+            'updated' => count($found),
+            'missing' => array_values(array_diff($ids, $found)),
+            'message' => count($found) . " appointment(s) set to $status"
+        ]);
+    } catch (Exception $e) {
+        if ($pdo->inTransaction()) $pdo->rollBack();
+        echo json_encode(writeFailure($e));
+    }
+}
+
+
+// PATCH /{id}: updates only the fields present in the body with a single
+// UPDATE. With "expectedVersion" the row only changes if its version still
+// matches; otherwise 409 with the current version, so concurrent edits are
+// detected instead of overwritten.
+function patchAppointment($pdo, $id, $raw) {
+    $columns = [
+        'patientId'       => 'patient_id',
+        'doctorId'        => 'doctor_id',
+        'appointmentDate' => 'appointment_date',
+        'appointmentTime' => 'appointment_time',
+        'status'          => 'status',
+        'notes'           => 'notes'
+    ];
+    $data = json_decode($raw, true);
+    if (!is_array($data)) {
+        http_response_code(400);
+        echo json_encode(['success' => false, 'error' => 'Invalid JSON']);
+        return;
+    }
+
+    $sets = [];
+    $params = [];
+    foreach ($data as $key => $value) {
+        if ($key === 'expectedVersion') continue;
+        if (!isset($columns[$key])) {
+            http_response_code(400);
+            echo json_encode(['success' => false, 'error' => "Unknown field: $key"]);
+            return;
+        }
+        $sets[] = $columns[$key] . ' = ?';
+        $params[] = $value;
+    }
+    if (!$sets) {
+        http_response_code(400);
+        echo json_encode(['success' => false, 'error' => 'Nothing to update']);
+        return;
+    }
+    if (isset($data['status']) && !in_array($data['status'], ['scheduled', 'completed', 'cancelled'], true)) {
+        http_response_code(400);
+        echo json_encode(['success' => false, 'error' => 'Invalid status: ' . $data['status']]);
+        return;
+    }
+
+    $sql = 'UPDATE appointments SET ' . implode(', ', $sets) . ', version = version + 1 WHERE appointment_id = ?';
+    $params[] = $id;
+    if (isset($data['expectedVersion'])) {
+        $sql .= ' AND version = ?';
+        $params[] = (int)$data['expectedVersion'];
+    }
+
+    try {
+        $pdo->beginTransaction();
+        $stmt = $pdo->prepare($sql);
+        $stmt->execute($params);
+        $changed = $stmt->rowCount();
+
+        $stmt = $pdo->prepare('SELECT version FROM appointments WHERE appointment_id = ?');
+        $stmt->execute([$id]);
+        $current = $stmt->fetchColumn();
+        $pdo->commit();
+    } catch (Exception $e) {
+        if ($pdo->inTransaction()) $pdo->rollBack();
+        echo json_encode(writeFailure($e));
+        return;
+    }
+
+    if ($current === false) {
+        http_response_code(404);
+        echo json_encode(['success' => false, 'error' => 'Appointment not found']);
+    } elseif ($changed === 0) {
+        http_response_code(409);
+        echo json_encode([
+            'success' => false,
+            'error'   => 'Appointment was modified by someone else',
+            'reason'  => 'version',
+            'version' => (int)$current
+        ]);
+    } else {
+        echo json_encode([
+            'success' => true,
+            'version' => (int)$current,
+            'message' => 'Appointment updated successfully'
+        ]);
+    }
+}
+
+
 function updateAppointment($pdo, $id) {
     // 1. grab and decode
     $raw  = file_get_contents('php://input');
@@ -183,7 +802,8 @@ function updateAppointment($pdo, $id) {
              appointment_date= ?,
              appointment_time= ?,
              status          = ?,
-             notes           = ?
+             notes           = ?,
+             version         = version + 1
        WHERE appointment_id = ?
     ");
     try {
@@ -201,6 +821,11 @@ function updateAppointment($pdo, $id) {
           'message' => 'Appointment updated successfully'
         ]);
     } catch (Exception $e) {
+        if (isSlotTaken($e)) {
+            http_response_code(409);
+            echo json_encode(['success' => false, 'error' => SLOT_TAKEN, 'reason' => 'slot']);
+            return;
+        }
         echo json_encode([
           'success' => false,
           'error'   => $e->getMessage()
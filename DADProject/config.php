@@ -1,7 +1,9 @@
 <?php
+// gzip every reply when the client accepts it (ob_gzhandler checks Accept-Encoding)
+ob_start('ob_gzhandler');
 header('Content-Type: application/json');
 header('Access-Control-Allow-Origin: *');
-header('Access-Control-Allow-Methods: GET, POST, PUT, DELETE');
+header('Access-Control-Allow-Methods: GET, POST, PUT, PATCH, DELETE');
 header('Access-Control-Allow-Headers: Content-Type');
 
 $servername = "127.0.0.1";
@@ -16,4 +18,35 @@ try {
     echo json_encode(["error" => "Connection failed: " . $e->getMessage()]);
     exit();
 }
+
+// Weak ETag for a list read from $tables, built from their counters in
+// table_versions (bumped by trigger on every write, see
+// migrations/003_table_versions.sql). Null when the table is missing.
+function tableVersionETag($pdo, array $tables) {
+    sort($tables);
+    $in = implode(',', array_fill(0, count($tables), '?'));
+    try {
+        $stmt = $pdo->prepare("SELECT version FROM table_versions WHERE table_name IN ($in) ORDER BY table_name");
+        $stmt->execute($tables);
+        $versions = $stmt->fetchAll(PDO::FETCH_COLUMN);
+    } catch (PDOException $e) {
+        return null;
+    }
+    return count($versions) === count($tables) ? 'W/"' . implode('.', $versions) . '"' : null;
+}
+
+// Send $etag and, when the client's If-None-Match already has it, answer
+// 304 Not Modified with no body and return true. Take the ETag before
+// running the list query, so a write in between only makes it too old.
+function notModified($etag) {
+    if ($etag === null) return false;
+    header('ETag: ' . $etag);
+    header('Vary: Accept-Encoding');
+    $sent = $_SERVER['HTTP_IF_NONE_MATCH'] ?? '';
+    if ($sent !== '' && in_array($etag, array_map('trim', explode(',', $sent)), true)) {
+        http_response_code(304);
+        return true;
+    }
+    return false;
+}
 ?>
\ No newline at end of file
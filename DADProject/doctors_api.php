@@ -35,6 +35,7 @@ switch($method) {
 // FUNCTIONS
 
 function getAllDoctors($pdo) {
+    if (notModified(tableVersionETag($pdo, ['doctors']))) return;
     $stmt = $pdo->query("
       SELECT doctor_id, first_name, last_name,
              specialization, phone, email
@@ -33,9 +33,12 @@ CREATE TABLE `appointments` (
   `doctor_id` int(11) DEFAULT NULL,
   `appointment_date` date DEFAULT NULL,
   `appointment_time` time DEFAULT NULL,
+  `slot_start` time GENERATED ALWAYS AS (if(`status` = 'cancelled',NULL,sec_to_time(time_to_sec(`appointment_time`) DIV 1800 * 1800))) STORED,
   `status` enum('scheduled','completed','cancelled') DEFAULT 'scheduled',
   `notes` text DEFAULT NULL,
-  `created_at` timestamp NOT NULL DEFAULT current_timestamp()
+  `created_at` timestamp NOT NULL DEFAULT current_timestamp(),
+  `updated_at` timestamp(3) NOT NULL DEFAULT current_timestamp(3) ON UPDATE current_timestamp(3),
+  `version` int(11) NOT NULL DEFAULT 0
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
 
 --
@@ -48,6 +51,72 @@ INSERT INTO `appointments` (`appointment_id`, `patient_id`, `doctor_id`, `appoin
 (7, 1, 2, '2025-06-17', '10:00:00', '', 'Approved by doctor', '2025-06-17 12:47:59'),
 (8, 6, 4, '2025-07-30', '10:30:00', 'scheduled', 'CHECKUP', '2025-07-18 09:03:08');
 
+--
+-- Triggers `appointments`
+--
+DELIMITER $$
+CREATE TRIGGER `appointments_version_ai` AFTER INSERT ON `appointments` FOR EACH ROW UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'appointments'
+$$
+CREATE TRIGGER `appointments_version_au` AFTER UPDATE ON `appointments` FOR EACH ROW UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'appointments'
+$$
+CREATE TRIGGER `appointments_version_ad` AFTER DELETE ON `appointments` FOR EACH ROW UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'appointments'
+$$
+CREATE TRIGGER `appointments_load_ai` AFTER INSERT ON `appointments` FOR EACH ROW INSERT INTO `doctor_day_load` (`doctor_id`, `appointment_date`, `booked`)
+  SELECT NEW.`doctor_id`, NEW.`appointment_date`, 1 FROM DUAL
+  WHERE NEW.`doctor_id` IS NOT NULL AND NEW.`appointment_date` IS NOT NULL AND NEW.`slot_start` IS NOT NULL
+  ON DUPLICATE KEY UPDATE `booked` = `booked` + 1
+$$
+CREATE TRIGGER `appointments_load_au_old` AFTER UPDATE ON `appointments` FOR EACH ROW UPDATE `doctor_day_load` SET `booked` = `booked` - 1
+  WHERE `doctor_id` = OLD.`doctor_id` AND `appointment_date` = OLD.`appointment_date` AND OLD.`slot_start` IS NOT NULL
+    AND NOT (OLD.`doctor_id` <=> NEW.`doctor_id` AND OLD.`appointment_date` <=> NEW.`appointment_date`
+             AND (OLD.`slot_start` IS NULL) = (NEW.`slot_start` IS NULL))
+$$
+CREATE TRIGGER `appointments_load_au_new` AFTER UPDATE ON `appointments` FOR EACH ROW INSERT INTO `doctor_day_load` (`doctor_id`, `appointment_date`, `booked`)
+  SELECT NEW.`doctor_id`, NEW.`appointment_date`, 1 FROM DUAL
+  WHERE NEW.`doctor_id` IS NOT NULL AND NEW.`appointment_date` IS NOT NULL AND NEW.`slot_start` IS NOT NULL
+    AND NOT (OLD.`doctor_id` <=> NEW.`doctor_id` AND OLD.`appointment_date` <=> NEW.`appointment_date`
+             AND (OLD.`slot_start` IS NULL) = (NEW.`slot_start` IS NULL))
+  ON DUPLICATE KEY UPDATE `booked` = `booked` + 1
+$$
+CREATE TRIGGER `appointments_load_ad` AFTER DELETE ON `appointments` FOR EACH ROW UPDATE `doctor_day_load` SET `booked` = `booked` - 1
+  WHERE `doctor_id` = OLD.`doctor_id` AND `appointment_date` = OLD.`appointment_date` AND OLD.`slot_start` IS NOT NULL
+$$
+DELIMITER ;
+
+-- --------------------------------------------------------
+
+--
+-- Table structure for table `appointment_tombstones`
+--
+
+CREATE TABLE `appointment_tombstones` (
+  `appointment_id` int(11) NOT NULL,
+  `doctor_id` int(11) DEFAULT NULL,
+  `deleted_at` timestamp(3) NOT NULL DEFAULT current_timestamp(3)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+-- --------------------------------------------------------
+
+--
+-- Table structure for table `doctor_day_load`
+--
+
+CREATE TABLE `doctor_day_load` (
+  `doctor_id` int(11) NOT NULL,
+  `appointment_date` date NOT NULL,
+  `booked` int(11) NOT NULL DEFAULT 0
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+--
+-- Dumping data for table `doctor_day_load`
+--
+
+INSERT INTO `doctor_day_load` (`doctor_id`, `appointment_date`, `booked`) VALUES
+(1, '2025-06-18', 1),
+(2, '2025-06-17', 1),
+(2, '2025-07-25', 1),
+(4, '2025-07-30', 1);
+
 -- --------------------------------------------------------
 
 --
@@ -74,6 +143,18 @@ INSERT INTO `doctors` (`doctor_id`, `first_name`, `last_name`, `specialization`,
 (3, 'Dr. Mike', 'Brown', 'Orthopedics', '123-456-7892', 'mike.brown@hospital.com', ''),
 (4, 'Sally', 'Hoes', 'Cardiology', '01234567985', 'sally7@gmail.com', '$2y$10$qTAxvCRSg4ZC5p2GmSHPcOEbvZ9GCN4murPfQx1xzjSt9.n2WZjRe');
 
+--
+-- Triggers `doctors`
+--
+DELIMITER $$
+CREATE TRIGGER `doctors_version_ai` AFTER INSERT ON `doctors` FOR EACH ROW UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'doctors'
+$$
+CREATE TRIGGER `doctors_version_au` AFTER UPDATE ON `doctors` FOR EACH ROW UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'doctors'
+$$
+CREATE TRIGGER `doctors_version_ad` AFTER DELETE ON `doctors` FOR EACH ROW UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'doctors'
+$$
+DELIMITER ;
+
 -- --------------------------------------------------------
 
 --
@@ -103,6 +184,38 @@ INSERT INTO `patients` (`patient_id`, `first_name`, `last_name`, `phone`, `email
 (5, 'Siti', 'Noor', '0109988776', 'siti.noor@example.com', 'Terengganu', '1993-06-10', '2025-06-14 09:50:26'),
 (6, 'Ammar', 'Hafizin', '01124314624', 'ammar7@gmail.com', 'Penang', '2004-02-20', '2025-06-14 10:25:45');
 
+--
+-- Triggers `patients`
+--
+DELIMITER $$
+CREATE TRIGGER `patients_version_ai` AFTER INSERT ON `patients` FOR EACH ROW UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'patients'
+$$
+CREATE TRIGGER `patients_version_au` AFTER UPDATE ON `patients` FOR EACH ROW UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'patients'
+$$
+CREATE TRIGGER `patients_version_ad` AFTER DELETE ON `patients` FOR EACH ROW UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'patients'
+$$
+DELIMITER ;
+
+-- --------------------------------------------------------
+
+--
+-- Table structure for table `table_versions`
+--
+
+CREATE TABLE `table_versions` (
+  `table_name` varchar(64) NOT NULL,
+  `version` bigint(20) NOT NULL DEFAULT 0
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+--
+-- Dumping data for table `table_versions`
+--
+
+INSERT INTO `table_versions` (`table_name`, `version`) VALUES
+('appointments', 1),
+('doctors', 1),
+('patients', 1);
+
 --
 -- Indexes for dumped tables
 --
@@ -112,8 +225,25 @@ INSERT INTO `patients` (`patient_id`, `first_name`, `last_name`, `phone`, `email
 --
 ALTER TABLE `appointments`
   ADD PRIMARY KEY (`appointment_id`),
-  ADD KEY `patient_id` (`patient_id`),
-  ADD KEY `doctor_id` (`doctor_id`);
+  ADD UNIQUE KEY `doctor_slot` (`doctor_id`,`appointment_date`,`slot_start`),
+  ADD KEY `updated_at` (`updated_at`),
+  ADD KEY `patient_date_time` (`patient_id`,`appointment_date`,`appointment_time`,`appointment_id`),
+  ADD KEY `doctor_date_time` (`doctor_id`,`appointment_date`,`appointment_time`,`appointment_id`),
+  ADD KEY `status_date` (`status`,`appointment_date`,`appointment_time`,`appointment_id`),
+  ADD KEY `date_time` (`appointment_date`,`appointment_time`,`appointment_id`);
+
+--
+-- Indexes for table `appointment_tombstones`
+--
+ALTER TABLE `appointment_tombstones`
+  ADD PRIMARY KEY (`appointment_id`),
+  ADD KEY `deleted_at` (`deleted_at`);
+
+--
+-- Indexes for table `doctor_day_load`
+--
+ALTER TABLE `doctor_day_load`
+  ADD PRIMARY KEY (`doctor_id`,`appointment_date`);
 
 --
 -- Indexes for table `doctors`
@@ -127,6 +257,12 @@ ALTER TABLE `doctors`
 ALTER TABLE `patients`
   ADD PRIMARY KEY (`patient_id`);
 
+--
+-- Indexes for table `table_versions`
+--
+ALTER TABLE `table_versions`
+  ADD PRIMARY KEY (`table_name`);
+
 --
 -- AUTO_INCREMENT for dumped tables
 --
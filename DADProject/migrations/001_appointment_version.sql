@@ -0,0 +1,6 @@
+-- Row version for appointments, bumped by every write so a client can
+-- send PATCH appointments_api.php/{id} with "expectedVersion" and get a
+-- 409 instead of silently overwriting a concurrent edit.
+
+ALTER TABLE `appointments`
+  ADD COLUMN `version` int(11) NOT NULL DEFAULT 0 AFTER `created_at`;
@@ -0,0 +1,18 @@
+-- Change tracking for GET appointments_api.php/changes?since=<token>.
+-- updated_at is maintained by MySQL on every write; deleted rows leave a
+-- tombstone so a client syncing from an older token learns to drop them.
+-- Tombstones older than the retention window (30 days) are purged on
+-- delete; a client with an older token is told to reload instead.
+
+ALTER TABLE `appointments`
+  ADD COLUMN `updated_at` timestamp(3) NOT NULL DEFAULT current_timestamp(3)
+    ON UPDATE current_timestamp(3) AFTER `created_at`,
+  ADD KEY `updated_at` (`updated_at`);
+
+CREATE TABLE `appointment_tombstones` (
+  `appointment_id` int(11) NOT NULL,
+  `doctor_id` int(11) DEFAULT NULL,
+  `deleted_at` timestamp(3) NOT NULL DEFAULT current_timestamp(3),
+  PRIMARY KEY (`appointment_id`),
+  KEY `deleted_at` (`deleted_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
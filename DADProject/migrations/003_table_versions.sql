@@ -0,0 +1,36 @@
+-- One counter per table, bumped by trigger on every insert, update and
+-- delete. The list endpoints build their ETag from the counters of the
+-- tables a response reads, so an unchanged list can be answered with
+-- 304 Not Modified after a single primary-key lookup.
+
+CREATE TABLE `table_versions` (
+  `table_name` varchar(64) NOT NULL,
+  `version` bigint(20) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`table_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+INSERT INTO `table_versions` (`table_name`, `version`) VALUES
+('appointments', 1),
+('doctors', 1),
+('patients', 1);
+
+CREATE TRIGGER `appointments_version_ai` AFTER INSERT ON `appointments` FOR EACH ROW
+  UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'appointments';
+CREATE TRIGGER `appointments_version_au` AFTER UPDATE ON `appointments` FOR EACH ROW
+  UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'appointments';
+CREATE TRIGGER `appointments_version_ad` AFTER DELETE ON `appointments` FOR EACH ROW
+  UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'appointments';
+
+CREATE TRIGGER `doctors_version_ai` AFTER INSERT ON `doctors` FOR EACH ROW
+  UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'doctors';
+CREATE TRIGGER `doctors_version_au` AFTER UPDATE ON `doctors` FOR EACH ROW
+  UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'doctors';
+CREATE TRIGGER `doctors_version_ad` AFTER DELETE ON `doctors` FOR EACH ROW
+  UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'doctors';
+
+CREATE TRIGGER `patients_version_ai` AFTER INSERT ON `patients` FOR EACH ROW
+  UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'patients';
+CREATE TRIGGER `patients_version_au` AFTER UPDATE ON `patients` FOR EACH ROW
+  UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'patients';
+CREATE TRIGGER `patients_version_ad` AFTER DELETE ON `patients` FOR EACH ROW
+  UPDATE `table_versions` SET `version` = `version` + 1 WHERE `table_name` = 'patients';
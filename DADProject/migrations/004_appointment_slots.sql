@@ -0,0 +1,17 @@
+-- One appointment per doctor per 30-minute slot. slot_start is the start of
+-- the slot an appointment's time falls in (09:15 -> 09:00), or NULL for a
+-- cancelled appointment or one without a time, which never conflicts since
+-- a unique key ignores NULLs. A double booking is then refused by the
+-- database, whichever client or script writes it (error 1062, answered
+-- with 409 by the APIs).
+--
+-- Existing double bookings make the ALTER fail; list them first with:
+--   SELECT doctor_id, appointment_date, SEC_TO_TIME(TIME_TO_SEC(appointment_time) DIV 1800 * 1800) AS slot,
+--          COUNT(*) FROM appointments WHERE status <> 'cancelled' OR status IS NULL
+--   GROUP BY 1, 2, 3 HAVING COUNT(*) > 1;
+
+ALTER TABLE `appointments`
+  ADD COLUMN `slot_start` time GENERATED ALWAYS AS
+    (IF(`status` = 'cancelled', NULL, SEC_TO_TIME(TIME_TO_SEC(`appointment_time`) DIV 1800 * 1800))) STORED
+    AFTER `appointment_time`,
+  ADD UNIQUE KEY `doctor_slot` (`doctor_id`, `appointment_date`, `slot_start`);
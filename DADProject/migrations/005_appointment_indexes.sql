@@ -0,0 +1,26 @@
+-- Composite keys for the appointments list and lookups, so the WHERE and the
+-- ORDER BY appointment_date, appointment_time, appointment_id of every
+-- query in appointments_api.php is answered from an index instead of a
+-- full scan plus filesort:
+--   doctor_date_time  list / slots / availability for one doctor
+--   patient_date_time list for one patient
+--   status_date       list by status and date range, pending requests
+--   date_time         list by date range and keyset paging
+-- appointment_id is listed last so the sort's tiebreak is part of the key
+-- (InnoDB appends it anyway).
+--
+-- The new doctor and patient keys lead with the column of the single-column
+-- doctor_id and patient_id keys, which are dropped; the foreign keys use the
+-- new ones.
+--
+-- test/services/QueryPlanCheck runs EXPLAIN on each of those queries and
+-- fails on a full scan or filesort (mvn -P db-checks verify on an embedded
+-- H2); run it with -Dhospital.plan.url against MySQL after migrating.
+
+ALTER TABLE `appointments`
+  ADD KEY `patient_date_time` (`patient_id`, `appointment_date`, `appointment_time`, `appointment_id`),
+  ADD KEY `doctor_date_time` (`doctor_id`, `appointment_date`, `appointment_time`, `appointment_id`),
+  ADD KEY `status_date` (`status`, `appointment_date`, `appointment_time`, `appointment_id`),
+  ADD KEY `date_time` (`appointment_date`, `appointment_time`, `appointment_id`),
+  DROP KEY `patient_id`,
+  DROP KEY `doctor_id`;
@@ -0,0 +1,43 @@
+-- Booked slots per doctor and day, kept up to date by trigger the way
+-- table_versions is (003). appointments_api.php ranks the doctors of a
+-- specialization by their load over the next BALANCE_DAYS days from this
+-- table: a primary-key range of at most BALANCE_DAYS rows per doctor
+-- instead of grouping every appointment in the window.
+--
+-- An appointment counts while it holds a slot: it has a doctor and a date
+-- and slot_start is set (a time, not cancelled). The update triggers only
+-- move the count when one of those changes; a day whose count drops to 0
+-- keeps its row.
+
+CREATE TABLE `doctor_day_load` (
+  `doctor_id` int(11) NOT NULL,
+  `appointment_date` date NOT NULL,
+  `booked` int(11) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`doctor_id`, `appointment_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+INSERT INTO `doctor_day_load` (`doctor_id`, `appointment_date`, `booked`)
+SELECT `doctor_id`, `appointment_date`, COUNT(*) FROM `appointments`
+WHERE `doctor_id` IS NOT NULL AND `appointment_date` IS NOT NULL AND `slot_start` IS NOT NULL
+GROUP BY `doctor_id`, `appointment_date`;
+
+CREATE TRIGGER `appointments_load_ai` AFTER INSERT ON `appointments` FOR EACH ROW
+  INSERT INTO `doctor_day_load` (`doctor_id`, `appointment_date`, `booked`)
+  SELECT NEW.`doctor_id`, NEW.`appointment_date`, 1 FROM DUAL
+  WHERE NEW.`doctor_id` IS NOT NULL AND NEW.`appointment_date` IS NOT NULL AND NEW.`slot_start` IS NOT NULL
+  ON DUPLICATE KEY UPDATE `booked` = `booked` + 1;
+CREATE TRIGGER `appointments_load_au_old` AFTER UPDATE ON `appointments` FOR EACH ROW
+  UPDATE `doctor_day_load` SET `booked` = `booked` - 1
+  WHERE `doctor_id` = OLD.`doctor_id` AND `appointment_date` = OLD.`appointment_date` AND OLD.`slot_start` IS NOT NULL
+    AND NOT (OLD.`doctor_id` <=> NEW.`doctor_id` AND OLD.`appointment_date` <=> NEW.`appointment_date`
+             AND (OLD.`slot_start` IS NULL) = (NEW.`slot_start` IS NULL));
+CREATE TRIGGER `appointments_load_au_new` AFTER UPDATE ON `appointments` FOR EACH ROW
+  INSERT INTO `doctor_day_load` (`doctor_id`, `appointment_date`, `booked`)
+  SELECT NEW.`doctor_id`, NEW.`appointment_date`, 1 FROM DUAL
+  WHERE NEW.`doctor_id` IS NOT NULL AND NEW.`appointment_date` IS NOT NULL AND NEW.`slot_start` IS NOT NULL
+    AND NOT (OLD.`doctor_id` <=> NEW.`doctor_id` AND OLD.`appointment_date` <=> NEW.`appointment_date`
+             AND (OLD.`slot_start` IS NULL) = (NEW.`slot_start` IS NULL))
+  ON DUPLICATE KEY UPDATE `booked` = `booked` + 1;
+CREATE TRIGGER `appointments_load_ad` AFTER DELETE ON `appointments` FOR EACH ROW
+  UPDATE `doctor_day_load` SET `booked` = `booked` - 1
+  WHERE `doctor_id` = OLD.`doctor_id` AND `appointment_date` = OLD.`appointment_date` AND OLD.`slot_start` IS NOT NULL;
@@ -6,6 +6,9 @@ header('Access-Control-Allow-Origin: *');
 header('Access-Control-Allow-Methods: GET, POST, PUT, DELETE');
 header('Access-Control-Allow-Headers: Content-Type');
 
+// rows per multi-row INSERT in POST /batch
+const PATIENT_CHUNK = 100;
+
 
 $method = $_SERVER['REQUEST_METHOD'];
 $request = isset($_SERVER['PATH_INFO']) ? explode('/', trim($_SERVER['PATH_INFO'], '/')) : [];
@@ -15,11 +18,15 @@ switch($method) {
         if(isset($request[0]) && is_numeric($request[0])) {
             getPatient($pdo, $request[0]);
         } else {
-            getAllPatients($pdo);
+            getAllPatients($pdo, $_GET);
         }
         break;
     case 'POST':
-        createPatient($pdo);
+        if (isset($request[0]) && $request[0] === 'batch') {
+            createPatients($pdo);
+        } else {
+            createPatient($pdo);
+        }
         break;
     case 'PUT':
         if(isset($request[0]) && is_numeric($request[0])) {
@@ -33,10 +40,29 @@ switch($method) {
         break;
 }
 
-function getAllPatients($pdo) {
-    $stmt = $pdo->query("SELECT * FROM patients ORDER BY last_name, first_name");
-    $patients = $stmt->fetchAll(PDO::FETCH_ASSOC);
-    echo json_encode($patients);
+// Without limit returns every patient. With limit returns one keyset page in
+// (last_name, first_name, patient_id) order, starting after
+// after_last/after_first/after_id when given.
+function getAllPatients($pdo, $query = []) {
+    if (notModified(tableVersionETag($pdo, ['patients']))) return;
+    if (!isset($query['limit']) || !is_numeric($query['limit'])) {
+        $stmt = $pdo->query("SELECT * FROM patients ORDER BY last_name, first_name, patient_id");
+        echo json_encode($stmt->fetchAll(PDO::FETCH_ASSOC));
+        return;
+    }
+
+    $limit = max(1, min((int)$query['limit'], 1000));
+    if (isset($query['after_id']) && is_numeric($query['after_id'])) {
+        $last  = $query['after_last']  ?? '';
+        $first = $query['after_first'] ?? '';
+        $stmt = $pdo->prepare("SELECT * FROM patients
+            WHERE last_name > ? OR (last_name = ? AND (first_name > ? OR (first_name = ? AND patient_id > ?)))
+            ORDER BY last_name, first_name, patient_id LIMIT $limit");
+        $stmt->execute([$last, $last, $first, $first, (int)$query['after_id']]);
+    } else {
+        $stmt = $pdo->query("SELECT * FROM patients ORDER BY last_name, first_name, patient_id LIMIT $limit");
+    }
+    echo json_encode($stmt->fetchAll(PDO::FETCH_ASSOC));
 }
 
 function getPatient($pdo, $id) {
@@ -76,6 +102,99 @@ function createPatient($pdo) {
     }
 }
 
+// POST /batch with {"patients":[...]}: inserts every valid row inside one
+// transaction and returns one result per input row,
+// {"index":i,"patient_id":"..."} or {"index":i,"error":"..."}.
+// Rows go in PATIENT_CHUNK at a time as one multi-row INSERT; a chunk that
+// fails is rolled back to its savepoint and replayed row by row, so only
+// the offending rows are reported and the rest still commit.
+function createPatients($pdo) {
+    $data = json_decode(file_get_contents("php://input"), true);
+    $rows = $data['patients'] ?? null;
+
+    if (!is_array($rows)) {
+        http_response_code(400);
+        echo json_encode(["success" => false, "error" => "Expected a patients array"]);
+        return;
+    }
+    if (count($rows) > 1000) {
+        http_response_code(400);
+        echo json_encode(["success" => false, "error" => "At most 1000 patients per batch"]);
+        return;
+    }
+
+    $results = [];
+    $valid = [];
+    foreach (array_values($rows) as $i => $row) {
+        if (!is_array($row) || !isset($row['firstName'], $row['lastName'])) {
+            $results[$i] = ["index" => $i, "error" => "Missing required patient data"];
+            continue;
+        }
+        $valid[$i] = [
+            $row['firstName'],
+            $row['lastName'],
+            $row['phone'] ?? '',
+            $row['email'] ?? '',
+            $row['address'] ?? '',
+            $row['dateOfBirth'] ?? null
+        ];
+    }
+
+    $insert = "INSERT INTO patients (first_name, last_name, phone, email, address, date_of_birth) VALUES ";
+    $one = $pdo->prepare($insert . "(?, ?, ?, ?, ?, ?)");
+    $many = [];
+    $inserted = 0;
+
+    $pdo->beginTransaction();
+    try {
+        // the ids of one multi-row INSERT are consecutive from lastInsertId(),
+        // this far apart
+        $step = (int)$pdo->query("SELECT @@auto_increment_increment")->fetchColumn();
+        foreach (array_chunk($valid, PATIENT_CHUNK, true) as $chunk) {
+            $n = count($chunk);
+            $many[$n] ??= $pdo->prepare($insert . implode(', ', array_fill(0, $n, "(?, ?, ?, ?, ?, ?)")));
+            $pdo->exec("SAVEPOINT patient_chunk");
+            try {
+                $many[$n]->execute(array_merge(...array_values($chunk)));
+                $id = (int)$pdo->lastInsertId();
+                foreach (array_keys($chunk) as $i) {
+                    $results[$i] = ["index" => $i, "patient_id" => (string)$id];
+                    $id += $step;
+                    $inserted++;
+                }
+                continue;
+            } catch (Exception $e) {
+                $pdo->exec("ROLLBACK TO SAVEPOINT patient_chunk");
+            }
+            foreach ($chunk as $i => $params) {
+                $pdo->exec("SAVEPOINT patient_row");
+                try {
+                    $one->execute($params);
+                    $results[$i] = ["index" => $i, "patient_id" => $pdo->lastInsertId()];
+                    $inserted++;
+                } catch (Exception $e) {
+                    $pdo->exec("ROLLBACK TO SAVEPOINT patient_row");
+                    $results[$i] = ["index" => $i, "error" => $e->getMessage()];
+                }
+            }
+        }
+        $pdo->commit();
+    } catch (Exception $e) {
+        $pdo->rollBack();
+        http_response_code(500);
+        echo json_encode(["success" => false, "error" => $e->getMessage()]);
+        return;
+    }
+
+    ksort($results);
+    echo json_encode([
+        "success" => true,
+        "inserted" => $inserted,
+        "failed" => count($results) - $inserted,
+        "results" => array_values($results)
+    ]);
+}
+
 
 function updatePatient($pdo, $id) {
     $data = json_decode(file_get_contents("php://input"), true);
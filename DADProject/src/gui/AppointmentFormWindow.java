@@ -2,14 +2,23 @@ package gui;
 
 import javax.swing.*;
 import models.Appointment;
+import models.AppointmentEvent;
 import models.Doctor;
 import models.Patient;
-import services.RestClient;
+import services.AsyncRestClient;
+import services.NotificationClient;
+import services.SlotAllocation;
+
+import org.json.JSONObject;
 
-import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.net.Socket;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 
 public class AppointmentFormWindow extends JFrame {
     private static final long serialVersionUID = 1L;
@@ -17,7 +26,10 @@ public class AppointmentFormWindow extends JFrame {
     private final boolean isStaff;
     private AppointmentPanel parentPanel;
     private Appointment existingAppointment;
-    private RestClient restClient;
+    private AsyncRestClient async;
+    // combo list loads; cancelled if the window is closed first. Saves are kept
+    // out: a sent write reaches the server anyway, so its result is always applied
+    private final List<CompletableFuture<?>> pending = new ArrayList<>();
 
     private JComboBox<ComboItem> patientCombo;
     private JComboBox<ComboItem> doctorCombo;
@@ -25,7 +37,14 @@ public class AppointmentFormWindow extends JFrame {
     private JTextField timeField;
     private JTextField notesField;
     private JComboBox<String> statusCombo;
+    // status label shown when the form was filled; the status is only sent if it is changed
+    private Object shownStatus;
     private JButton saveButton;
+    private JCheckBox autoSlotBox;
+    // doctor id -> full name, for naming the doctor the server picks by specialization
+    private final Map<Integer, String> doctorNames = new HashMap<>();
+    // doctor combo ids of the "any doctor of a specialization" entries
+    private static final String ANY_PREFIX = "any:";
 
     /** Staff-only constructor (create new) */
     public AppointmentFormWindow(AppointmentPanel parent) {
@@ -48,7 +67,7 @@ public class AppointmentFormWindow extends JFrame {
         this.parentPanel        = parent;
         this.existingAppointment = existingAppointment;
         this.isStaff            = isStaff;
-        this.restClient         = new RestClient();
+        this.async              = AsyncRestClient.getInstance();
 
         String title;
         if (existingAppointment == null) {
@@ -119,13 +138,19 @@ public class AppointmentFormWindow extends JFrame {
         statusCombo.setBounds(150, 220, 200, 25);
         getContentPane().add(statusCombo);
 
+        // Staff requests can be given the doctor's earliest free time straight away
+        autoSlotBox = new JCheckBox("Assign earliest free time");
+        autoSlotBox.setBounds(150, 250, 200, 22);
+        autoSlotBox.setVisible(existingAppointment == null && isStaff);
+        getContentPane().add(autoSlotBox);
+
         // Save button
         saveButton = new JButton(existingAppointment == null ? "Request" : "Update");
         saveButton.setBounds(150, 280, 90, 25);
         saveButton.addActionListener(e -> saveAppointment());
         getContentPane().add(saveButton);
 
-        // load patients & doctors
+        // load patients & doctors in the background
         loadComboData();
 
         if (existingAppointment != null) {
@@ -169,42 +194,82 @@ public class AppointmentFormWindow extends JFrame {
         public String getId() { return id; }
     }
 
+    /**
+     * Fetch patients and doctors off the EDT. Until both lists are in, the
+     * combos show a placeholder and the save button stays disabled.
+     */
     private void loadComboData() {
+        setPlaceholder("Loading...");
+        saveButton.setEnabled(false);
+
+        CompletableFuture<List<Patient>> patients = async.getAllPatients();
+        CompletableFuture<List<Doctor>> doctors = async.getAllDoctors();
+        pending.add(patients);
+        pending.add(doctors);
+        // both complete on the EDT, so this runs there too
+        CompletableFuture.allOf(patients, doctors).whenComplete((ignored, error) -> {
+            if (AsyncRestClient.isCancellation(error)) return;
+            if (error != null) {
+                setPlaceholder("Unavailable");
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                JOptionPane.showMessageDialog(this,
+                    "Unable to load lists: " + cause.getMessage());
+                return;
+            }
+            showComboData(patients.join(), doctors.join());
+        });
+    }
+
+    private void setPlaceholder(String text) {
+        patientCombo.removeAllItems();
+        doctorCombo .removeAllItems();
+        patientCombo.addItem(new ComboItem(null, text));
+        doctorCombo .addItem(new ComboItem(null, text));
+    }
+
+    /** Render phase of {@link #loadComboData()}; EDT only. */
+    private void showComboData(List<Patient> patients, List<Doctor> doctors) {
         patientCombo.removeAllItems();
         doctorCombo .removeAllItems();
-        try {
-            for (Patient p : restClient.getAllPatients()) {
-                patientCombo.addItem(new ComboItem(
-                    String.valueOf(p.getPatientId()), p.getFullName()));
+        for (Patient p : patients) {
+            patientCombo.addItem(new ComboItem(
+                String.valueOf(p.getPatientId()), p.getFullName()));
+        }
+        if (existingAppointment == null && isStaff) {
+            // let the server pick the least busy doctor of a specialization
+            Set<String> specializations = new TreeSet<>();
+            for (Doctor d : doctors) {
+                if (d.getSpecialization() != null && !d.getSpecialization().isBlank()) {
+                    specializations.add(d.getSpecialization().trim());
+                }
             }
-            for (Doctor d : restClient.getAllDoctors()) {
-                doctorCombo.addItem(new ComboItem(
-                    String.valueOf(d.getDoctorId()), d.getFullName()));
+            for (String s : specializations) {
+                doctorCombo.addItem(new ComboItem(ANY_PREFIX + s, "Any " + s + " doctor"));
             }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this,
-                "Unable to load lists: " + ex.getMessage());
         }
+        for (Doctor d : doctors) {
+            doctorNames.put(d.getDoctorId(), d.getFullName());
+            doctorCombo.addItem(new ComboItem(
+                String.valueOf(d.getDoctorId()), d.getFullName()));
+        }
+        if (existingAppointment != null) {
+            select(patientCombo, String.valueOf(existingAppointment.getPatientId()));
+            select(doctorCombo,  String.valueOf(existingAppointment.getDoctorId()));
+        }
+        saveButton.setEnabled(true);
     }
 
-    private void fillFormWithAppointment(Appointment a) {
-        // select patient
-        String pid = String.valueOf(a.getPatientId());
-        for (int i = 0; i < patientCombo.getItemCount(); i++) {
-            if (patientCombo.getItemAt(i).getId().equals(pid)) {
-                patientCombo.setSelectedIndex(i);
-                break;
-            }
-        }
-        // select doctor
-        String did = String.valueOf(a.getDoctorId());
-        for (int i = 0; i < doctorCombo.getItemCount(); i++) {
-            if (doctorCombo.getItemAt(i).getId().equals(did)) {
-                doctorCombo.setSelectedIndex(i);
-                break;
+    private static void select(JComboBox<ComboItem> combo, String id) {
+        for (int i = 0; i < combo.getItemCount(); i++) {
+            if (id.equals(combo.getItemAt(i).getId())) {
+                combo.setSelectedIndex(i);
+                return;
             }
         }
+    }
 
+    /** Text fields only; the combos are selected once their lists arrive. */
+    private void fillFormWithAppointment(Appointment a) {
         // fill date if present, else blank
         if (a.getAppointmentDate() != null) {
             dateField.setText(new SimpleDateFormat("yyyy-MM-dd")
@@ -231,64 +296,172 @@ public class AppointmentFormWindow extends JFrame {
         statusCombo.setSelectedItem(
             a.getStatus() != null ? a.getStatus() : "On Hold"
         );
+        shownStatus = statusCombo.getSelectedItem();
+    }
+
+    /** Stored status for a status label; the table only knows scheduled, completed and cancelled. */
+    private static String statusOf(String label) {
+        return "Cancelled".equals(label) ? "cancelled" : "scheduled";
+    }
+
+    private static boolean same(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
     }
 
 
     private void saveAppointment() {
-        try {
-            String pid   = ((ComboItem)patientCombo.getSelectedItem()).getId();
-            String did   = ((ComboItem)doctorCombo .getSelectedItem()).getId();
-            String date  = dateField.getText();
-            String time  = timeField.getText();
-            String notes = notesField.getText();
-            String status= (String)statusCombo.getSelectedItem();
-
-            boolean ok;
-            if (existingAppointment == null) {
-                // always call createAppointment; pass nulls if staff
-                String d = isStaff ? null : date;
-                String t = isStaff ? null : time;
-                String n = isStaff ? null : notes;
-                ok = restClient.createAppointment(pid, did, d, t, n);
-
-                // if staff, ping doctor after create
-                if (ok && isStaff) {
-                    notifyDoctor(Integer.parseInt(did));
-                }
+        String pid   = ((ComboItem)patientCombo.getSelectedItem()).getId();
+        String did   = ((ComboItem)doctorCombo .getSelectedItem()).getId();
+        String date  = dateField.getText();
+        String time  = timeField.getText();
+        String notes = notesField.getText();
+        String status= (String)statusCombo.getSelectedItem();
+
+        CompletableFuture<AppointmentEvent> save;
+        if (existingAppointment == null) {
+            // always call createAppointment; pass nulls if staff
+            String d = isStaff ? null : date;
+            String t = isStaff ? null : time;
+            String n = isStaff ? null : notes;
+            // built now, while the combos still show what is being sent
+            Appointment created = newAppointment(d, t, n);
+            boolean autoSlot = autoSlotBox.isSelected();
+            if (did.startsWith(ANY_PREFIX)) {
+                // the server chooses the doctor and books their earliest free time
+                save = async.createAppointmentBySpecialization(pid, did.substring(ANY_PREFIX.length()), d, t, n)
+                    .thenApply(chosen -> {
+                        if (chosen == null || chosen.appointmentId() <= 0) return null;
+                        created.setAppointmentId(chosen.appointmentId());
+                        created.setDoctorId(chosen.doctorId());
+                        created.setDoctorName(doctorNames.get(chosen.doctorId()));
+                        if (chosen.date() != null) created.setAppointmentDate(java.sql.Date.valueOf(chosen.date()));
+                        if (chosen.time() != null) created.setAppointmentTime(chosen.time().toString());
+                        return AppointmentEvent.created(created);
+                    });
             } else {
-                // doctor updating existing appointment
-                existingAppointment.setAppointmentDate(
-                    java.sql.Date.valueOf(date));
-                existingAppointment.setAppointmentTime(time);
-                existingAppointment.setNotes(notes);
-                existingAppointment.setStatus(status);
-                ok = restClient.updateAppointment(existingAppointment);
+                save = async.createAppointmentReturningId(pid, did, d, t, n)
+                    .thenCompose(newId -> {
+                        if (newId <= 0) return CompletableFuture.completedFuture(null);
+                        created.setAppointmentId(newId);
+                        if (!autoSlot) return CompletableFuture.completedFuture(AppointmentEvent.created(created));
+                        // the request exists either way; without a free time it just stays pending
+                        return async.allocateSlots(List.of(newId)).handle((allocation, error) -> {
+                            SlotAllocation.Assignment slot = allocation != null ? allocation.find(newId) : null;
+                            if (slot != null) {
+                                created.setAppointmentDate(java.sql.Date.valueOf(slot.date()));
+                                created.setAppointmentTime(slot.time().toString());
+                            }
+                            return AppointmentEvent.created(created);
+                        });
+                    });
+            }
+        } else {
+            // doctor updating existing appointment; the table's row is only
+            // replaced by the edited copy once the server has taken it
+            Appointment edited = new Appointment(existingAppointment);
+            try {
+                edited.setAppointmentDate(date.isBlank() ? null
+                    : java.sql.Date.valueOf(date.trim()));
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this,
+                    "Error: date must be yyyy-MM-dd");
+                return;
+            }
+            // blank fields mean "not set", as the form shows them
+            time  = time.isBlank() ? null : time.trim();
+            notes = notes.isEmpty() && existingAppointment.getNotes() == null ? null : notes;
+            edited.setAppointmentTime(time);
+            edited.setNotes(notes);
+            if (!same(status, shownStatus)) edited.setStatus(statusOf(status));
+
+            // send only what was edited, checked against the version the form was opened with
+            JSONObject changes = new JSONObject();
+            if (!same(edited.getAppointmentDate(), existingAppointment.getAppointmentDate())) {
+                changes.put("appointmentDate", edited.getAppointmentDate() != null
+                    ? edited.getAppointmentDate().toString() : JSONObject.NULL);
+            }
+            if (!same(time, existingAppointment.getAppointmentTime())) {
+                changes.put("appointmentTime", time != null ? time : JSONObject.NULL);
+            }
+            if (!same(notes, existingAppointment.getNotes())) {
+                changes.put("notes", notes != null ? notes : JSONObject.NULL);
             }
+            if (!same(edited.getStatus(), existingAppointment.getStatus())) changes.put("status", edited.getStatus());
+            if (changes.isEmpty()) {
+                dispose();
+                return;
+            }
+            save = async.patchAppointment(edited, changes)
+                .thenApply(result -> {
+                    switch (result) {
+                        case UPDATED:
+                            // edited now carries the server's new version
+                            return AppointmentEvent.updated(edited);
+                        case CONFLICT:
+                            throw new IllegalStateException("This appointment was changed by someone else "
+                                + "since the form was opened. Close it and open the appointment again.");
+                        case SLOT_TAKEN:
+                            throw new IllegalStateException("The doctor already has an appointment at that time.");
+                        case NOT_FOUND:
+                            throw new IllegalStateException("The appointment no longer exists.");
+                        default:
+                            return null;
+                    }
+                });
+        }
 
-            if (ok) {
-                parentPanel.refreshAppointments();
+        saveButton.setEnabled(false);
+        saveButton.setText("Saving...");
+        // runs even if the window was closed meanwhile, so the change is never lost
+        save.whenComplete((event, error) -> {
+            if (event != null) {
+                // patch our own table now; other windows get it from the hub
+                if (parentPanel != null) parentPanel.applyEvent(event);
+                NotificationClient.getInstance().publish(event);
                 dispose();
-            } else {
-                JOptionPane.showMessageDialog(this,
-                    "Save operation failed");
+                return;
             }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this,
-                "Error: " + ex.getMessage());
+            if (!isDisplayable()) return;
+            saveButton.setEnabled(true);
+            saveButton.setText(existingAppointment == null ? "Request" : "Update");
+            JOptionPane.showMessageDialog(this, error != null
+                ? "Error: " + (error.getCause() != null ? error.getCause() : error).getMessage()
+                : "Save operation failed");
+        });
+    }
+
+    @Override
+    public void dispose() {
+        for (CompletableFuture<?> f : new ArrayList<>(pending)) {
+            f.cancel(true);
         }
+        pending.clear();
+        super.dispose();
     }
 
-    /** One-shot TCP ping to the doctor's listener. */
-    private void notifyDoctor(int selectedDoctorId) {
-        final int port = 6000 + selectedDoctorId;
-        try (Socket sock = new Socket("localhost", port);
-        	     OutputStream out = sock.getOutputStream()) {
-        	    out.write("NEW_APPOINTMENT\n".getBytes());
-        	} catch (java.net.ConnectException ce) {
-        	    // doctor UI not running or not listening – skip notification silently
-        	    System.err.println("No notification server on port " + port + ", skipping");
-        	} catch (Exception ex) {
-        	    ex.printStackTrace();
-        	}
+    /**
+     * The row the server is about to insert, rebuilt from what is sent so the
+     * CREATED event needs no extra round trip; the id is set once known. Names are the combo labels,
+     * which are the same full names the server would join in.
+     */
+    private Appointment newAppointment(String date, String time, String notes) {
+        ComboItem patient = (ComboItem) patientCombo.getSelectedItem();
+        ComboItem doctor  = (ComboItem) doctorCombo.getSelectedItem();
+        Appointment a = new Appointment();
+        a.setPatientId(Integer.parseInt(patient.getId()));
+        a.setPatientName(patient.toString());
+        if (!doctor.getId().startsWith(ANY_PREFIX)) {
+            // otherwise set once the server has picked the doctor
+            a.setDoctorId(Integer.parseInt(doctor.getId()));
+            a.setDoctorName(doctor.toString());
+        }
+        if (date != null && !date.isEmpty()) {
+            a.setAppointmentDate(java.sql.Date.valueOf(date));
+        }
+        a.setAppointmentTime(time != null && !time.isEmpty() ? time : null);
+        a.setNotes(notes);
+        a.setStatus("scheduled");
+        a.setVersion(0);
+        return a;
     }
 }
@@ -1,27 +1,36 @@
 package gui;
 
-import java.text.SimpleDateFormat;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import models.Appointment;
+import models.AppointmentEvent;
+import services.AppointmentChanges;
+import services.AsyncRestClient;
+import services.NotificationClient;
 import services.RestClient;
 
 @SuppressWarnings("serial")
 public class AppointmentPanel extends JPanel {
 
     private RestClient restClient;
+    private final AsyncRestClient async = AsyncRestClient.getInstance();
     private JTable table;
     private JButton btnEdit;
     private JButton btnDelete;
-    private DefaultTableModel tableModel;
+    private AppointmentTableModel tableModel;
     private JScrollPane scrollPane;
+    // changes made by anyone, for any doctor, patched into the loaded rows
+    private final NotificationClient.Listener changeListener =
+        event -> SwingUtilities.invokeLater(() -> tableModel.apply(event));
+    // change token taken just before the first page was requested; 0 = none yet
+    private long syncToken = 0;
+    // token or delta request in flight; a newer refresh cancels it
+    private CompletableFuture<AppointmentChanges> syncTask;
 
-    // keep the last loaded appointments to reference IDs
-    private List<Appointment> appointments;
+    private static final int PAGE_SIZE = 100;
 
     public AppointmentPanel() {
-        this.restClient = new RestClient();
+        this.restClient = RestClient.getInstance();
         initialize();
         loadAppointments();
     }
@@ -32,11 +41,16 @@ public class AppointmentPanel extends JPanel {
         scrollPane.setBounds(32, 31, 550, 200);
         add(scrollPane);
 
-        tableModel = new DefaultTableModel(
-                new String[]{"Appointment ID","Patient", "Doctor", "Date", "Time", "Status"}, 0) {
+        tableModel = new AppointmentTableModel(restClient, PAGE_SIZE) {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+            protected void onLoadError(Exception ex) {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(
+                    AppointmentPanel.this,
+                    "Error loading appointments: " + ex.getMessage(),
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE
+                );
             }
         };
         table = new JTable(tableModel);
@@ -44,10 +58,11 @@ public class AppointmentPanel extends JPanel {
         table.getColumnModel().getColumn(0).setMinWidth(0);
         table.getColumnModel().getColumn(0).setMaxWidth(0);
         scrollPane.setViewportView(table);
+        tableModel.attach(scrollPane);
 
         JButton btnRefresh = new JButton("Refresh");
         btnRefresh.setBounds(32, 250, 90, 25);
-        btnRefresh.addActionListener(e -> loadAppointments());
+        btnRefresh.addActionListener(e -> refreshAppointments());
         add(btnRefresh);
 
         JButton btnAdd = new JButton("Add Appointment");
@@ -66,55 +81,62 @@ public class AppointmentPanel extends JPanel {
         add(btnDelete);
     }
 
+    /**
+     * Fetch only what changed since the list was loaded (or last refreshed)
+     * and patch those rows; falls back to a full reload when there is no
+     * usable token.
+     */
     public void refreshAppointments() {
-        loadAppointments();
+        if (syncToken == 0) {
+            loadAppointments();
+            return;
+        }
+        cancelSync();
+        syncTask = async.getAppointmentChanges(syncToken);
+        syncTask.whenComplete((changes, error) -> {
+            if (AsyncRestClient.isCancellation(error)) return; // superseded by a newer refresh
+            if (error != null || changes == null || changes.isReset()) {
+                loadAppointments();
+                return;
+            }
+            for (AppointmentEvent event : changes.toEvents()) {
+                tableModel.apply(event);
+            }
+            syncToken = changes.getToken();
+        });
+    }
+
+    /** Apply a change made from this panel without waiting for the hub echo. */
+    public void applyEvent(AppointmentEvent event) {
+        tableModel.apply(event);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        NotificationClient.getInstance().subscribe(0, changeListener);
     }
 
+    @Override
+    public void removeNotify() {
+        NotificationClient.getInstance().unsubscribe(0, changeListener);
+        super.removeNotify();
+    }
+
+    // pages are fetched on demand as the table is scrolled; the change token
+    // is taken first so later refreshes can pick up from there
     private void loadAppointments() {
-        new SwingWorker<List<Appointment>, Void>() {
-            @Override
-            protected List<Appointment> doInBackground() {
-                return restClient.getAllAppointments();
-            }
+        cancelSync();
+        syncTask = async.getAppointmentChanges(0);
+        syncTask.whenComplete((start, error) -> {
+            if (AsyncRestClient.isCancellation(error)) return;
+            syncToken = start != null ? start.getToken() : 0;
+            tableModel.reload();
+        });
+    }
 
-            @Override
-            protected void done() {
-                try {
-                    appointments = get();
-                    tableModel.setRowCount(0);
-                    SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-
-                    for (Appointment a : appointments) {
-                        // format date if present, else empty
-                        String dateStr = a.getAppointmentDate() != null
-                            ? df.format(a.getAppointmentDate())
-                            : "";
-
-                        // time could be null too
-                        String timeStr = a.getAppointmentTime() != null
-                            ? a.getAppointmentTime()
-                            : "";
-
-                        tableModel.addRow(new Object[]{
-                            a.getAppointmentId(),
-                            a.getPatientName(),
-                            a.getDoctorName(),
-                            dateStr,
-                            timeStr,
-                            a.getStatus()
-                        });
-                    }
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    JOptionPane.showMessageDialog(
-                        AppointmentPanel.this,
-                        "Error loading appointments: " + ex.getMessage(),
-                        "Error",
-                        JOptionPane.ERROR_MESSAGE
-                    );
-                }
-            }
-        }.execute();
+    private void cancelSync() {
+        if (syncTask != null) syncTask.cancel(true);
     }
 
 
@@ -127,10 +149,20 @@ public class AppointmentPanel extends JPanel {
         }
 
         // reconstruct Appointment
-        Appointment selected = appointments.get(selectedRow);
+        Appointment selected = tableModel.getRow(selectedRow);
+        if (selected == null) {
+            showReloading();
+            return;
+        }
         new AppointmentFormWindow(this, selected,true).setVisible(true);
     }
 
+    // the selected row's page was dropped after scrolling away and is being fetched again
+    private void showReloading() {
+        JOptionPane.showMessageDialog(this, "The selected appointment is still loading. Please try again.",
+                "Loading", JOptionPane.INFORMATION_MESSAGE);
+    }
+
     private void deleteSelectedAppointment() {
         int selectedRow = table.getSelectedRow();
         if (selectedRow == -1) {
@@ -144,34 +176,31 @@ public class AppointmentPanel extends JPanel {
                 "Confirm Delete", JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            Appointment toDelete = appointments.get(selectedRow);
-            new SwingWorker<Boolean, Void>() {
-                @Override
-                protected Boolean doInBackground() {
-                    return restClient.deleteAppointment(toDelete.getAppointmentId());
-                }
-
-                @Override
-                protected void done() {
-                    try {
-                        if (get()) {
-                            JOptionPane.showMessageDialog(AppointmentPanel.this,
-                                    "Appointment deleted successfully!",
-                                    "Success", JOptionPane.INFORMATION_MESSAGE);
-                            loadAppointments();
-                        } else {
-                            JOptionPane.showMessageDialog(AppointmentPanel.this,
-                                    "Failed to delete appointment.",
-                                    "Error", JOptionPane.ERROR_MESSAGE);
-                        }
-                    } catch (Exception ex) {
-                        ex.printStackTrace();
-                        JOptionPane.showMessageDialog(AppointmentPanel.this,
-                                "Error deleting appointment: " + ex.getMessage(),
-                                "Error", JOptionPane.ERROR_MESSAGE);
-                    }
+            Appointment toDelete = tableModel.getRow(selectedRow);
+            if (toDelete == null) {
+                showReloading();
+                return;
+            }
+            async.deleteAppointment(toDelete.getAppointmentId()).whenComplete((ok, error) -> {
+                if (error != null) {
+                    error.printStackTrace();
+                    JOptionPane.showMessageDialog(AppointmentPanel.this,
+                            "Error deleting appointment: " + error.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                } else if (ok) {
+                    AppointmentEvent deleted = AppointmentEvent.deleted(
+                            toDelete.getDoctorId(), toDelete.getAppointmentId());
+                    tableModel.apply(deleted);
+                    NotificationClient.getInstance().publish(deleted);
+                    JOptionPane.showMessageDialog(AppointmentPanel.this,
+                            "Appointment deleted successfully!",
+                            "Success", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(AppointmentPanel.this,
+                            "Failed to delete appointment.",
+                            "Error", JOptionPane.ERROR_MESSAGE);
                 }
-            }.execute();
+            });
         }
     }
 
@@ -0,0 +1,93 @@
+package gui;
+
+import java.text.SimpleDateFormat;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import models.Appointment;
+import models.AppointmentEvent;
+import services.AppointmentQuery;
+import services.RestClient;
+
+/**
+ * Lazily paged appointment list for {@link AppointmentPanel}. Besides paging,
+ * it applies pushed {@link AppointmentEvent}s to the rows in memory, one row
+ * at a time, so a change made elsewhere shows up without a reload; rows of a
+ * dropped page are fetched fresh when it comes back into view.
+ */
+@SuppressWarnings("serial")
+public class AppointmentTableModel extends LazyTableModel<Appointment> {
+
+    static final String[] COLUMNS = {"Appointment ID", "Patient", "Doctor", "Date", "Time", "Status"};
+
+    // same order as the server's keyset paging; MySQL sorts NULL first
+    private static final Comparator<Appointment> ORDER = Comparator
+        .comparing(Appointment::getAppointmentDate, Comparator.nullsFirst(Comparator.<Date>naturalOrder()))
+        .thenComparing(AppointmentTableModel::timeKey)
+        .thenComparingInt(Appointment::getAppointmentId);
+
+    private final RestClient restClient;
+    private final SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+
+    public AppointmentTableModel(RestClient restClient, int pageSize) {
+        super(COLUMNS, pageSize);
+        this.restClient = restClient;
+    }
+
+    @Override
+    protected List<Appointment> fetchPage(Appointment after, int limit) {
+        return restClient.getAppointments(new AppointmentQuery().after(after).limit(limit));
+    }
+
+    @Override
+    protected Object keyOf(Appointment a) {
+        return a.getAppointmentId();
+    }
+
+    @Override
+    protected Object valueAt(Appointment a, int column) {
+        switch (column) {
+            case 0: return a.getAppointmentId();
+            case 1: return a.getPatientName();
+            case 2: return a.getDoctorName();
+            // date and time may be null for unscheduled requests
+            case 3: return a.getAppointmentDate() != null ? df.format(a.getAppointmentDate()) : "";
+            case 4: return a.getAppointmentTime() != null ? a.getAppointmentTime() : "";
+            default: return a.getStatus();
+        }
+    }
+
+    /**
+     * Apply one change to the loaded rows; must be called on the EDT.
+     * Events may arrive twice (our own publish echoes back), so applying the
+     * same event again leaves the table as it was.
+     */
+    public void apply(AppointmentEvent event) {
+        int index = indexOf(event.getAppointmentId());
+        Appointment snapshot = event.getSnapshot();
+
+        if (event.getType() == AppointmentEvent.Type.DELETED || snapshot == null) {
+            if (index >= 0) removeRow(index);
+            else invalidate(event.getAppointmentId());
+            return;
+        }
+
+        if (index >= 0) {
+            if (ORDER.compare(getRow(index), snapshot) == 0) {
+                setRow(index, snapshot);
+                return;
+            }
+            // rescheduled: move it to where the server would now list it
+            removeRow(index);
+        } else {
+            // its page is dropped: refetched, never resized here
+            invalidate(event.getAppointmentId());
+        }
+        insertSorted(snapshot, ORDER);
+    }
+
+    private static String timeKey(Appointment a) {
+        return a.getAppointmentTime() != null ? a.getAppointmentTime() : "";
+    }
+}
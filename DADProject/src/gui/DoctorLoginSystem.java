@@ -4,7 +4,9 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.CompletableFuture;
 import org.json.JSONObject;
+import services.AsyncRestClient;
 import services.RestClient;
 
 public class DoctorLoginSystem {
@@ -13,11 +15,13 @@ public class DoctorLoginSystem {
     private JPasswordField passwordField;
     private JLabel statusLabel;
     private RestClient restClient;
+    private CompletableFuture<JSONObject> pendingLogin;
     
     // API endpoint for doctor authentication
     private static final String BASE_URL = "http://localhost/hospital_management/php_backend";
     
     public static void main(String[] args) {
+        EdtStallDetector.install();
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.setLookAndFeel(UIManager.getLookAndFeel());
@@ -29,7 +33,7 @@ public class DoctorLoginSystem {
     }
     
     public DoctorLoginSystem() {
-        this.restClient = new RestClient();
+        this.restClient = RestClient.getInstance();
     }
     
     public void createAndShowGUI() {
@@ -171,45 +175,35 @@ public class DoctorLoginSystem {
             // Show loading message
             showMessage("Authenticating...", Color.YELLOW);
             
-            // Perform authentication in background thread to avoid UI freezing
-            SwingWorker<JSONObject, Void> worker = new SwingWorker<JSONObject, Void>() {
-                @Override
-                protected JSONObject doInBackground() throws Exception {
-                    // call our new JSON‐returning method
-                    return restClient.authenticateDoctor(email, password);
+            // Authenticate off the EDT; pressing Login again abandons the previous attempt
+            if (pendingLogin != null) pendingLogin.cancel(true);
+            pendingLogin = AsyncRestClient.getInstance().authenticateDoctor(email, password);
+            pendingLogin.whenComplete((resp, error) -> {
+                if (AsyncRestClient.isCancellation(error)) return;
+                if (error != null) {
+                    showMessage("Login error: " + error.getMessage(), Color.RED);
+                    error.printStackTrace();
+                } else if (resp != null && resp.optBoolean("success", false)) {
+                    int doctorId = resp.getInt("doctor_id");
+                    
+                    String firstName = resp.getString("first_name");
+                    String lastName = resp.getString("last_name");
+                    
+                    String doctorName = firstName + " " + lastName;
+                    
+                    showMessage("Login successful!", Color.GREEN);
+                    // give a little pause
+                    Timer loginTimer = new Timer(300, ev -> {
+                    	        new DoctorRequestWindow(doctorId, doctorName);
+                    	        frame.dispose();
+                    	   });
+                    	    loginTimer.setRepeats(false);
+                    	   loginTimer.start();
+                } else {
+                    showMessage("Invalid email or password", Color.RED);
+                    passwordField.setText("");
                 }
-                @Override
-                protected void done() {
-                	try {
-                        JSONObject resp = get();
-                        if (resp != null && resp.optBoolean("success", false)) {
-                            int doctorId = resp.getInt("doctor_id");
-                            
-                            String firstName = resp.getString("first_name");
-                            String lastName = resp.getString("last_name");
-                            
-                            String doctorName = firstName + " " + lastName;
-                            
-                            showMessage("Login successful!", Color.GREEN);
-                            // give a little pause
-                            Timer loginTimer = new Timer(300, ev -> {
-                            	        new DoctorRequestWindow(doctorId, doctorName);
-                            	        frame.dispose();
-                            	   });
-                            	    loginTimer.setRepeats(false);
-                            	   loginTimer.start();
-                        } else {
-                            showMessage("Invalid email or password", Color.RED);
-                            passwordField.setText("");
-                        }
-                    } catch (Exception ex) {
-                        showMessage("Login error: " + ex.getMessage(), Color.RED);
-                        ex.printStackTrace();
-                    }
-
-                }
-            };
-            worker.execute();
+            });
         }
     }
     
@@ -233,12 +227,4 @@ public class DoctorLoginSystem {
         timer.setRepeats(false);
         timer.start();
     }
-    
-    @Override
-    protected void finalize() throws Throwable {
-        if (restClient != null) {
-            restClient.close();
-        }
-        super.finalize();
-    }
 }
@@ -4,9 +4,11 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 
 import models.Doctor;
+import services.AsyncRestClient;
 import services.RestClient;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class DoctorPanel extends JPanel {
 
@@ -14,9 +16,10 @@ public class DoctorPanel extends JPanel {
     private RestClient restClient;
     private JTable doctorTable;
     private DefaultTableModel tableModel;
+    private CompletableFuture<List<Doctor>> loadTask;
 
     public DoctorPanel() {
-        this.restClient = new RestClient();
+        this.restClient = RestClient.getInstance();
         setLayout(null);
 
         JScrollPane scrollPane = new JScrollPane();
@@ -33,36 +36,29 @@ public class DoctorPanel extends JPanel {
     }
 
     private void loadDoctorData() {
-        SwingWorker<List<Doctor>, Void> worker = new SwingWorker<>() {
-            @Override
-            protected List<Doctor> doInBackground() {
-                return restClient.getAllDoctors();
+        if (loadTask != null) loadTask.cancel(true); // a newer load wins
+        loadTask = AsyncRestClient.getInstance().getAllDoctors();
+        loadTask.whenComplete((doctors, error) -> {
+            if (AsyncRestClient.isCancellation(error)) return;
+            if (error != null) {
+                JOptionPane.showMessageDialog(DoctorPanel.this,
+                        "Failed to load doctor data.\n" + error.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
             }
+            tableModel.setRowCount(0); // Clear previous rows
 
-            @Override
-            protected void done() {
-                try {
-                    List<Doctor> doctors = get();
-                    tableModel.setRowCount(0); // Clear previous rows
-
-                    for (Doctor d : doctors) {
-                        tableModel.addRow(new Object[]{
-                            d.getDoctorId(),
-                            d.getFirstName(),
-                            d.getLastName(),
-                            d.getSpecialization(),
-                            d.getPhone(),
-                            d.getEmail()
-                        });
-                    }
-                } catch (Exception e) {
-                    JOptionPane.showMessageDialog(DoctorPanel.this,
-                            "Failed to load doctor data.\n" + e.getMessage(),
-                            "Error",
-                            JOptionPane.ERROR_MESSAGE);
-                }
+            for (Doctor d : doctors) {
+                tableModel.addRow(new Object[]{
+                    d.getDoctorId(),
+                    d.getFirstName(),
+                    d.getLastName(),
+                    d.getSpecialization(),
+                    d.getPhone(),
+                    d.getEmail()
+                });
             }
-        };
-        worker.execute();
+        });
     }
 }
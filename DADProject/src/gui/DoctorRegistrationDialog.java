@@ -14,9 +14,9 @@ import javax.swing.JPanel;
 import javax.swing.JPasswordField;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
-import javax.swing.SwingWorker;
 import javax.swing.Timer;
 
+import services.AsyncRestClient;
 import services.RestClient;
 
 @SuppressWarnings("serial")
@@ -120,37 +120,25 @@ public class DoctorRegistrationDialog extends JDialog {
 
         showMessage("Registering doctor...", Color.BLUE);
 
-        // Delegate to RestClient in background
-        SwingWorker<Boolean, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Boolean doInBackground() {
-                return restClient.registerDoctor(
-                    firstNameField.getText().trim(),
-                    lastNameField.getText().trim(),
-                    emailField.getText().trim(),
-                    phoneField.getText().trim(),
-                    specializationField.getText().trim(),
-                    password
-                );
+        // Delegate to RestClient off the EDT
+        AsyncRestClient.getInstance().registerDoctor(
+            firstNameField.getText().trim(),
+            lastNameField.getText().trim(),
+            emailField.getText().trim(),
+            phoneField.getText().trim(),
+            specializationField.getText().trim(),
+            password
+        ).whenComplete((success, error) -> {
+            if (error != null) {
+                showMessage("Registration error: " + error.getMessage(), Color.RED);
+                error.printStackTrace();
+            } else if (success) {
+                showMessage("Doctor registered successfully!", Color.GREEN);
+                new Timer(2000, e -> dispose()).start();
+            } else {
+                showMessage("Registration failed. Email may already exist.", Color.RED);
             }
-
-            @Override
-            protected void done() {
-                try {
-                    Boolean success = get();
-                    if (success) {
-                        showMessage("Doctor registered successfully!", Color.GREEN);
-                        new Timer(2000, e -> dispose()).start();
-                    } else {
-                        showMessage("Registration failed. Email may already exist.", Color.RED);
-                    }
-                } catch (Exception ex) {
-                    showMessage("Registration error: " + ex.getMessage(), Color.RED);
-                    ex.printStackTrace();
-                }
-            }
-        };
-        worker.execute();
+        });
     }
 
     private void showMessage(String message, Color color) {
@@ -1,33 +1,55 @@
 package gui;
 
 import java.awt.*;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.BindException;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import javax.swing.*;
 import javax.swing.border.LineBorder;
 import javax.swing.table.DefaultTableModel;
 
+import org.json.JSONObject;
+
 import models.Appointment;
+import models.AppointmentEvent;
+import services.AppointmentQuery;
+import services.AppointmentStore;
+import services.AsyncRestClient;
+import services.MonthAvailability;
+import services.NotificationClient;
 import services.RestClient;
+import services.SlotAllocation;
 
 public class DoctorRequestWindow extends JFrame {
 
     private static final long serialVersionUID = 1L;
     private JTable table;
-    private RestClient restClient;
     private int doctorId;
     private String doctorName;
     private DefaultTableModel tableModel;
-    private List<Appointment> appointments;
-    private static volatile boolean notificationServerStarted = false;
+    private List<Appointment> appointments = new ArrayList<>();
+    // appointment id -> index in appointments (and the table), kept in step with it
+    private final Map<Integer, Integer> rowById = new HashMap<>();
+    // this doctor's appointments; Refresh only fetches what changed since the last one
+    private AppointmentStore store;
+    private CompletableFuture<List<AppointmentEvent>> syncTask;
+    private boolean syncAgain = false;
+    private NotificationClient.Listener notificationListener;
+    private AsyncRestClient async;
+    private JLabel statusLabel;
+    private JButton approveButton;
+    private JButton rejectButton;
+    private JButton completeTodayButton;
+    private JButton autoScheduleButton;
     
     
     public static void main(String[] args) {
@@ -37,7 +59,8 @@ public class DoctorRequestWindow extends JFrame {
     public DoctorRequestWindow(int doctorId , String doctorName) {
         this.doctorId   = doctorId;
         this.doctorName = doctorName;
-        this.restClient = new RestClient();
+        this.async      = AsyncRestClient.getInstance();
+        this.store      = new AppointmentStore(new AppointmentQuery().doctorId(doctorId));
 
         setTitle("Appointment Requests for Doctor " + doctorName);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -58,26 +81,41 @@ public class DoctorRequestWindow extends JFrame {
         };
 
         table = new JTable(tableModel);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         scrollPane.setViewportView(table);
 
+        statusLabel = new JLabel(" ");
+        statusLabel.setBounds(47, 192, 561, 20);
+        getContentPane().add(statusLabel);
+
         // --- buttons ---
         JButton refreshButton = new JButton("Refresh");
         refreshButton.setBounds(51, 222, 85, 21);
         refreshButton.addActionListener(e -> loadRequests());
         getContentPane().add(refreshButton);
 
-        JButton approveButton = new JButton("Approve & Schedule");
+        approveButton = new JButton("Approve & Schedule");
         approveButton.setBounds(161, 222, 173, 21);
         approveButton.addActionListener(e -> approveAndScheduleSelected());
         getContentPane().add(approveButton);
 
-        JButton rejectButton = new JButton("Reject");
+        rejectButton = new JButton("Reject");
         rejectButton.setBounds(371, 222, 85, 21);
         rejectButton.addActionListener(e -> rejectSelected());
         getContentPane().add(rejectButton);
 
-        // start TCP notification server
-        startNotificationServer();
+        completeTodayButton = new JButton("Complete Today's");
+        completeTodayButton.setBounds(481, 222, 127, 21);
+        completeTodayButton.addActionListener(e -> completeTodaysAppointments());
+        getContentPane().add(completeTodayButton);
+
+        autoScheduleButton = new JButton("Auto-Schedule Pending");
+        autoScheduleButton.setBounds(161, 250, 173, 21);
+        autoScheduleButton.addActionListener(e -> autoSchedulePending());
+        getContentPane().add(autoScheduleButton);
+
+        // receive pushes for this doctor from the notification hub
+        subscribeToNotifications();
 
         // initial data load
         loadRequests();
@@ -88,44 +126,109 @@ public class DoctorRequestWindow extends JFrame {
     }
 
     /**
-     * Spin up a background thread that listens for "NEW_APPOINTMENT"
-     * pings on port (6000 + doctorId) and reloads the table.
+     * Subscribe to this doctor's events on the notification hub. Each event
+     * carries the changed appointment, so the row is patched without a fetch.
      */
-    private synchronized void startNotificationServer() {
-    	// if we've already started it, just return
-        if (notificationServerStarted) return;
-        notificationServerStarted = true;
-    	
-        final int port = 6000 + doctorId;
-        new Thread(() -> {
-            try (ServerSocket server = new ServerSocket(port)) {
-                System.out.println("Notification server listening on port " + port);
-                while (true) {
-                    try (Socket client = server.accept();
-                         BufferedReader in = new BufferedReader(
-                             new InputStreamReader(client.getInputStream()))
-                    ) {
-                        String msg = in.readLine();
-                        if ("NEW_APPOINTMENT".equals(msg)) {
-                            // schedule table reload on the EDT
-                            SwingUtilities.invokeLater(this::loadRequests);
-                        }
-                    } catch (Exception inner) {
-                        inner.printStackTrace();
-                    }
+    private void subscribeToNotifications() {
+        // runs on the notification thread; the table is only touched on the EDT
+        notificationListener = event -> SwingUtilities.invokeLater(() -> applyChange(event));
+        NotificationClient.getInstance().subscribe(doctorId, notificationListener);
+    }
+
+    @Override
+    public void dispose() {
+        if (notificationListener != null) {
+            NotificationClient.getInstance().unsubscribe(doctorId, notificationListener);
+            notificationListener = null;
+        }
+        super.dispose();
+    }
+
+    /**
+     * Insert, replace or drop the row for one appointment without reloading
+     * the rest of the table.
+     */
+    private void applyChange(AppointmentEvent event) {
+        int appointmentId = event.getAppointmentId();
+        Appointment appt = event.getSnapshot();
+        boolean stillOurs = event.getType() != AppointmentEvent.Type.DELETED
+            && appt != null
+            && appt.getDoctorId() == doctorId;
+        Integer row = rowById.get(appointmentId);
+        if (row != null) {
+            int i = row;
+            if (stillOurs) {
+                appointments.set(i, appt);
+                Object[] values = toRow(appt);
+                for (int col = 0; col < values.length; col++) {
+                    tableModel.setValueAt(values[col], i, col);
                 }
+            } else {
+                appointments.remove(i);
+                tableModel.removeRow(i);
+                rowById.remove(appointmentId);
+                reindexFrom(i);
             }
-            catch (BindException be) {
-                // PORT ALREADY IN USE — skip starting notifications
-                System.err.println("Notification server already running on port " 
-                                   + port + ", skipping.");  // no dialog
-            }catch (Exception e) {
-                e.printStackTrace();
-                JOptionPane.showMessageDialog(this,
-                    "Failed to start notification server on port " + port +
-                    "\n" + e.getMessage());
-            }
-        }, "DoctorNotificationServer").start();
+            return;
+        }
+        if (stillOurs) {
+            rowById.put(appointmentId, appointments.size());
+            appointments.add(appt);
+            tableModel.addRow(toRow(appt));
+        }
+    }
+
+    // the rows from index on moved up by one
+    private void reindexFrom(int index) {
+        for (int i = index; i < appointments.size(); i++) {
+            rowById.put(appointments.get(i).getAppointmentId(), i);
+        }
+    }
+
+    /** The listed appointment with this id, or null. */
+    private Appointment listed(int appointmentId) {
+        Integer row = rowById.get(appointmentId);
+        return row != null ? appointments.get(row) : null;
+    }
+
+    /**
+     * Reflect a change this window just saved: patch the local row and tell
+     * the other windows. {@code appt} must be a copy carrying the version
+     * the server returned, or -1 when it is unknown; the listed objects are
+     * shared with the store and are only replaced, never changed.
+     */
+    private void publishUpdated(Appointment appt) {
+        AppointmentEvent event = AppointmentEvent.updated(appt);
+        applyChange(event);
+        NotificationClient.getInstance().publish(event);
+    }
+
+    /** Same as {@link #publishUpdated(Appointment)} after a bulk status change. */
+    private void publishStatusChange(List<Integer> ids, String status, String notes) {
+        for (int id : ids) {
+            Appointment a = listed(id);
+            if (a == null) continue;
+            Appointment changed = new Appointment(a);
+            changed.setStatus(status);
+            if (notes != null) changed.setNotes(notes);
+            // the bulk reply carries no versions
+            changed.setVersion(-1);
+            publishUpdated(changed);
+        }
+    }
+
+    /**
+     * Show {@code message} and lock the action buttons while a write is in
+     * flight, so a slow server cannot be sent the same change twice;
+     * null unlocks them again.
+     */
+    private void setBusy(String message) {
+        boolean idle = message == null;
+        statusLabel.setText(idle ? " " : message);
+        approveButton.setEnabled(idle);
+        rejectButton.setEnabled(idle);
+        completeTodayButton.setEnabled(idle);
+        autoScheduleButton.setEnabled(idle);
     }
 
     /**
@@ -138,6 +241,11 @@ public class DoctorRequestWindow extends JFrame {
                 "Please select an appointment request first.");
             return;
         }
+        if (table.getSelectedRowCount() > 1) {
+            JOptionPane.showMessageDialog(this,
+                "Please select a single appointment to schedule.");
+            return;
+        }
 
         // Get the selected appointment
         Appointment appt = appointments.get(row);
@@ -152,32 +260,55 @@ public class DoctorRequestWindow extends JFrame {
             String selectedTime = dialog.getSelectedTime();
             String notes = dialog.getNotes();
 
-            // Update the appointment
-            appt.setAppointmentDate(new java.sql.Date(selectedDate.getTime()));
-            appt.setAppointmentTime(selectedTime);
-            appt.setNotes(notes);
-            appt.setStatus("scheduled");
-
-            boolean success = restClient.updateAppointment(appt);
-            if (success) {
-                JOptionPane.showMessageDialog(this,
-                    "Appointment approved and scheduled successfully!");
-                loadRequests(); // Refresh the table
-            } else {
-                JOptionPane.showMessageDialog(this,
-                    "Failed to update appointment.",
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            // Edit a copy: the listed one is the store's and only changes once the server agrees
+            Appointment edited = new Appointment(appt);
+            edited.setAppointmentDate(new java.sql.Date(selectedDate.getTime()));
+            edited.setAppointmentTime(selectedTime);
+            edited.setNotes(notes);
+            edited.setStatus("scheduled");
+
+            // only the scheduled fields, refused if the row changed since it was loaded
+            JSONObject changes = new JSONObject()
+                .put("appointmentDate", new SimpleDateFormat("yyyy-MM-dd").format(selectedDate))
+                .put("appointmentTime", selectedTime)
+                .put("notes", notes != null ? notes : JSONObject.NULL)
+                .put("status", "scheduled");
+
+            setBusy("Saving...");
+            async.patchAppointment(edited, changes).whenComplete((result, error) -> {
+                setBusy(null);
+                if (result == RestClient.PatchResult.UPDATED) {
+                    publishUpdated(edited);
+                    JOptionPane.showMessageDialog(this,
+                        "Appointment approved and scheduled successfully!");
+                } else if (result == RestClient.PatchResult.CONFLICT) {
+                    JOptionPane.showMessageDialog(this,
+                        "This appointment was changed by someone else since it was loaded.\n"
+                        + "The list has been refreshed; please check it and schedule again.",
+                        "Appointment Changed",
+                        JOptionPane.WARNING_MESSAGE);
+                    loadRequests();
+                } else if (result == RestClient.PatchResult.SLOT_TAKEN) {
+                    JOptionPane.showMessageDialog(this,
+                        "The doctor already has an appointment at that time.",
+                        "Time Booked",
+                        JOptionPane.WARNING_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                        "Failed to update appointment.",
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 
     /**
-     * Reject the selected appointment
+     * Reject every selected appointment in one request
      */
     private void rejectSelected() {
-        int row = table.getSelectedRow();
-        if (row < 0) {
+        int[] rows = table.getSelectedRows();
+        if (rows.length == 0) {
             JOptionPane.showMessageDialog(this,
                 "Please select an appointment request first.");
             return;
@@ -185,13 +316,13 @@ public class DoctorRequestWindow extends JFrame {
 
         // Confirm rejection
         int choice = JOptionPane.showConfirmDialog(this,
-            "Are you sure you want to reject this appointment?",
+            rows.length == 1
+                ? "Are you sure you want to reject this appointment?"
+                : "Are you sure you want to reject these " + rows.length + " appointments?",
             "Confirm Rejection",
             JOptionPane.YES_NO_OPTION);
         
         if (choice == JOptionPane.YES_OPTION) {
-            Appointment appt = appointments.get(row);
-            
             // Ask for rejection reason
             String reason = JOptionPane.showInputDialog(this,
                 "Enter reason for rejection (optional):",
@@ -201,56 +332,186 @@ public class DoctorRequestWindow extends JFrame {
                 reason = "Rejected by doctor";
             }
             
-            appt.setStatus("cancelled");
-            appt.setNotes(reason);
+            List<Integer> ids = new ArrayList<>();
+            for (int row : rows) {
+                ids.add(appointments.get(row).getAppointmentId());
+            }
             
-            boolean success = restClient.updateAppointment(appt);
-            if (success) {
+            String notes = reason;
+            setBusy("Rejecting " + ids.size() + " appointment(s)...");
+            async.updateAppointmentStatuses(ids, "cancelled", notes).whenComplete((updated, error) -> {
+                setBusy(null);
+                if (updated != null && updated >= 0) {
+                    publishStatusChange(ids, "cancelled", notes);
+                    JOptionPane.showMessageDialog(this,
+                        updated == 1
+                            ? "Appointment rejected successfully."
+                            : updated + " appointments rejected successfully.");
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                        "Failed to reject appointment.",
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            });
+        }
+    }
+
+    /**
+     * End-of-day closing: mark all of today's scheduled appointments as
+     * completed in a single request
+     */
+    private void completeTodaysAppointments() {
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+        String today = df.format(new Date());
+        List<Integer> ids = new ArrayList<>();
+        for (Appointment a : appointments) {
+            if ("scheduled".equals(a.getStatus())
+                    && a.getAppointmentDate() != null
+                    && today.equals(df.format(a.getAppointmentDate()))) {
+                ids.add(a.getAppointmentId());
+            }
+        }
+
+        if (ids.isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                "There are no scheduled appointments left for today.");
+            return;
+        }
+
+        int choice = JOptionPane.showConfirmDialog(this,
+            "Mark " + ids.size() + " of today's appointments as completed?",
+            "Complete Today's Appointments",
+            JOptionPane.YES_NO_OPTION);
+        if (choice != JOptionPane.YES_OPTION) return;
+
+        setBusy("Completing " + ids.size() + " appointment(s)...");
+        async.updateAppointmentStatuses(ids, "completed", null).whenComplete((updated, error) -> {
+            setBusy(null);
+            if (updated != null && updated >= 0) {
+                publishStatusChange(ids, "completed", null);
                 JOptionPane.showMessageDialog(this,
-                    "Appointment rejected successfully.");
-                loadRequests(); // Refresh the table
+                    updated + " appointment(s) marked as completed.");
             } else {
                 JOptionPane.showMessageDialog(this,
-                    "Failed to reject appointment.",
+                    "Failed to complete today's appointments.",
                     "Error",
                     JOptionPane.ERROR_MESSAGE);
             }
+        });
+    }
+
+    /**
+     * Give the selected requests, or every request still without a date or
+     * time when none is selected, the earliest free slot in one request
+     */
+    private void autoSchedulePending() {
+        List<Integer> ids = new ArrayList<>();
+        for (int row : table.getSelectedRows()) {
+            ids.add(appointments.get(row).getAppointmentId());
         }
+
+        int choice = JOptionPane.showConfirmDialog(this,
+            ids.isEmpty()
+                ? "Give every unscheduled request the earliest free time?"
+                : "Give the " + ids.size() + " selected request(s) the earliest free time?",
+            "Auto-Schedule",
+            JOptionPane.YES_NO_OPTION);
+        if (choice != JOptionPane.YES_OPTION) return;
+
+        setBusy("Scheduling...");
+        (ids.isEmpty() ? async.allocateSlotsForDoctor(doctorId) : async.allocateSlots(ids))
+            .whenComplete((allocation, error) -> {
+                setBusy(null);
+                if (allocation == null) {
+                    JOptionPane.showMessageDialog(this,
+                        "Failed to schedule the requests.",
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                for (SlotAllocation.Assignment slot : allocation.getAssigned()) {
+                    Appointment a = listed(slot.appointmentId());
+                    if (a == null) continue;
+                    Appointment scheduled = new Appointment(a);
+                    scheduled.setAppointmentDate(java.sql.Date.valueOf(slot.date()));
+                    scheduled.setAppointmentTime(slot.time().toString());
+                    scheduled.setVersion(-1);
+                    publishUpdated(scheduled);
+                }
+                int left = allocation.getUnassigned().size();
+                JOptionPane.showMessageDialog(this,
+                    allocation.getAssigned().size() + " appointment(s) scheduled."
+                    + (left > 0 ? "\n" + left + " could not be given a free time." : ""));
+            });
     }
 
     /**
-     * Load appointment requests for this doctor
+     * Load appointment requests for this doctor: the full list the first
+     * time, afterwards only the rows changed since the previous refresh
      */
     private void loadRequests() {
-        tableModel.setRowCount(0);
-        this.appointments = restClient.getAllAppointments();
-        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-
-        for (Appointment a : this.appointments) {
-            // Only show appointments for this doctor that are in "scheduled" status
-            // (pending approval from doctor)
-            if (a.getDoctorId() == doctorId) {
-
-                String dateStr  = a.getAppointmentDate() != null
-                    ? df.format(a.getAppointmentDate())
-                    : "Not set";
-                String timeStr  = a.getAppointmentTime() != null
-                    ? a.getAppointmentTime()
-                    : "Not set";
-                String notesStr = a.getNotes() != null
-                    ? a.getNotes()
-                    : "";
-
-                tableModel.addRow(new Object[]{
-                    a.getAppointmentId(),
-                    a.getPatientName(),
-                    dateStr,
-                    timeStr,
-                    notesStr,
-                    a.getStatus()
-                });
-            }
+        // a sync updates the store as it runs, so it is never cancelled;
+        // a refresh asked for meanwhile runs once it has finished
+        if (syncTask != null && !syncTask.isDone()) {
+            syncAgain = true;
+            return;
+        }
+        boolean first = !store.isLoaded();
+        if (first) {
+            statusLabel.setText("Loading appointment requests...");
         }
+        syncTask = async.syncAppointments(store);
+        syncTask.whenComplete((changes, error) -> {
+            if (first) {
+                statusLabel.setText(" ");
+            }
+            if (error != null || changes == null) {
+                JOptionPane.showMessageDialog(this,
+                    "Failed to load appointment requests.",
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE);
+            } else if (!first) {
+                for (AppointmentEvent change : changes) {
+                    applyChange(change);
+                }
+            } else {
+                tableModel.setRowCount(0);
+                // row index == list index
+                this.appointments = store.getAppointments();
+                rowById.clear();
+                reindexFrom(0);
+                for (Appointment a : this.appointments) {
+                    tableModel.addRow(toRow(a));
+                }
+            }
+            if (syncAgain) {
+                syncAgain = false;
+                loadRequests();
+            }
+        });
+    }
+
+    private static Object[] toRow(Appointment a) {
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+        String dateStr  = a.getAppointmentDate() != null
+            ? df.format(a.getAppointmentDate())
+            : "Not set";
+        String timeStr  = a.getAppointmentTime() != null
+            ? a.getAppointmentTime()
+            : "Not set";
+        String notesStr = a.getNotes() != null
+            ? a.getNotes()
+            : "";
+
+        return new Object[]{
+            a.getAppointmentId(),
+            a.getPatientName(),
+            dateStr,
+            timeStr,
+            notesStr,
+            a.getStatus()
+        };
     }
 
     /**
@@ -258,6 +519,9 @@ public class DoctorRequestWindow extends JFrame {
      */
     private class CalendarSchedulingDialog extends JDialog {
         private static final long serialVersionUID = 1L;
+        private static final DateTimeFormatter MONTH_TITLE = DateTimeFormatter.ofPattern("MMMM yyyy");
+        private static final Color BUSY_DAY = new Color(255, 236, 179);
+        private static final Color FULL_DAY = new Color(255, 205, 210);
         
         private boolean confirmed = false;
         private Date selectedDate;
@@ -267,14 +531,20 @@ public class DoctorRequestWindow extends JFrame {
         private JPanel calendarPanel;
         private JComboBox<String> timeComboBox;
         private JTextArea notesArea;
-        private Calendar calendar;
+        private YearMonth shownMonth;
         private JLabel monthYearLabel;
         private JButton[][] dayButtons;
         private JButton selectedDayButton;
+        private JLabel slotsLabel;
+        private LocalDate selectedDay;
+        // the doctor's bookings per month, each fetched once while the dialog is open
+        private Map<YearMonth, CompletableFuture<MonthAvailability>> months = new HashMap<>();
+        private Appointment appointment;
 
         public CalendarSchedulingDialog(JFrame parent, Appointment appointment) {
             super(parent, "Schedule Appointment - " + appointment.getPatientName(), true);
-            this.calendar = Calendar.getInstance();
+            this.shownMonth = YearMonth.now();
+            this.appointment = appointment;
             
             initializeComponents();
             setupLayout();
@@ -340,6 +610,20 @@ public class DoctorRequestWindow extends JFrame {
                 timeComboBox.addItem(time);
             }
             timeComboBox.setSelectedItem("09:00");
+            timeComboBox.setRenderer(new DefaultListCellRenderer() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                              boolean isSelected, boolean cellHasFocus) {
+                    boolean booked = value != null && isTaken((String) value);
+                    super.getListCellRendererComponent(list, booked ? value + "  (booked)" : value,
+                        index, isSelected, cellHasFocus);
+                    if (booked && !isSelected) setForeground(Color.GRAY);
+                    return this;
+                }
+            });
+            slotsLabel = new JLabel("Select a date to see booked times");
             
             // Notes
             notesArea = new JTextArea(3, 30);
@@ -349,12 +633,12 @@ public class DoctorRequestWindow extends JFrame {
             
             // Navigation buttons
             prevMonthBtn.addActionListener(e -> {
-                calendar.add(Calendar.MONTH, -1);
+                shownMonth = shownMonth.minusMonths(1);
                 updateCalendarDisplay();
             });
             
             nextMonthBtn.addActionListener(e -> {
-                calendar.add(Calendar.MONTH, 1);
+                shownMonth = shownMonth.plusMonths(1);
                 updateCalendarDisplay();
             });
         }
@@ -368,12 +652,12 @@ public class DoctorRequestWindow extends JFrame {
             JButton nextMonthBtn = new JButton("▶");
             
             prevMonthBtn.addActionListener(e -> {
-                calendar.add(Calendar.MONTH, -1);
+                shownMonth = shownMonth.minusMonths(1);
                 updateCalendarDisplay();
             });
             
             nextMonthBtn.addActionListener(e -> {
-                calendar.add(Calendar.MONTH, 1);
+                shownMonth = shownMonth.plusMonths(1);
                 updateCalendarDisplay();
             });
             
@@ -394,6 +678,7 @@ public class DoctorRequestWindow extends JFrame {
             JPanel timePanel = new JPanel(new FlowLayout());
             timePanel.add(new JLabel("Time:"));
             timePanel.add(timeComboBox);
+            timePanel.add(slotsLabel);
             
             // Notes panel
             JPanel notesPanel = new JPanel(new BorderLayout());
@@ -425,23 +710,14 @@ public class DoctorRequestWindow extends JFrame {
         }
 
         private void updateCalendarDisplay() {
-            // Update month/year label
-            SimpleDateFormat monthYearFormat = new SimpleDateFormat("MMMM yyyy");
-            monthYearLabel.setText(monthYearFormat.format(calendar.getTime()));
-            
-            // Get first day of the month
-            Calendar firstDay = (Calendar) calendar.clone();
-            firstDay.set(Calendar.DAY_OF_MONTH, 1);
-            
-            // Get today's date for comparison
-            Calendar today = Calendar.getInstance();
-            
-            // Clear previous selection
+            monthYearLabel.setText(shownMonth.format(MONTH_TITLE));
+            MonthAvailability availability = availability(shownMonth);
+            LocalDate today = LocalDate.now();
             selectedDayButton = null;
-            
+
             // Calculate starting position
-            int startDay = firstDay.get(Calendar.DAY_OF_WEEK) - 1; // 0 = Sunday
-            int daysInMonth = firstDay.getActualMaximum(Calendar.DAY_OF_MONTH);
+            int startDay = shownMonth.atDay(1).getDayOfWeek().getValue() % 7; // 0 = Sunday
+            int daysInMonth = shownMonth.lengthOfMonth();
             
             // Reset all buttons
             for (int week = 0; week < 6; week++) {
@@ -450,6 +726,7 @@ public class DoctorRequestWindow extends JFrame {
                     dayButtons[week][day].setEnabled(false);
                     dayButtons[week][day].setBackground(null);
                     dayButtons[week][day].setBorder(null);
+                    dayButtons[week][day].setToolTipText(null);
                 }
             }
             
@@ -460,25 +737,52 @@ public class DoctorRequestWindow extends JFrame {
                 
                 if (week < 6) {
                     JButton dayBtn = dayButtons[week][dayOfWeek];
+                    LocalDate date = shownMonth.atDay(day);
                     dayBtn.setText(String.valueOf(day));
-                    
-                    // Check if this date is today or in the future
-                    Calendar dayDate = (Calendar) firstDay.clone();
-                    dayDate.set(Calendar.DAY_OF_MONTH, day);
-                    
-                    if (dayDate.get(Calendar.YEAR) > today.get(Calendar.YEAR) ||
-                        (dayDate.get(Calendar.YEAR) == today.get(Calendar.YEAR) &&
-                         dayDate.get(Calendar.DAY_OF_YEAR) >= today.get(Calendar.DAY_OF_YEAR))) {
-                        dayBtn.setEnabled(true);
-                        dayBtn.setBackground(Color.WHITE);
-                    } else {
-                        dayBtn.setEnabled(false);
+                    dayBtn.setBorder(new LineBorder(Color.GRAY));
+
+                    if (date.isBefore(today)) {
                         dayBtn.setBackground(Color.LIGHT_GRAY);
+                    } else if (availability != null && availability.isFull(date)) {
+                        dayBtn.setBackground(FULL_DAY);
+                        dayBtn.setToolTipText("Fully booked");
+                    } else {
+                        dayBtn.setEnabled(true);
+                        int booked = availability != null ? availability.bookedCount(date) : 0;
+                        dayBtn.setBackground(booked > 0 ? BUSY_DAY : Color.WHITE);
+                        if (booked > 0) dayBtn.setToolTipText(booked + " time(s) booked");
+                        if (date.equals(selectedDay)) {
+                            dayBtn.setBackground(Color.BLUE);
+                            dayBtn.setBorder(new LineBorder(Color.DARK_GRAY, 2));
+                            selectedDayButton = dayBtn;
+                        }
                     }
-                    
-                    dayBtn.setBorder(new LineBorder(Color.GRAY));
                 }
             }
+
+            // the months either side are likely next; have them ready
+            availability(shownMonth.minusMonths(1));
+            availability(shownMonth.plusMonths(1));
+        }
+
+        /**
+         * The doctor's bookings for {@code month}, or null while they load
+         * (the request is started here the first time) or if loading failed.
+         * Each month is requested once per dialog; when it arrives the
+         * calendar and time list are redrawn.
+         */
+        private MonthAvailability availability(YearMonth month) {
+            CompletableFuture<MonthAvailability> task = months.get(month);
+            if (task == null) {
+                task = async.getMonthAvailability(doctorId, month);
+                months.put(month, task);
+                task.whenComplete((loaded, error) -> {
+                    if (AsyncRestClient.isCancellation(error)) return;
+                    if (month.equals(shownMonth)) updateCalendarDisplay();
+                    if (selectedDay != null && month.equals(YearMonth.from(selectedDay))) updateTimes();
+                });
+            }
+            return task.isDone() && !task.isCompletedExceptionally() ? task.getNow(null) : null;
         }
 
         private void selectDay(int week, int day) {
@@ -487,22 +791,59 @@ public class DoctorRequestWindow extends JFrame {
                 return;
             }
             
-            // Reset previous selection
-            if (selectedDayButton != null) {
-                selectedDayButton.setBackground(Color.WHITE);
-                selectedDayButton.setBorder(new LineBorder(Color.GRAY));
+            selectedDay = shownMonth.atDay(Integer.parseInt(clickedBtn.getText()));
+            selectedDate = java.sql.Date.valueOf(selectedDay);
+            updateCalendarDisplay();
+            updateTimes();
+        }
+
+        /** Mark the selected day's booked times and move off one if it is selected. */
+        private void updateTimes() {
+            if (availability(YearMonth.from(selectedDay)) == null) {
+                boolean failed = months.get(YearMonth.from(selectedDay)).isDone();
+                slotsLabel.setText(failed ? "Could not check booked times" : "Checking booked times...");
+                timeComboBox.repaint();
+                return;
             }
-            
-            // Highlight selected day
-            clickedBtn.setBackground(Color.BLUE);
-            clickedBtn.setBorder(new LineBorder(Color.DARK_GRAY, 2));
-            selectedDayButton = clickedBtn;
-            
-            // Calculate selected date
-            int selectedDay = Integer.parseInt(clickedBtn.getText());
-            Calendar selectedCal = (Calendar) calendar.clone();
-            selectedCal.set(Calendar.DAY_OF_MONTH, selectedDay);
-            selectedDate = selectedCal.getTime();
+            int booked = 0;
+            for (int i = 0; i < timeComboBox.getItemCount(); i++) {
+                if (isTaken(timeComboBox.getItemAt(i))) booked++;
+            }
+            slotsLabel.setText(booked == 0 ? "All times free" : booked + " time(s) booked");
+            if (isTaken((String) timeComboBox.getSelectedItem())) {
+                for (int i = 0; i < timeComboBox.getItemCount(); i++) {
+                    if (!isTaken(timeComboBox.getItemAt(i))) {
+                        timeComboBox.setSelectedIndex(i);
+                        break;
+                    }
+                }
+            }
+            timeComboBox.repaint();
+        }
+
+        /**
+         * True when another appointment holds the slot of {@code time} on the
+         * selected day. The slot this appointment already holds is not counted.
+         */
+        private boolean isTaken(String time) {
+            if (selectedDay == null || time == null) return false;
+            MonthAvailability availability = availability(YearMonth.from(selectedDay));
+            if (availability == null) return false;
+            LocalTime start = LocalTime.parse(time);
+            if (!availability.isBooked(selectedDay, start)) return false;
+            String ownTime = appointment.getAppointmentTime();
+            return !(appointment.getAppointmentDate() != null && ownTime != null && ownTime.length() >= 5
+                && !"cancelled".equals(appointment.getStatus())
+                && new java.sql.Date(appointment.getAppointmentDate().getTime()).toLocalDate().equals(selectedDay)
+                && availability.slotOf(LocalTime.parse(ownTime.substring(0, 5))) == availability.slotOf(start));
+        }
+
+        @Override
+        public void dispose() {
+            for (CompletableFuture<MonthAvailability> task : months.values()) {
+                task.cancel(true);
+            }
+            super.dispose();
         }
 
         private void confirmScheduling() {
@@ -515,6 +856,13 @@ public class DoctorRequestWindow extends JFrame {
             }
             
             selectedTime = (String) timeComboBox.getSelectedItem();
+            if (isTaken(selectedTime)) {
+                JOptionPane.showMessageDialog(this,
+                    "The doctor already has an appointment at " + selectedTime + " on that day.",
+                    "Time Booked",
+                    JOptionPane.WARNING_MESSAGE);
+                return;
+            }
             notes = notesArea.getText().trim();
             
             if (notes.isEmpty()) {
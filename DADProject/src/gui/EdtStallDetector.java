@@ -0,0 +1,109 @@
+package gui;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+
+/**
+ * Logs every event the EDT spends more than a threshold dispatching
+ * (default 100 ms, -Dhospital.edt.stallMs; 0 turns it off). It is pushed
+ * onto the system event queue once at startup. A watchdog thread samples
+ * the EDT's stack while an event runs long, so the log shows where it was
+ * stuck and not only for how long.
+ *
+ * Events that open a modal dialog keep pumping other events while the user
+ * looks at it; those are not reported, only the events dispatched inside.
+ */
+public class EdtStallDetector extends EventQueue {
+
+    private static final int MAX_FRAMES = 12;
+    private static boolean installed = false;
+
+    private final long thresholdNanos;
+    // EDT only: nesting level, and the deepest level reached since the outermost event began
+    private int depth = 0;
+    private int deepest = 0;
+    // read by the watchdog; start of the innermost running event, 0 when idle
+    private volatile long runningSince = 0;
+    private volatile Thread dispatchThread;
+    private volatile long sampledFor = 0;
+    private volatile StackTraceElement[] sample;
+
+    private EdtStallDetector(long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis * 1_000_000L;
+    }
+
+    /** Start watching the EDT; later calls do nothing. */
+    public static synchronized void install() {
+        long threshold = Long.getLong("hospital.edt.stallMs", 100L);
+        if (installed || threshold <= 0) return;
+        installed = true;
+        EdtStallDetector detector = new EdtStallDetector(threshold);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(detector);
+
+        Thread watchdog = new Thread(() -> detector.watch(Math.max(threshold / 2, 10)), "EdtStallWatchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        depth++;
+        deepest = Math.max(deepest, depth);
+        long start = System.nanoTime();
+        dispatchThread = Thread.currentThread();
+        runningSince = start;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            runningSince = 0;
+            // a deeper level ran meanwhile: this one was pumping a modal loop
+            boolean pumped = deepest > depth;
+            if (!pumped && elapsed > thresholdNanos) {
+                report(event, elapsed, sampledFor == start ? sample : null);
+            }
+            depth--;
+            if (depth == 0) deepest = 0;
+        }
+    }
+
+    private void watch(long intervalMillis) {
+        while (true) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long since = runningSince;
+            Thread edt = dispatchThread;
+            if (since == 0 || edt == null || sampledFor == since) continue;
+            if (System.nanoTime() - since > thresholdNanos) {
+                StackTraceElement[] stack = edt.getStackTrace();
+                if (runningSince == since) {
+                    sample = stack;
+                    sampledFor = since;
+                }
+            }
+        }
+    }
+
+    private static void report(AWTEvent event, long elapsedNanos, StackTraceElement[] stack) {
+        StringBuilder msg = new StringBuilder("EDT stall: ")
+            .append(elapsedNanos / 1_000_000L).append(" ms dispatching ")
+            .append(describe(event));
+        if (stack != null) {
+            for (int i = 0; i < stack.length && i < MAX_FRAMES; i++) {
+                msg.append("\n    at ").append(stack[i]);
+            }
+        }
+        System.err.println(msg);
+    }
+
+    private static String describe(AWTEvent event) {
+        String params = event.paramString();
+        if (params.length() > 160) params = params.substring(0, 160) + "...";
+        return event.getClass().getSimpleName() + "[" + params + "] on "
+            + event.getSource().getClass().getName();
+    }
+}
@@ -0,0 +1,442 @@
+package gui;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import javax.swing.BoundedRangeModel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+import services.AsyncRestClient;
+
+/**
+ * Table model that pulls rows from the server one keyset page at a time.
+ * The first page is requested on {@link #reload()}; further pages are fetched
+ * in the background as the attached scroll pane nears the bottom.
+ *
+ * At most {@link #MAX_LOADED_PAGES} pages hold their rows at once. Past that,
+ * the pages farthest from the viewport drop their rows and keep only their
+ * size and the row they were fetched after; when one is painted again it is
+ * fetched again from that cursor. Row indexes do not move when a page is
+ * dropped, so the scroll position and the selection stay where they were,
+ * and a dropped row shows blank until its page is back. A dropped page only
+ * learns its new size from that fetch: a pushed change that touches it
+ * ({@link #invalidate(Object)}, or {@link #insertSorted} landing in it) asks
+ * for the fetch again instead of guessing the size.
+ */
+@SuppressWarnings("serial")
+public abstract class LazyTableModel<T> extends AbstractTableModel {
+
+    private static final int PREFETCH_ROWS = 20;
+
+    /** Pages kept in memory at once, -Dhospital.table.maxPages (default 10). */
+    static final int MAX_LOADED_PAGES = Math.max(3, Integer.getInteger("hospital.table.maxPages", 10));
+
+    /** One fetched page: the keyset cursor it starts after and, while loaded, its rows. */
+    private static final class Page<T> {
+        final int index;
+        final T after;
+        List<T> rows;  // null once dropped
+        int size;
+        CompletableFuture<List<T>> refetch;
+        boolean failed;
+
+        Page(int index, T after, List<T> rows) {
+            this.index = index;
+            this.after = after;
+            this.rows = rows;
+            this.size = rows.size();
+        }
+    }
+
+    private final String[] columns;
+    private final int pageSize;
+    private final List<Page<T>> pages = new ArrayList<>();
+    // first row index of each page; rebuilt after a page changes size
+    private int[] starts = new int[0];
+    private boolean startsStale = false;
+    private int rowCount = 0;
+    private int loadedPages = 0;
+    // last row the server returned; the next page is fetched after it
+    private T tail;
+    // keyOf(row) -> page holding it, kept when the page is dropped so a pushed
+    // change still finds its page; may name a page the row has since left
+    private final Map<Object, Page<T>> pageByKey = new HashMap<>();
+    private JScrollPane scrollPane;
+    private boolean loading = false;
+    private boolean exhausted = false;
+    // bumped on reload() so pages requested before it are dropped
+    private int generation = 0;
+    private CompletableFuture<List<T>> pending;
+
+    protected LazyTableModel(String[] columns, int pageSize) {
+        this.columns = columns;
+        this.pageSize = pageSize;
+    }
+
+    /** Fetch up to {@code limit} rows sorted after {@code after}; called off the EDT. */
+    protected abstract List<T> fetchPage(T after, int limit) throws Exception;
+
+    protected abstract Object valueAt(T row, int column);
+
+    /** Identity of a row (e.g. its database id), used by {@link #indexOf(Object)}. */
+    protected abstract Object keyOf(T row);
+
+    protected void onLoadError(Exception ex) {
+        ex.printStackTrace();
+    }
+
+    /** Load more rows whenever the user scrolls close to the end. */
+    public void attach(JScrollPane pane) {
+        this.scrollPane = pane;
+        pane.getVerticalScrollBar().addAdjustmentListener(e -> {
+            if (!e.getValueIsAdjusting() && nearBottom()) loadMore();
+        });
+    }
+
+    /** Drop everything and fetch the first page again. */
+    public void reload() {
+        generation++;
+        if (pending != null) pending.cancel(true);
+        for (Page<T> page : pages) {
+            if (page.refetch != null) page.refetch.cancel(true);
+        }
+        loading = false;
+        exhausted = false;
+        pages.clear();
+        pageByKey.clear();
+        startsStale = true;
+        rowCount = 0;
+        loadedPages = 0;
+        tail = null;
+        fireTableDataChanged();
+        loadMore();
+    }
+
+    public void loadMore() {
+        if (loading || exhausted) return;
+        loading = true;
+        final int gen = generation;
+        final T after = tail;
+
+        pending = AsyncRestClient.getInstance().submit(() -> fetchPage(after, pageSize));
+        pending.whenComplete((rows, error) -> {
+            if (gen != generation) return; // reloaded meanwhile
+            loading = false;
+            if (error != null) {
+                onLoadError(error instanceof Exception ex ? ex : new RuntimeException(error));
+                return;
+            }
+            if (rows.size() < pageSize) exhausted = true;
+            if (!rows.isEmpty()) {
+                int first = rowCount;
+                Page<T> page = addPage(after, new ArrayList<>(rows));
+                tail = rows.get(rows.size() - 1);
+                fireTableRowsInserted(first, rowCount - 1);
+                dropFarPages(page);
+            }
+            // keep going until the viewport is full or the data runs out
+            SwingUtilities.invokeLater(() -> {
+                if (nearBottom()) loadMore();
+            });
+        });
+    }
+
+    private Page<T> addPage(T after, List<T> rows) {
+        Page<T> page = new Page<>(pages.size(), after, rows);
+        pages.add(page);
+        for (T row : rows) pageByKey.put(keyOf(row), page);
+        rowCount += page.size;
+        loadedPages++;
+        startsStale = true;
+        return page;
+    }
+
+    /**
+     * Fetch a dropped page again from its cursor. Its rows are the ones up to
+     * and including the cursor of the page after it, so rows added or removed
+     * meanwhile change its size rather than spill into the neighbours.
+     */
+    private void refetch(Page<T> page) {
+        if (page.refetch != null || page.failed) return;
+        final int gen = generation;
+        final boolean last = page.index == pages.size() - 1;
+        final Object until = last ? null : keyOf(pages.get(page.index + 1).after);
+        // once the data has run out, the last page takes every row after its cursor
+        final int limit = last && !exhausted ? page.size : page.size + pageSize;
+
+        CompletableFuture<List<T>> request = AsyncRestClient.getInstance().submit(() -> fetchPage(page.after, limit));
+        page.refetch = request;
+        request.whenComplete((fetched, error) -> {
+            // reloaded, or superseded by invalidate()
+            if (gen != generation || page.refetch != request) return;
+            page.refetch = null;
+            if (error != null) {
+                // left blank until the next reload instead of retrying on every repaint
+                page.failed = true;
+                onLoadError(error instanceof Exception ex ? ex : new RuntimeException(error));
+                return;
+            }
+            int end = fetched.size();
+            if (until != null) {
+                end = Math.min(end, page.size);
+                for (int i = 0; i < fetched.size(); i++) {
+                    if (keyOf(fetched.get(i)).equals(until)) {
+                        end = i + 1;
+                        break;
+                    }
+                }
+            }
+            List<T> rows = new ArrayList<>(fetched.subList(0, end));
+            int start = startOf(page);
+            int oldSize = page.size;
+            page.rows = rows;
+            page.size = rows.size();
+            for (T row : rows) pageByKey.put(keyOf(row), page);
+            loadedPages++;
+            // pages may have been appended since it was asked for
+            if (page.index == pages.size() - 1 && !rows.isEmpty()) tail = rows.get(rows.size() - 1);
+            if (page.size != oldSize) {
+                rowCount += page.size - oldSize;
+                startsStale = true;
+                if (page.size > oldSize) fireTableRowsInserted(start + oldSize, start + page.size - 1);
+                else fireTableRowsDeleted(start + page.size, start + oldSize - 1);
+            }
+            if (page.size > 0) fireTableRowsUpdated(start, start + page.size - 1);
+            dropFarPages(page);
+        });
+    }
+
+    /**
+     * Drop the rows of the loaded pages farthest from the viewport until few
+     * enough are left, never those of {@code keep}, the page just fetched.
+     */
+    private void dropFarPages(Page<T> keep) {
+        if (loadedPages <= MAX_LOADED_PAGES) return;
+        int[] visible = visibleRows();
+        while (loadedPages > MAX_LOADED_PAGES) {
+            Page<T> farthest = null;
+            int farthestDistance = -1;
+            for (Page<T> page : pages) {
+                if (page.rows == null || page == keep) continue;
+                int start = startOf(page);
+                int distance = Math.max(0, Math.max(start - visible[1], visible[0] - (start + page.size - 1)));
+                if (distance > farthestDistance) {
+                    farthest = page;
+                    farthestDistance = distance;
+                }
+            }
+            if (farthest == null || farthestDistance == 0) return;
+            farthest.rows = null;
+            loadedPages--;
+        }
+    }
+
+    // first and last row in view; the end of the list while nothing is shown,
+    // since that is where rows are being loaded
+    private int[] visibleRows() {
+        int last = Math.max(0, rowCount - 1);
+        if (scrollPane == null || !(scrollPane.getViewport().getView() instanceof JTable table)) {
+            return new int[]{last, last};
+        }
+        Rectangle view = scrollPane.getViewport().getViewRect();
+        int first = table.rowAtPoint(new Point(0, view.y));
+        int end = table.rowAtPoint(new Point(0, view.y + view.height - 1));
+        if (first < 0) return new int[]{last, last};
+        return new int[]{first, end < 0 ? last : end};
+    }
+
+    private boolean nearBottom() {
+        // not laid out yet: the scroll bar model is meaningless until shown
+        if (scrollPane == null || !scrollPane.isShowing()) return false;
+        BoundedRangeModel m = scrollPane.getVerticalScrollBar().getModel();
+        int rowHeight = 16;
+        if (scrollPane.getViewport().getView() instanceof JTable table) {
+            rowHeight = table.getRowHeight();
+        }
+        return m.getValue() + m.getExtent() >= m.getMaximum() - PREFETCH_ROWS * rowHeight;
+    }
+
+    private int startOf(Page<T> page) {
+        if (startsStale) {
+            if (starts.length < pages.size()) starts = new int[Math.max(pages.size(), starts.length * 2)];
+            int start = 0;
+            for (Page<T> p : pages) {
+                starts[p.index] = start;
+                start += p.size;
+            }
+            startsStale = false;
+        }
+        return starts[page.index];
+    }
+
+    private Page<T> pageAt(int rowIndex) {
+        startOf(pages.get(0));
+        int lo = 0;
+        int hi = pages.size() - 1;
+        // last page starting at or before rowIndex; empty pages share the next one's start
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= rowIndex) lo = mid;
+            else hi = mid - 1;
+        }
+        return pages.get(lo);
+    }
+
+    /** The row at {@code index}, or null while its page is being fetched again. */
+    public T getRow(int index) {
+        Page<T> page = pageAt(index);
+        if (page.rows == null) {
+            refetch(page);
+            return null;
+        }
+        return page.rows.get(index - startOf(page));
+    }
+
+    /** True once the server has returned its last page. */
+    protected boolean isExhausted() {
+        return exhausted;
+    }
+
+    protected boolean isLoading() {
+        return loading;
+    }
+
+    // single-row edits, so a pushed change repaints one row instead of the table
+
+    /** Index of the row with key {@code key}, or -1 if its page is not loaded. */
+    protected int indexOf(Object key) {
+        Page<T> page = pageByKey.get(key);
+        if (page == null || page.rows == null) return -1;
+        for (int i = 0; i < page.rows.size(); i++) {
+            if (keyOf(page.rows.get(i)).equals(key)) return startOf(page) + i;
+        }
+        return -1;
+    }
+
+    /**
+     * The row with key {@code key} changed while its page is dropped: fetch
+     * that page again when it is next shown. Its size is left alone; the
+     * fetch brings the right one. Nothing happens for a loaded or unknown row.
+     */
+    protected void invalidate(Object key) {
+        Page<T> page = pageByKey.get(key);
+        if (page != null && page.rows == null) invalidate(page);
+    }
+
+    private void invalidate(Page<T> page) {
+        // an answer already on its way may predate the change
+        CompletableFuture<List<T>> request = page.refetch;
+        page.refetch = null;
+        if (request != null) request.cancel(true);
+        page.failed = false;
+        if (page.size > 0) {
+            int start = startOf(page);
+            fireTableRowsUpdated(start, start + page.size - 1);
+        }
+    }
+
+    /** Replace a loaded row with one that sorts the same. */
+    protected void setRow(int index, T row) {
+        Page<T> page = pageAt(index);
+        T old = page.rows.set(index - startOf(page), row);
+        pageByKey.remove(keyOf(old), page);
+        pageByKey.put(keyOf(row), page);
+        fireTableRowsUpdated(index, index);
+    }
+
+    /** Remove a loaded row. */
+    protected void removeRow(int index) {
+        Page<T> page = pageAt(index);
+        T old = page.rows.remove(index - startOf(page));
+        pageByKey.remove(keyOf(old), page);
+        page.size--;
+        rowCount--;
+        startsStale = true;
+        fireTableRowsDeleted(index, index);
+    }
+
+    /**
+     * Insert a row where {@code order} (the server's sort order) puts it. A
+     * dropped page is only fetched again, as the row may already be counted
+     * in its size (an event applied twice). Past the last loaded row it
+     * belongs to a page not fetched yet, which will bring it along, so it is
+     * only appended when there are no more pages.
+     */
+    protected void insertSorted(T row, Comparator<? super T> order) {
+        boolean more = !exhausted || loading;
+        if (pages.isEmpty()) {
+            if (more) return;
+            addPage(null, new ArrayList<>(List.of(row)));
+            tail = row;
+            fireTableRowsInserted(0, 0);
+            return;
+        }
+        // the page whose range (after, next page's after] takes the row
+        int lo = 0;
+        int hi = pages.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (order.compare(pages.get(mid).after, row) < 0) lo = mid;
+            else hi = mid - 1;
+        }
+        Page<T> page = pages.get(lo);
+        boolean last = lo == pages.size() - 1;
+        if (last && more && order.compare(row, tail) > 0) return;
+
+        if (page.rows == null) {
+            invalidate(page);
+            return;
+        }
+        int start = startOf(page);
+        int l = 0;
+        int h = page.rows.size();
+        while (l < h) {
+            int mid = (l + h) >>> 1;
+            if (order.compare(page.rows.get(mid), row) < 0) l = mid + 1;
+            else h = mid;
+        }
+        int at = l;
+        page.rows.add(at, row);
+        pageByKey.put(keyOf(row), page);
+        if (last && order.compare(row, tail) > 0) tail = row;
+        page.size++;
+        rowCount++;
+        startsStale = true;
+        fireTableRowsInserted(start + at, start + at);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        T row = getRow(rowIndex);
+        return row != null ? valueAt(row, columnIndex) : null;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+}
@@ -8,7 +8,9 @@ import java.awt.event.WindowEvent;
 import javax.swing.JFrame;
 import javax.swing.JTabbedPane;
 
+import services.AsyncRestClient;
 import services.ReminderThread;
+import services.RestClient;
 
 public class MainFrame {
 
@@ -20,6 +22,7 @@ public class MainFrame {
     private DoctorPanel doctorPanel;
 
     public static void main(String[] args) {
+        EdtStallDetector.install();
         EventQueue.invokeLater(() -> {
             try {
                 MainFrame window = new MainFrame();
@@ -74,6 +77,8 @@ public class MainFrame {
             @Override
             public void windowClosing(WindowEvent e) {
                 if (reminderThread != null) reminderThread.stopReminder();
+                AsyncRestClient.getInstance().shutdown();
+                RestClient.shutdown();
             }
         });
     }
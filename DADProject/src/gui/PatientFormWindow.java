@@ -2,9 +2,10 @@ package gui;
 
 import javax.swing.*;
 import models.Patient;
-import services.RestClient;
+import services.AsyncRestClient;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 
 public class PatientFormWindow extends JFrame {
 
@@ -15,14 +16,15 @@ public class PatientFormWindow extends JFrame {
     private JTextField addressField;
     private JTextField dobField;
 
-    private RestClient restClient;
+    private AsyncRestClient async;
+    private JButton btnSave;
     private PatientPanel parent;
     private Patient patientToEdit;
 
     public PatientFormWindow(PatientPanel parent, Patient patientToEdit) {
         this.parent = parent;
         this.patientToEdit = patientToEdit;
-        this.restClient = new RestClient();
+        this.async = AsyncRestClient.getInstance();
 
         boolean isEdit = patientToEdit != null;
 
@@ -80,7 +82,7 @@ public class PatientFormWindow extends JFrame {
         dobField.setBounds(180, 231, 160, 20);
         getContentPane().add(dobField);
 
-        JButton btnSave = new JButton(isEdit ? "Update" : "Save");
+        btnSave = new JButton(isEdit ? "Update" : "Save");
         btnSave.setBounds(138, 280, 100, 30);
         getContentPane().add(btnSave);
 
@@ -126,14 +128,7 @@ public class PatientFormWindow extends JFrame {
         p.setAddress(addressField.getText());
         p.setDateOfBirth(parseDateInput());
 
-        boolean success = restClient.createPatient(p);
-        if (success) {
-            JOptionPane.showMessageDialog(this, "Patient added successfully.");
-            parent.refreshPatientTable();
-            dispose();
-        } else {
-            JOptionPane.showMessageDialog(this, "Failed to add patient.");
-        }
+        save(async.createPatient(p), "Patient added successfully.", "Failed to add patient.");
     }
 
     private void updatePatient() {
@@ -144,13 +139,24 @@ public class PatientFormWindow extends JFrame {
         patientToEdit.setAddress(addressField.getText());
         patientToEdit.setDateOfBirth(parseDateInput());
 
-        boolean success = restClient.updatePatient(patientToEdit);
-        if (success) {
-            JOptionPane.showMessageDialog(this, "Patient updated successfully.");
-            parent.refreshPatientTable();
-            dispose();
-        } else {
-            JOptionPane.showMessageDialog(this, "Failed to update patient.");
-        }
+        save(async.updatePatient(patientToEdit), "Patient updated successfully.", "Failed to update patient.");
+    }
+
+    /** Keep the form open but inert while the request runs; report on the EDT. */
+    private void save(CompletableFuture<Boolean> request, String done, String failed) {
+        String label = btnSave.getText();
+        btnSave.setEnabled(false);
+        btnSave.setText("Saving...");
+        request.whenComplete((success, error) -> {
+            if (Boolean.TRUE.equals(success)) {
+                JOptionPane.showMessageDialog(this, done);
+                parent.refreshPatientTable();
+                dispose();
+            } else {
+                btnSave.setEnabled(true);
+                btnSave.setText(label);
+                JOptionPane.showMessageDialog(this, failed);
+            }
+        });
     }
 }
@@ -1,32 +1,60 @@
 package gui;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import models.Patient;
 import services.RestClient;
 
 import java.awt.event.ActionEvent;
+import java.text.SimpleDateFormat;
 import java.util.*;
 
 @SuppressWarnings("serial")
 public class PatientPanel extends JPanel {
 
     private RestClient restClient;
-    private DefaultTableModel tableModel;
+    private LazyTableModel<Patient> tableModel;
     private JTable table;
 
+    private static final int PAGE_SIZE = 100;
+
     public PatientPanel() {
         setLayout(null);
-        this.restClient = new RestClient();
+        this.restClient = RestClient.getInstance();
+
+        tableModel = new LazyTableModel<Patient>(
+            new String[]{"ID", "First Name", "Last Name", "Phone", "Email", "Address", "Date of Birth"}, PAGE_SIZE
+        ) {
+            private final SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+
+            @Override
+            protected List<Patient> fetchPage(Patient after, int limit) {
+                return restClient.getPatientsPage(after, limit);
+            }
 
-        tableModel = new DefaultTableModel(
-            new String[]{"ID", "First Name", "Last Name", "Phone", "Email", "Address", "Date of Birth"}, 0
-        );
+            @Override
+            protected Object keyOf(Patient p) {
+                return p.getPatientId();
+            }
+
+            @Override
+            protected Object valueAt(Patient p, int column) {
+                switch (column) {
+                    case 0: return p.getPatientId();
+                    case 1: return p.getFirstName();
+                    case 2: return p.getLastName();
+                    case 3: return p.getPhone();
+                    case 4: return p.getEmail();
+                    case 5: return p.getAddress();
+                    default: return p.getDateOfBirth() != null ? df.format(p.getDateOfBirth()) : "";
+                }
+            }
+        };
         table = new JTable(tableModel);
 
         JScrollPane scrollPane = new JScrollPane(table);
         scrollPane.setBounds(10, 29, 800, 300);
         add(scrollPane);
+        tableModel.attach(scrollPane);
 
         JButton btnRefresh = new JButton("Refresh");
         btnRefresh.setBounds(10, 350, 85, 21);
@@ -53,24 +81,12 @@ public class PatientPanel extends JPanel {
             return;
         }
 
-        Patient selectedPatient = new Patient();
-        selectedPatient.setPatientId((Integer) tableModel.getValueAt(selectedRow, 0));
-        selectedPatient.setFirstName((String) tableModel.getValueAt(selectedRow, 1));
-        selectedPatient.setLastName((String) tableModel.getValueAt(selectedRow, 2));
-        selectedPatient.setPhone((String) tableModel.getValueAt(selectedRow, 3));
-        selectedPatient.setEmail((String) tableModel.getValueAt(selectedRow, 4));
-        selectedPatient.setAddress((String) tableModel.getValueAt(selectedRow, 5));
-
-        try {
-            String dobString = (String) tableModel.getValueAt(selectedRow, 6);
-            if (dobString != null && !dobString.isEmpty()) {
-                Date dob = new java.text.SimpleDateFormat("yyyy-MM-dd").parse(dobString);
-                selectedPatient.setDateOfBirth(dob);
-            }
-        } catch (Exception ex) {
-            ex.printStackTrace(); // optional: show a warning dialog
+        Patient selectedPatient = tableModel.getRow(selectedRow);
+        if (selectedPatient == null) {
+            // its page was dropped after scrolling away and is being fetched again
+            JOptionPane.showMessageDialog(this, "The selected patient is still loading. Please try again.");
+            return;
         }
-
         new PatientFormWindow(this, selectedPatient).setVisible(true);
     }
 
@@ -79,36 +95,9 @@ public class PatientPanel extends JPanel {
         loadPatients();
     }
 
+    // pages are fetched on demand as the table is scrolled
     private void loadPatients() {
-        new SwingWorker<List<Patient>, Void>() {
-            @Override
-            protected List<Patient> doInBackground() {
-                return restClient.getAllPatients();
-            }
-
-            @Override
-            protected void done() {
-                try {
-                    List<Patient> list = get();
-                    tableModel.setRowCount(0);
-                    for (Patient p : list) {
-                        tableModel.addRow(new Object[]{
-                            p.getPatientId(),
-                            p.getFirstName(),
-                            p.getLastName(),
-                            p.getPhone(),
-                            p.getEmail(),
-                            p.getAddress(),
-                            p.getDateOfBirth() != null
-                            ? new java.text.SimpleDateFormat("yyyy-MM-dd").format(p.getDateOfBirth())
-                            : ""
-                        });
-                    }
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
-            }
-        }.execute();
+        tableModel.reload();
     }
 
     public static void main(String[] args) {
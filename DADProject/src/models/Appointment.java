@@ -1,9 +1,17 @@
 package models;
 
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import org.json.JSONObject;
 
 public class Appointment {
+    /** Zone the clinic's wall-clock dates and times are in (-Dhospital.zone). */
+    public static final ZoneId ZONE = ZoneId.of(
+        System.getProperty("hospital.zone", ZoneId.systemDefault().getId()));
+
     private int appointmentId;
     private int patientId;
     private int doctorId;
@@ -13,9 +21,30 @@ public class Appointment {
     private String notes;
     private String patientName;
     private String doctorName;
+    // row version from the server; -1 when unknown
+    private int version = -1;
+    // date + time combined whenever either is set; null / -1 when incomplete
+    private LocalDateTime start;
+    private long startMillis = -1;
 
     public Appointment() {}
 
+    /** Field-by-field copy, for handing one decoded row to several owners. */
+    public Appointment(Appointment other) {
+        this.appointmentId   = other.appointmentId;
+        this.patientId       = other.patientId;
+        this.doctorId        = other.doctorId;
+        this.appointmentDate = other.appointmentDate;
+        this.appointmentTime = other.appointmentTime;
+        this.status          = other.status;
+        this.notes           = other.notes;
+        this.patientName     = other.patientName;
+        this.doctorName      = other.doctorName;
+        this.version         = other.version;
+        this.start           = other.start;
+        this.startMillis     = other.startMillis;
+    }
+
     public int getAppointmentId() {
         return appointmentId;
     }
@@ -42,6 +71,7 @@ public class Appointment {
     }
     public void setAppointmentDate(Date appointmentDate) {
         this.appointmentDate = appointmentDate;
+        updateStart();
     }
 
     public String getAppointmentTime() {
@@ -49,6 +79,35 @@ public class Appointment {
     }
     public void setAppointmentTime(String appointmentTime) {
         this.appointmentTime = appointmentTime;
+        updateStart();
+    }
+
+    /** When the appointment starts, or null without both a date and a time. */
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    /** {@link #getStart()} as epoch millis in {@link #ZONE}, or -1. */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public boolean hasStart() {
+        return start != null;
+    }
+
+    private void updateStart() {
+        start = null;
+        startMillis = -1;
+        if (appointmentDate == null || appointmentTime == null || appointmentTime.isEmpty()) return;
+        try {
+            // "HH:mm:ss" from the database, "HH:mm" from the forms
+            LocalTime time = LocalTime.parse(appointmentTime);
+            start = new java.sql.Date(appointmentDate.getTime()).toLocalDate().atTime(time);
+            startMillis = start.atZone(ZONE).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // free-text time: no start
+        }
     }
 
     public String getStatus() {
@@ -79,6 +138,13 @@ public class Appointment {
         this.doctorName = doctorName;
     }
 
+    public int getVersion() {
+        return version;
+    }
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     // Serialize to JSON with snake_case keys
     public JSONObject toJSON() {
         JSONObject json = new JSONObject();
@@ -89,6 +155,9 @@ public class Appointment {
         json.put("appointment_time", appointmentTime);
         json.put("status", status);
         json.put("notes", notes);
+        json.put("patient_name", patientName);
+        json.put("doctor_name", doctorName);
+        json.put("version", version);
         return json;
     }
 
@@ -111,6 +180,7 @@ public class Appointment {
         appointment.setNotes(json.optString("notes"));
         appointment.setPatientName(json.optString("patient_name"));
         appointment.setDoctorName(json.optString("doctor_name"));
+        appointment.setVersion(json.optInt("version", -1));
         return appointment;
     }
 }
@@ -0,0 +1,76 @@
+package models;
+
+import org.json.JSONObject;
+
+/**
+ * One change to one appointment, as pushed through the notification hub:
+ * what happened plus the appointment as it is now, so a receiver can patch a
+ * single table row instead of refetching the list. Deletions carry no
+ * snapshot.
+ */
+public class AppointmentEvent {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private final Type type;
+    private final int doctorId;
+    private final int appointmentId;
+    private final Appointment snapshot;
+
+    public AppointmentEvent(Type type, int doctorId, int appointmentId, Appointment snapshot) {
+        this.type = type;
+        this.doctorId = doctorId;
+        this.appointmentId = appointmentId;
+        this.snapshot = snapshot;
+    }
+
+    public static AppointmentEvent created(Appointment a) {
+        return new AppointmentEvent(Type.CREATED, a.getDoctorId(), a.getAppointmentId(), a);
+    }
+
+    public static AppointmentEvent updated(Appointment a) {
+        return new AppointmentEvent(Type.UPDATED, a.getDoctorId(), a.getAppointmentId(), a);
+    }
+
+    public static AppointmentEvent deleted(int doctorId, int appointmentId) {
+        return new AppointmentEvent(Type.DELETED, doctorId, appointmentId, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    public int getAppointmentId() {
+        return appointmentId;
+    }
+
+    /** The appointment after the change; null for {@link Type#DELETED}. */
+    public Appointment getSnapshot() {
+        return snapshot;
+    }
+
+    /** Snapshot as single-line JSON, or null when there is none. */
+    public String snapshotJSON() {
+        return snapshot != null ? snapshot.toJSON().toString() : null;
+    }
+
+    /**
+     * Rebuild an event from its wire parts.
+     * @throws IllegalArgumentException for an unknown type
+     */
+    public static AppointmentEvent parse(int doctorId, String type, int appointmentId, String snapshotJSON) {
+        Appointment snapshot = snapshotJSON != null && !snapshotJSON.isEmpty()
+            ? Appointment.fromJSON(new JSONObject(snapshotJSON))
+            : null;
+        return new AppointmentEvent(Type.valueOf(type), doctorId, appointmentId, snapshot);
+    }
+
+    @Override
+    public String toString() {
+        return type + " appointment " + appointmentId + " (doctor " + doctorId + ")";
+    }
+}
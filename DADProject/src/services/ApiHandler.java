@@ -0,0 +1,320 @@
+package services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Shared plumbing for the embedded server's endpoints: PATH_INFO / query
+ * parsing, JSON responses with the same headers the PHP scripts send, and
+ * PDO-style row mapping (every column as its string value, keyed by label).
+ * Replies are gzipped for clients that accept it, and list endpoints answer
+ * {@code If-None-Match} from the table_versions counters.
+ */
+abstract class ApiHandler implements HttpHandler {
+
+    static final int MAX_PAGE_SIZE = 1000;
+    // smaller replies are not worth the gzip header and CPU
+    static final int GZIP_MIN_BYTES = 1024;
+
+    protected final ConnectionPool pool;
+
+    ApiHandler(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    protected abstract void dispatch(ApiRequest req) throws Exception;
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        ApiRequest req = new ApiRequest(exchange);
+        try {
+            if ("OPTIONS".equals(req.method)) {
+                req.send(204, null);
+            } else {
+                dispatch(req);
+            }
+        } catch (JSONException je) {
+            req.send(400, new JSONObject()
+                .put("success", false)
+                .put("error", "Invalid JSON: " + je.getMessage()));
+        } catch (IllegalArgumentException bad) {
+            req.send(400, failure(bad.getMessage()));
+        } catch (Exception e) {
+            e.printStackTrace();
+            req.send(500, new JSONObject()
+                .put("success", false)
+                .put("error", String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // ---------------------------------------------------------------- helpers
+
+    static JSONObject rowToJSON(ResultSet rs) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        JSONObject row = new JSONObject();
+        for (int i = 1; i <= md.getColumnCount(); i++) {
+            String value = rs.getString(i);
+            row.put(md.getColumnLabel(i), value != null ? value : JSONObject.NULL);
+        }
+        return row;
+    }
+
+    static JSONArray rowsToJSON(ResultSet rs) throws SQLException {
+        JSONArray rows = new JSONArray();
+        while (rs.next()) {
+            rows.put(rowToJSON(rs));
+        }
+        return rows;
+    }
+
+    /** Value for a nullable column, mirroring PHP's {@code $data[$key] ?? null}. */
+    static Object nullable(JSONObject data, String key) {
+        return data.isNull(key) ? null : data.get(key);
+    }
+
+    /**
+     * Weak ETag for a list read from {@code tables}, built from their
+     * counters in table_versions (bumped by trigger on every write). Null
+     * when the counters are missing. Take it before running the list query,
+     * so a write in between only makes the tag too old, never too new.
+     */
+    static String tableVersionETag(ConnectionPool.PooledConnection c, String... tables) throws SQLException {
+        String[] sorted = tables.clone();
+        Arrays.sort(sorted);
+        StringBuilder sql = new StringBuilder("SELECT version FROM table_versions WHERE table_name IN (");
+        for (int i = 0; i < sorted.length; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") ORDER BY table_name");
+
+        PreparedStatement ps = c.prepare(sql.toString());
+        for (int i = 0; i < sorted.length; i++) {
+            ps.setString(i + 1, sorted[i]);
+        }
+        StringBuilder tag = new StringBuilder("W/\"");
+        int found = 0;
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                if (found++ > 0) tag.append('.');
+                tag.append(rs.getLong(1));
+            }
+        }
+        return found == sorted.length ? tag.append('"').toString() : null;
+    }
+
+    static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    static JSONObject failure(String error) {
+        return new JSONObject().put("success", false).put("error", error);
+    }
+
+    /**
+     * One HTTP exchange, split the way the PHP scripts see it.
+     */
+    static class ApiRequest {
+        final HttpExchange exchange;
+        final String method;
+        final List<String> path;
+        final Map<String, String> query;
+
+        ApiRequest(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.method = exchange.getRequestMethod().toUpperCase();
+            this.path = parsePathInfo(exchange);
+            this.query = parseQuery(exchange.getRequestURI().getRawQuery());
+        }
+
+        /** A request with no exchange behind it, to build a handler's SQL outside a call. */
+        ApiRequest(String method, String rawQuery) {
+            this.exchange = null;
+            this.method = method;
+            this.path = List.of();
+            this.query = parseQuery(rawQuery);
+        }
+
+        /** First PATH_INFO segment as an id, or null if absent / not numeric. */
+        Integer pathId() {
+            if (path.isEmpty()) return null;
+            try {
+                return Integer.valueOf(path.get(0));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        /** True when the first PATH_INFO segment is {@code name}, e.g. "batch". */
+        boolean pathIs(String name) {
+            return !path.isEmpty() && path.get(0).equals(name);
+        }
+
+        /** Query parameter, or null when missing or blank. */
+        String param(String name) {
+            String value = query.get(name);
+            return value == null || value.isBlank() ? null : value;
+        }
+
+        Integer intParam(String name) {
+            String value = param(name);
+            if (value == null) return null;
+            try {
+                return Integer.valueOf(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + name + ": " + value);
+            }
+        }
+
+        LocalDate dateParam(String name) {
+            String value = param(name);
+            if (value == null) return null;
+            try {
+                return LocalDate.parse(value.trim());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid " + name + ": " + value);
+            }
+        }
+
+        LocalTime timeParam(String name) {
+            String value = param(name);
+            if (value == null) return null;
+            try {
+                return LocalTime.parse(value.trim());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid " + name + ": " + value);
+            }
+        }
+
+        /** A yyyy-MM parameter. */
+        YearMonth monthParam(String name) {
+            String value = param(name);
+            if (value == null) return null;
+            try {
+                return YearMonth.parse(value.trim());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid " + name + ": " + value);
+            }
+        }
+
+        String body() throws IOException {
+            try (InputStream in = exchange.getRequestBody()) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+
+        JSONObject bodyJSON() throws IOException {
+            String raw = body().trim();
+            return raw.isEmpty() ? new JSONObject() : new JSONObject(raw);
+        }
+
+        /**
+         * Send {@code etag} with the reply and, when the client's
+         * If-None-Match already has it, answer 304 with no body and return
+         * true. A null tag does nothing.
+         */
+        boolean notModified(String etag) throws IOException {
+            if (etag == null) return false;
+            Headers h = exchange.getResponseHeaders();
+            h.set("ETag", etag);
+            h.set("Vary", "Accept-Encoding");
+            String sent = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (sent != null) {
+                for (String candidate : sent.split(",")) {
+                    if (candidate.trim().equals(etag)) {
+                        exchange.sendResponseHeaders(304, -1);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean acceptsGzip() {
+            String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            return accept != null && accept.toLowerCase().contains("gzip");
+        }
+
+        void send(int status, Object json) throws IOException {
+            Headers h = exchange.getResponseHeaders();
+            h.set("Content-Type", "application/json");
+            h.set("Access-Control-Allow-Origin", "*");
+            h.set("Access-Control-Allow-Methods", "GET, POST, PUT, PATCH, DELETE");
+            h.set("Access-Control-Allow-Headers", "Content-Type");
+
+            if (json == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+            if (bytes.length >= GZIP_MIN_BYTES && acceptsGzip()) {
+                ByteArrayOutputStream zipped = new ByteArrayOutputStream(bytes.length / 4);
+                try (GZIPOutputStream gz = new GZIPOutputStream(zipped)) {
+                    gz.write(bytes);
+                }
+                bytes = zipped.toByteArray();
+                h.set("Content-Encoding", "gzip");
+                h.set("Vary", "Accept-Encoding");
+            }
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        void send(Object json) throws IOException {
+            send(200, json);
+        }
+
+        private static List<String> parsePathInfo(HttpExchange exchange) {
+            String full = exchange.getRequestURI().getPath();
+            String context = exchange.getHttpContext().getPath();
+            String info = full.length() > context.length() ? full.substring(context.length()) : "";
+            List<String> parts = new ArrayList<>();
+            for (String p : info.split("/")) {
+                if (!p.isEmpty()) parts.add(p);
+            }
+            return parts;
+        }
+
+        private static Map<String, String> parseQuery(String raw) {
+            Map<String, String> params = new HashMap<>();
+            if (raw == null || raw.isEmpty()) return params;
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                String key = eq >= 0 ? pair.substring(0, eq) : pair;
+                String value = eq >= 0 ? pair.substring(eq + 1) : "";
+                params.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                           URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+            return params;
+        }
+    }
+}
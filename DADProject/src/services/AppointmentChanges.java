@@ -0,0 +1,92 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import models.Appointment;
+import models.AppointmentEvent;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Reply of {@code GET appointments_api.php/changes?since=<token>}: the
+ * appointments written since the token, the ones deleted since then, and the
+ * token to ask from next time. The server re-sends a short window before the
+ * token, so the same row can arrive twice; consumers must treat it as an
+ * upsert.
+ *
+ * A token is epoch milliseconds read from the database clock
+ * ({@code UNIX_TIMESTAMP(NOW(3))}) in the same transaction as the rows, the
+ * clock updated_at and deleted_at are written with. The PHP scripts and
+ * {@link AppointmentServer} both take it that way, so a token from one is
+ * good for the other, whatever the time zone of the client or the session.
+ */
+public class AppointmentChanges {
+
+    private final long token;
+    private final boolean reset;
+    private final List<Appointment> changed;
+    private final List<AppointmentEvent> deleted;
+
+    AppointmentChanges(long token, boolean reset, List<Appointment> changed, List<AppointmentEvent> deleted) {
+        this.token = token;
+        this.reset = reset;
+        this.changed = changed;
+        this.deleted = deleted;
+    }
+
+    static AppointmentChanges fromJSON(JSONObject json) {
+        List<Appointment> changed = new ArrayList<>();
+        JSONArray rows = json.optJSONArray("appointments");
+        if (rows != null) {
+            for (int i = 0; i < rows.length(); i++) {
+                changed.add(Appointment.fromJSON(rows.getJSONObject(i)));
+            }
+        }
+        List<AppointmentEvent> deleted = new ArrayList<>();
+        JSONArray gone = json.optJSONArray("deleted");
+        if (gone != null) {
+            for (int i = 0; i < gone.length(); i++) {
+                JSONObject t = gone.getJSONObject(i);
+                deleted.add(AppointmentEvent.deleted(t.optInt("doctor_id"), t.getInt("appointment_id")));
+            }
+        }
+        return new AppointmentChanges(json.getLong("token"), json.optBoolean("reset"), changed, deleted);
+    }
+
+    /** Token to pass as {@code since} on the next call. */
+    public long getToken() {
+        return token;
+    }
+
+    /** True when the given token was too old to answer; reload everything. */
+    public boolean isReset() {
+        return reset;
+    }
+
+    public List<Appointment> getChanged() {
+        return Collections.unmodifiableList(changed);
+    }
+
+    public List<AppointmentEvent> getDeleted() {
+        return Collections.unmodifiableList(deleted);
+    }
+
+    /** Everything as events: one UPDATED per written row, then the deletions. */
+    public List<AppointmentEvent> toEvents() {
+        List<AppointmentEvent> events = new ArrayList<>(changed.size() + deleted.size());
+        for (Appointment a : changed) {
+            events.add(AppointmentEvent.updated(a));
+        }
+        events.addAll(deleted);
+        return events;
+    }
+
+    @Override
+    public String toString() {
+        return "AppointmentChanges[token=" + token + ", changed=" + changed.size()
+            + ", deleted=" + deleted.size() + (reset ? ", reset" : "") + "]";
+    }
+}
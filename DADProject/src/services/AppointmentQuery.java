@@ -0,0 +1,127 @@
+package services;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import models.Appointment;
+
+/**
+ * Server-side filter for appointment lists. Unset fields are not sent, so an
+ * empty query is the same as the old "get everything" call.
+ *
+ * <pre>
+ * restClient.getAppointments(new AppointmentQuery().doctorId(3).status("scheduled"));
+ * </pre>
+ */
+public class AppointmentQuery {
+    private Integer doctorId;
+    private Integer patientId;
+    private String status;
+    private LocalDate dateFrom;
+    private LocalDate dateTo;
+    private Integer limit;
+    private Integer offset;
+    private Appointment after;
+
+    public AppointmentQuery doctorId(int doctorId) {
+        this.doctorId = doctorId;
+        return this;
+    }
+
+    public AppointmentQuery patientId(int patientId) {
+        this.patientId = patientId;
+        return this;
+    }
+
+    public AppointmentQuery status(String status) {
+        this.status = status;
+        return this;
+    }
+
+    /** Inclusive lower bound on appointment_date. */
+    public AppointmentQuery dateFrom(LocalDate dateFrom) {
+        this.dateFrom = dateFrom;
+        return this;
+    }
+
+    /** Inclusive upper bound on appointment_date. */
+    public AppointmentQuery dateTo(LocalDate dateTo) {
+        this.dateTo = dateTo;
+        return this;
+    }
+
+    public AppointmentQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public AppointmentQuery offset(int offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * Keyset paging: return rows sorted after {@code last} in
+     * (appointment_date, appointment_time, appointment_id) order.
+     */
+    public AppointmentQuery after(Appointment last) {
+        this.after = last;
+        return this;
+    }
+
+    /**
+     * Whether {@code a} passes the doctor, patient, status and date filters,
+     * the same test the server applies. Paging fields are ignored.
+     */
+    public boolean matches(Appointment a) {
+        if (doctorId != null && a.getDoctorId() != doctorId) return false;
+        if (patientId != null && a.getPatientId() != patientId) return false;
+        if (status != null && !status.equals(a.getStatus())) return false;
+        if (dateFrom != null || dateTo != null) {
+            // SQL comparisons with a NULL date are never true
+            if (a.getAppointmentDate() == null) return false;
+            LocalDate date = new java.sql.Date(a.getAppointmentDate().getTime()).toLocalDate();
+            if (dateFrom != null && date.isBefore(dateFrom)) return false;
+            if (dateTo != null && date.isAfter(dateTo)) return false;
+        }
+        return true;
+    }
+
+    /** Query parameters in the snake_case form appointments_api.php expects. */
+    public Map<String, String> toParams() {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (doctorId != null)  params.put("doctor_id", String.valueOf(doctorId));
+        if (patientId != null) params.put("patient_id", String.valueOf(patientId));
+        if (status != null)    params.put("status", status);
+        if (dateFrom != null)  params.put("date_from", dateFrom.toString());
+        if (dateTo != null)    params.put("date_to", dateTo.toString());
+        if (limit != null)     params.put("limit", String.valueOf(limit));
+        if (offset != null)    params.put("offset", String.valueOf(offset));
+        if (after != null) {
+            params.put("after_id", String.valueOf(after.getAppointmentId()));
+            if (after.getAppointmentDate() != null) {
+                params.put("after_date", new SimpleDateFormat("yyyy-MM-dd").format(after.getAppointmentDate()));
+            }
+            if (after.getAppointmentTime() != null && !after.getAppointmentTime().isEmpty()) {
+                params.put("after_time", after.getAppointmentTime());
+            }
+        }
+        return params;
+    }
+
+    /** "?doctor_id=3&status=scheduled", or "" when nothing is set. */
+    public String toQueryString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> e : toParams().entrySet()) {
+            sb.append(sb.length() == 0 ? '?' : '&')
+              .append(e.getKey())
+              .append('=')
+              .append(URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+}
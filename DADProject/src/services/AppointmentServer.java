@@ -1,5 +1,65 @@
 package services;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process replacement for the PHP backend. Serves appointments_api.php,
+ * patients_api.php and doctors_api.php under the same paths and JSON shapes,
+ * backed by a bounded {@link ConnectionPool} instead of a fresh PDO
+ * connection per request.
+ *
+ * Point the clients at it with
+ * {@code -Dhospital.api.url=http://localhost:8080/hospital_management/php_backend}.
+ * Doctor login and registration stay on the PHP scripts because they rely on
+ * PHP's bcrypt password_hash/password_verify.
+ */
 public class AppointmentServer {
 
+    public static final String CONTEXT = "/hospital_management/php_backend";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ConnectionPool pool;
+
+    public AppointmentServer(int port, ConnectionPool pool) throws IOException {
+        this(port, pool, Integer.getInteger("hospital.server.threads", 16));
+    }
+
+    public AppointmentServer(int port, ConnectionPool pool, int threads) throws IOException {
+        this.pool = pool;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newFixedThreadPool(threads);
+
+        server.createContext(CONTEXT + "/appointments_api.php", new AppointmentsHandler(pool));
+        server.createContext(CONTEXT + "/patients_api.php", new PatientsHandler(pool));
+        server.createContext(CONTEXT + "/doctors_api.php", new DoctorsHandler(pool));
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("AppointmentServer listening on port " + getPort());
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        pool.close();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("hospital.server.port", 8080);
+        AppointmentServer appointmentServer = new AppointmentServer(port, ConnectionPool.fromSystemProperties());
+        Runtime.getRuntime().addShutdownHook(new Thread(appointmentServer::stop, "AppointmentServerShutdown"));
+        appointmentServer.start();
+    }
 }
@@ -0,0 +1,109 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import models.Appointment;
+import models.AppointmentEvent;
+
+/**
+ * Local copy of the appointments matching one {@link AppointmentQuery},
+ * kept current by {@link RestClient#syncAppointments}. The first sync loads
+ * the full list; later ones only transfer what changed since the last
+ * token. Rows that stop matching the query (status changed, moved to
+ * another doctor or date) are dropped like deleted ones.
+ */
+public class AppointmentStore {
+
+    private static final Comparator<Appointment> ORDER = Comparator
+        .comparing(Appointment::getAppointmentDate, Comparator.nullsFirst(Comparator.<java.util.Date>naturalOrder()))
+        .thenComparing(a -> a.getAppointmentTime() != null ? a.getAppointmentTime() : "")
+        .thenComparingInt(Appointment::getAppointmentId);
+
+    private final AppointmentQuery scope;
+    private final Map<Integer, Appointment> byId = new HashMap<>();
+    // 0 until the first full load
+    private long token = 0;
+
+    public AppointmentStore(AppointmentQuery scope) {
+        this.scope = scope;
+    }
+
+    public AppointmentQuery getScope() {
+        return scope;
+    }
+
+    public synchronized long getToken() {
+        return token;
+    }
+
+    public synchronized boolean isLoaded() {
+        return token != 0;
+    }
+
+    /**
+     * Replace the contents with a full list fetched after {@code token} was
+     * taken. Returns what differs from the previous contents.
+     */
+    synchronized List<AppointmentEvent> load(List<Appointment> rows, long token) {
+        Map<Integer, Appointment> previous = new HashMap<>(byId);
+        byId.clear();
+        List<AppointmentEvent> events = new ArrayList<>();
+        for (Appointment a : rows) {
+            AppointmentEvent e = put(a, previous.remove(a.getAppointmentId()));
+            if (e != null) events.add(e);
+        }
+        for (Appointment gone : previous.values()) {
+            events.add(AppointmentEvent.deleted(gone.getDoctorId(), gone.getAppointmentId()));
+        }
+        this.token = token;
+        return events;
+    }
+
+    /** Fold a delta in and return the changes it made, skipping re-sent rows. */
+    synchronized List<AppointmentEvent> merge(AppointmentChanges changes) {
+        List<AppointmentEvent> events = new ArrayList<>();
+        for (Appointment a : changes.getChanged()) {
+            AppointmentEvent e = put(a, byId.remove(a.getAppointmentId()));
+            if (e != null) events.add(e);
+        }
+        for (AppointmentEvent deleted : changes.getDeleted()) {
+            if (byId.remove(deleted.getAppointmentId()) != null) events.add(deleted);
+        }
+        token = changes.getToken();
+        return events;
+    }
+
+    private AppointmentEvent put(Appointment a, Appointment old) {
+        if (!scope.matches(a)) {
+            return old != null ? AppointmentEvent.deleted(old.getDoctorId(), old.getAppointmentId()) : null;
+        }
+        byId.put(a.getAppointmentId(), a);
+        if (old == null) return AppointmentEvent.created(a);
+        boolean unchanged = a.getVersion() >= 0 && a.getVersion() == old.getVersion();
+        return unchanged ? null : AppointmentEvent.updated(a);
+    }
+
+    public synchronized Appointment get(int appointmentId) {
+        return byId.get(appointmentId);
+    }
+
+    /** Snapshot of the contents in the server's list order. */
+    public synchronized List<Appointment> getAppointments() {
+        List<Appointment> list = new ArrayList<>(byId.values());
+        list.sort(ORDER);
+        return list;
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AppointmentStore[size=" + byId.size() + ", token=" + token + "]";
+    }
+}
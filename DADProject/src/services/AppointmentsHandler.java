@@ -0,0 +1,1013 @@
+package services;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Java port of appointments_api.php.
+ */
+class AppointmentsHandler extends ApiHandler {
+
+    static final String SELECT_JOINED =
+        "SELECT a.*, "
+        + "CONCAT(p.first_name, ' ', p.last_name) AS patient_name, "
+        + "CONCAT(d.first_name, ' ', d.last_name) AS doctor_name, "
+        + "d.specialization "
+        + "FROM appointments a "
+        + "JOIN patients p ON a.patient_id = p.patient_id "
+        + "JOIN doctors d ON a.doctor_id = d.doctor_id ";
+
+    static final String SQL_GET_ONE = SELECT_JOINED + "WHERE a.appointment_id = ?";
+    static final String ORDER_BY = "ORDER BY a.appointment_date, a.appointment_time, a.appointment_id ";
+    static final String SQL_INSERT =
+        "INSERT INTO appointments "
+        + "(patient_id, doctor_id, appointment_date, appointment_time, notes, status) "
+        + "VALUES (?, ?, ?, ?, ?, 'scheduled')";
+    static final String SQL_UPDATE =
+        "UPDATE appointments SET patient_id = ?, doctor_id = ?, appointment_date = ?, "
+        + "appointment_time = ?, status = ?, notes = ?, version = version + 1 WHERE appointment_id = ?";
+    static final String SQL_GET_VERSION = "SELECT version FROM appointments WHERE appointment_id = ?";
+    static final String SQL_DELETE = "DELETE FROM appointments WHERE appointment_id = ?";
+    static final String SQL_TOMBSTONE =
+        "INSERT INTO appointment_tombstones (appointment_id, doctor_id) "
+        + "SELECT appointment_id, doctor_id FROM appointments WHERE appointment_id = ?";
+    static final String SQL_PURGE_TOMBSTONES = "DELETE FROM appointment_tombstones WHERE deleted_at < ?";
+    // sync token: epoch milliseconds by the database clock, the same expression
+    // appointments_api.php uses, so it is the clock updated_at and deleted_at
+    // are written with and means the same whatever the JVM or session zone
+    static final String SQL_NOW = "SELECT FLOOR(UNIX_TIMESTAMP(NOW(3)) * 1000.0)";
+    static final String SQL_CHANGED = SELECT_JOINED + "WHERE a.updated_at >= FROM_UNIXTIME(? / 1000.0)";
+    static final String SQL_DELETED =
+        "SELECT appointment_id, doctor_id FROM appointment_tombstones WHERE deleted_at >= FROM_UNIXTIME(? / 1000.0)";
+    static final String SQL_SLOTS =
+        "SELECT appointment_id, doctor_id, appointment_date, appointment_time, status FROM appointments ";
+    static final String SQL_SLOTS_CHANGED = SQL_SLOTS + "WHERE updated_at >= FROM_UNIXTIME(? / 1000.0)";
+    static final String SQL_SLOT_OF = SQL_SLOTS + "WHERE appointment_id = ? FOR UPDATE";
+    // requests still waiting for a date or time, oldest first
+    static final String SQL_PENDING =
+        "SELECT a.appointment_id, a.doctor_id, a.appointment_date FROM appointments a "
+        + "JOIN doctors d ON a.doctor_id = d.doctor_id "
+        + "WHERE a.status = 'scheduled' AND (a.appointment_date IS NULL OR a.appointment_time IS NULL) ";
+    static final String PENDING_BY_DOCTOR = "AND a.doctor_id = ? ";
+    static final String PENDING_BY_SPECIALIZATION = "AND d.specialization = ? ";
+    static final String PENDING_ORDER = "ORDER BY a.created_at, a.appointment_id";
+    static final String SQL_ASSIGN =
+        "UPDATE appointments SET appointment_date = ?, appointment_time = ?, version = version + 1 "
+        + "WHERE appointment_id = ? AND status = 'scheduled' "
+        + "AND (appointment_date IS NULL OR appointment_time IS NULL)";
+
+    // a write that commits late can carry an updated_at slightly before the
+    // token handed out meanwhile; re-sending that window makes sure it is seen
+    static final long SYNC_OVERLAP_MS = 2_000;
+    static final long TOMBSTONE_RETENTION_MS = 30L * 24 * 60 * 60 * 1000;
+
+    static final Set<String> STATUSES = Set.of("scheduled", "completed", "cancelled");
+    static final String SLOT_TAKEN = "The doctor already has an appointment at that time";
+    // "reason" of a 409 reply, so a client tells a lost slot from a stale version without reading the message
+    static final String REASON_SLOT = "slot";
+    static final String REASON_VERSION = "version";
+    // the slot index re-reads what other writers (e.g. the PHP scripts) changed at most this often
+    static final long SLOT_SYNC_MS = 2_000;
+    static final int MAX_BATCH_SIZE = 1000;
+    // how far ahead PUT /allocate looks for a free slot, by default and at most
+    static final int ALLOCATE_DAYS = 60;
+    static final int MAX_ALLOCATE_DAYS = 366;
+    // booking by specialization picks the doctor with the fewest booked slots over this many days
+    static final int BALANCE_DAYS = Integer.getInteger("hospital.balance.days", 14);
+    static final String SQL_SPECIALISTS = "SELECT doctor_id, specialization FROM doctors ORDER BY doctor_id";
+
+    /** Fields PATCH accepts, by request key, mapped to their column. */
+    static final Map<String, String> PATCHABLE = new LinkedHashMap<>();
+    static {
+        PATCHABLE.put("patientId", "patient_id");
+        PATCHABLE.put("doctorId", "doctor_id");
+        PATCHABLE.put("appointmentDate", "appointment_date");
+        PATCHABLE.put("appointmentTime", "appointment_time");
+        PATCHABLE.put("status", "status");
+        PATCHABLE.put("notes", "notes");
+    }
+
+    private final SlotIndex slotIndex = new SlotIndex();
+    // ids for slots reserved by an insert that has no appointment_id yet
+    private final AtomicInteger reservations = new AtomicInteger();
+    private final Object slotSyncLock = new Object();
+    private long slotsSyncedAt = 0;   // database clock, 0 before the first load
+    private long slotsCheckedAt = 0;  // local clock
+    // specialization -> its doctors, re-read only when the doctors table's version moves
+    private final Object specialistsLock = new Object();
+    private Map<String, List<Integer>> specialists = Map.of();
+    private String specialistsVersion;
+
+    AppointmentsHandler(ConnectionPool pool) {
+        super(pool);
+    }
+
+    @Override
+    protected void dispatch(ApiRequest req) throws Exception {
+        Integer id = req.pathId();
+        switch (req.method) {
+            case "GET":
+                if (id != null) getAppointment(req, id);
+                else if (req.pathIs("changes")) getChanges(req);
+                else if (req.pathIs("slots")) getSlots(req);
+                else if (req.pathIs("availability")) getAvailability(req);
+                else getAppointments(req);
+                break;
+            case "POST":
+                createAppointment(req);
+                break;
+            case "PUT":
+                if (id != null) updateAppointment(req, id);
+                else if (req.pathIs("status")) updateStatuses(req);
+                else if (req.pathIs("allocate")) allocateSlots(req);
+                else req.send(400, failure("Missing appointment id"));
+                break;
+            case "PATCH":
+                if (id != null) patchAppointment(req, id);
+                else req.send(400, failure("Missing appointment id"));
+                break;
+            case "DELETE":
+                if (id != null) deleteAppointment(req, id);
+                else req.send(400, failure("Missing appointment id"));
+                break;
+            default:
+                req.send(405, failure("Method not allowed"));
+        }
+    }
+
+    private void getAppointment(ApiRequest req, int id) throws Exception {
+        JSONObject result;
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            PreparedStatement ps = c.prepare(SQL_GET_ONE);
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                result = rs.next() ? rowToJSON(rs) : new JSONObject().put("error", "Appointment not found");
+            }
+        }
+        req.send(result);
+    }
+
+    /**
+     * List appointments, optionally narrowed by doctor_id, patient_id, status,
+     * date_from / date_to (inclusive, on appointment_date) and paged with
+     * limit / offset, or keyset-paged with after_date / after_time / after_id
+     * (the sort key of the last row already seen). No parameters returns the
+     * full list as before.
+     */
+    private void getAppointments(ApiRequest req) throws Exception {
+        List<Object> params = new ArrayList<>();
+        String sql = listSql(req, params);
+
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            // rows carry patient and doctor names, so those tables count too
+            if (req.notModified(tableVersionETag(c, "appointments", "doctors", "patients"))) return;
+            PreparedStatement ps = c.prepare(sql);
+            bind(ps, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                req.send(rowsToJSON(rs));
+            }
+        }
+    }
+
+    /**
+     * GET /slots?doctor_id=&amp;date=: the doctor's free and booked
+     * {@value SlotIndex#SLOT_MINUTES}-minute slots that day, answered from
+     * the slot index without touching the appointments table.
+     */
+    private void getSlots(ApiRequest req) throws Exception {
+        Integer doctorId = req.intParam("doctor_id");
+        LocalDate date = req.dateParam("date");
+        if (doctorId == null || date == null) {
+            req.send(400, failure("doctor_id and date are required"));
+            return;
+        }
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            syncSlots(c);
+        }
+        JSONArray free = new JSONArray();
+        for (LocalTime t : slotIndex.freeSlots(doctorId, date, SlotIndex.WORKING_HOURS)) {
+            free.put(t.toString());
+        }
+        JSONArray booked = new JSONArray();
+        long bits = slotIndex.occupied(doctorId, date);
+        while (bits != 0) {
+            int i = Long.numberOfTrailingZeros(bits);
+            booked.put(new SlotIndex.Slot(doctorId, date, i).start().toString());
+            bits &= bits - 1;
+        }
+        req.send(new JSONObject()
+            .put("success", true)
+            .put("doctor_id", doctorId)
+            .put("date", date.toString())
+            .put("slot_minutes", SlotIndex.SLOT_MINUTES)
+            .put("free", free)
+            .put("booked", booked));
+    }
+
+    /**
+     * GET /availability?doctor_id=&amp;month=yyyy-MM: the doctor's whole month
+     * in one reply, so a calendar can be drawn without a request per day.
+     * "days" has one entry per day of the month, the bitmask of its occupied
+     * slots (bit i = the slot starting i * slot_minutes after midnight);
+     * "working" is the mask of bookable slots, so a day is full when
+     * {@code (day & working) == working}.
+     */
+    private void getAvailability(ApiRequest req) throws Exception {
+        Integer doctorId = req.intParam("doctor_id");
+        YearMonth month = req.monthParam("month");
+        if (doctorId == null || month == null) {
+            req.send(400, failure("doctor_id and month are required"));
+            return;
+        }
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            syncSlots(c);
+        }
+        Map<LocalDate, Long> occupied = slotIndex.occupiedDays(doctorId, month.atDay(1), month.atEndOfMonth());
+        JSONArray days = new JSONArray();
+        for (int day = 1; day <= month.lengthOfMonth(); day++) {
+            days.put(occupied.getOrDefault(month.atDay(day), 0L));
+        }
+        req.send(new JSONObject()
+            .put("success", true)
+            .put("doctor_id", doctorId)
+            .put("month", month.toString())
+            .put("slot_minutes", SlotIndex.SLOT_MINUTES)
+            .put("working", SlotIndex.WORKING_HOURS)
+            .put("days", days));
+    }
+
+    /**
+     * True when a write was refused by the doctor_slot unique key: a
+     * duplicate-key error (MySQL 1062, SQLState 23505 on H2) naming that key.
+     * Foreign key and other constraint errors are not double bookings.
+     */
+    static boolean isSlotTaken(SQLException e) {
+        boolean duplicate = e.getErrorCode() == 1062 || "23505".equals(e.getSQLState());
+        return duplicate && e.getMessage() != null && e.getMessage().toLowerCase().contains("doctor_slot");
+    }
+
+    /** Body of a 409 for a slot that is not free. */
+    static JSONObject slotTaken(String error) {
+        return failure(error).put("reason", REASON_SLOT);
+    }
+
+    /** Answer a failed write: 409 when the slot was taken, the driver's message otherwise. */
+    private static void sendWriteFailure(ApiRequest req, SQLException e) throws IOException {
+        if (isSlotTaken(e)) {
+            req.send(409, slotTaken(SLOT_TAKEN));
+        } else {
+            req.send(failure(e.getMessage()));
+        }
+    }
+
+    /**
+     * Slot a row with these values holds, or null when it holds none
+     * (no date or time yet, or cancelled). Values may be JSON strings or
+     * JDBC dates and times.
+     */
+    static SlotIndex.Slot slotFor(Object doctorId, Object date, Object time, Object status) {
+        if (doctorId == null || date == null || time == null || "cancelled".equals(status)) return null;
+        LocalDate d = date instanceof java.sql.Date sqlDate ? sqlDate.toLocalDate() : LocalDate.parse(date.toString().trim());
+        LocalTime t = time instanceof Time sqlTime ? sqlTime.toLocalTime() : LocalTime.parse(time.toString().trim());
+        return SlotIndex.slotOf(Integer.parseInt(doctorId.toString().trim()), d, t);
+    }
+
+    /**
+     * Bring the slot index up to date: a full load the first time, then
+     * every row written or deleted since the last catch-up, so bookings made
+     * through the PHP scripts are seen within {@link #SLOT_SYNC_MS}.
+     */
+    private void syncSlots(ConnectionPool.PooledConnection c) throws SQLException {
+        synchronized (slotSyncLock) {
+            if (slotsSyncedAt != 0 && System.currentTimeMillis() - slotsCheckedAt < SLOT_SYNC_MS) return;
+            long now = databaseNow(c);
+            PreparedStatement changed;
+            if (slotsSyncedAt == 0) {
+                slotIndex.clear();
+                changed = c.prepare(SQL_SLOTS);
+            } else {
+                changed = c.prepare(SQL_SLOTS_CHANGED);
+                changed.setLong(1, slotsSyncedAt - SYNC_OVERLAP_MS);
+            }
+            try (ResultSet rs = changed.executeQuery()) {
+                while (rs.next()) {
+                    slotIndex.force(rs.getInt("appointment_id"), slotFor(rs.getInt("doctor_id"),
+                        rs.getDate("appointment_date"), rs.getTime("appointment_time"), rs.getString("status")));
+                }
+            }
+            if (slotsSyncedAt != 0) {
+                PreparedStatement deleted = c.prepare(SQL_DELETED);
+                deleted.setLong(1, slotsSyncedAt - SYNC_OVERLAP_MS);
+                try (ResultSet rs = deleted.executeQuery()) {
+                    while (rs.next()) slotIndex.place(rs.getInt("appointment_id"), null);
+                }
+            }
+            slotsSyncedAt = now;
+            slotsCheckedAt = System.currentTimeMillis();
+        }
+    }
+
+    /** The current sync token, {@link #SQL_NOW}. */
+    private static long databaseNow(ConnectionPool.PooledConnection c) throws SQLException {
+        try (ResultSet rs = c.prepare(SQL_NOW).executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * GET /changes?since=&lt;token&gt;: every appointment written since the
+     * token, plus the ids deleted since then, and the token to pass next
+     * time. Without "since" only the current token is returned, for a client
+     * that has just loaded the list. A token older than the tombstone
+     * retention gets "reset": true and no rows; the client must reload.
+     */
+    private void getChanges(ApiRequest req) throws Exception {
+        String rawSince = req.param("since");
+        Long since = null;
+        if (rawSince != null) {
+            try {
+                since = Long.parseLong(rawSince);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid since: " + rawSince);
+            }
+        }
+
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            // the token and the reads share one transaction
+            c.connection().setAutoCommit(false);
+            long now = databaseNow(c);
+            JSONObject result = new JSONObject()
+                .put("success", true)
+                .put("token", now)
+                .put("reset", false);
+            if (since != null && since < now - TOMBSTONE_RETENTION_MS) {
+                result.put("reset", true);
+            } else if (since != null) {
+                long from = since - SYNC_OVERLAP_MS;
+                PreparedStatement changed = c.prepare(SQL_CHANGED);
+                changed.setLong(1, from);
+                try (ResultSet rs = changed.executeQuery()) {
+                    result.put("appointments", rowsToJSON(rs));
+                }
+                PreparedStatement deleted = c.prepare(SQL_DELETED);
+                deleted.setLong(1, from);
+                try (ResultSet rs = deleted.executeQuery()) {
+                    result.put("deleted", rowsToJSON(rs));
+                }
+            }
+            c.connection().commit();
+            req.send(result);
+        }
+    }
+
+    /** The list query for {@code req}'s filters and paging; its parameters go to {@code params}. */
+    static String listSql(ApiRequest req, List<Object> params) {
+        StringBuilder sql = new StringBuilder(SELECT_JOINED);
+        appendFilters(req, sql, params);
+        sql.append(ORDER_BY);
+        appendPaging(req, sql, params);
+        return sql.toString();
+    }
+
+    static void appendFilters(ApiRequest req, StringBuilder sql, List<Object> params) {
+        List<String> where = new ArrayList<>();
+        Integer doctorId = req.intParam("doctor_id");
+        if (doctorId != null) {
+            where.add("a.doctor_id = ?");
+            params.add(doctorId);
+        }
+        Integer patientId = req.intParam("patient_id");
+        if (patientId != null) {
+            where.add("a.patient_id = ?");
+            params.add(patientId);
+        }
+        String status = req.param("status");
+        if (status != null) {
+            where.add("a.status = ?");
+            params.add(status);
+        }
+        LocalDate from = req.dateParam("date_from");
+        if (from != null) {
+            where.add("a.appointment_date >= ?");
+            params.add(java.sql.Date.valueOf(from));
+        }
+        LocalDate to = req.dateParam("date_to");
+        if (to != null) {
+            where.add("a.appointment_date <= ?");
+            params.add(java.sql.Date.valueOf(to));
+        }
+        String keyset = keysetCondition(req, params);
+        if (keyset != null) {
+            where.add(keyset);
+        }
+        if (!where.isEmpty()) {
+            sql.append("WHERE ").append(String.join(" AND ", where)).append(' ');
+        }
+    }
+
+    /**
+     * "Rows after the cursor" in ORDER BY appointment_date, appointment_time,
+     * appointment_id order. Date and time are nullable and MySQL sorts NULL
+     * first, so a NULL cursor column means "every non-NULL value is after me".
+     */
+    static String keysetCondition(ApiRequest req, List<Object> params) {
+        Integer afterId = req.intParam("after_id");
+        if (afterId == null) return null;
+        LocalDate afterDate = req.dateParam("after_date");
+        LocalTime afterTime = req.timeParam("after_time");
+
+        String timePart;
+        if (afterTime == null) {
+            timePart = "(a.appointment_time IS NOT NULL OR (a.appointment_time IS NULL AND a.appointment_id > ?))";
+        } else {
+            timePart = "(a.appointment_time > ? OR (a.appointment_time = ? AND a.appointment_id > ?))";
+        }
+
+        if (afterDate == null) {
+            addTimeParams(params, afterTime, afterId);
+            return "(a.appointment_date IS NOT NULL OR (a.appointment_date IS NULL AND " + timePart + "))";
+        }
+        java.sql.Date d = java.sql.Date.valueOf(afterDate);
+        params.add(d);
+        params.add(d);
+        addTimeParams(params, afterTime, afterId);
+        return "(a.appointment_date > ? OR (a.appointment_date = ? AND " + timePart + "))";
+    }
+
+    private static void addTimeParams(List<Object> params, LocalTime afterTime, int afterId) {
+        if (afterTime != null) {
+            Time t = Time.valueOf(afterTime);
+            params.add(t);
+            params.add(t);
+        }
+        params.add(afterId);
+    }
+
+    static void appendPaging(ApiRequest req, StringBuilder sql, List<Object> params) {
+        Integer limit = req.intParam("limit");
+        if (limit == null) return;
+        sql.append("LIMIT ? ");
+        params.add(clampLimit(limit));
+        Integer offset = req.intParam("offset");
+        if (offset != null && offset > 0) {
+            sql.append("OFFSET ? ");
+            params.add(offset);
+        }
+    }
+
+    static void bind(PreparedStatement ps, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            ps.setObject(i + 1, params.get(i));
+        }
+    }
+
+    private void createAppointment(ApiRequest req) throws Exception {
+        JSONObject data = req.bodyJSON();
+        Object patientId = nullable(data, "patientId");
+        Object doctorId  = nullable(data, "doctorId");
+        Object specialization = doctorId == null ? nullable(data, "specialization") : null;
+        if (patientId == null || (doctorId == null && specialization == null)) {
+            req.send(new JSONObject()
+                .put("success", false)
+                .put("message", "Missing required patientId or doctorId"));
+            return;
+        }
+        if (specialization != null) {
+            createForSpecialization(req, data, patientId, specialization.toString().trim());
+            return;
+        }
+
+        SlotIndex.Slot slot = slotFor(doctorId, nullable(data, "appointmentDate"),
+            nullable(data, "appointmentTime"), "scheduled");
+        int reservation = -reservations.incrementAndGet();
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            syncSlots(c);
+            if (!slotIndex.place(reservation, slot)) {
+                req.send(409, slotTaken(SLOT_TAKEN));
+                return;
+            }
+            PreparedStatement ps = c.prepareWithKeys(SQL_INSERT);
+            ps.setObject(1, patientId);
+            ps.setObject(2, doctorId);
+            ps.setObject(3, nullable(data, "appointmentDate"));
+            ps.setObject(4, nullable(data, "appointmentTime"));
+            ps.setObject(5, nullable(data, "notes"));
+            ps.executeUpdate();
+
+            long newId = 0;
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) newId = keys.getLong(1);
+            }
+            slotIndex.rename(reservation, (int) newId);
+            req.send(new JSONObject()
+                .put("success", true)
+                .put("appointment_id", String.valueOf(newId))
+                .put("message", "Appointment created successfully"));
+        } catch (SQLException e) {
+            slotIndex.place(reservation, null);
+            sendWriteFailure(req, e);
+        }
+    }
+
+    /**
+     * POST with "specialization" instead of "doctorId": the appointment goes
+     * to the doctor of that specialization with the fewest booked slots over
+     * the next {@link #BALANCE_DAYS} days, read from the slot index's per-day
+     * bitmasks. With a date and time only doctors free then are considered;
+     * without, the chosen doctor's earliest free slot is booked, so the next
+     * booking already sees the added load. If nobody has a free slot within
+     * {@link #ALLOCATE_DAYS} days the request is left pending with the least
+     * loaded doctor.
+     */
+    private void createForSpecialization(ApiRequest req, JSONObject data, Object patientId,
+                                         String specialization) throws Exception {
+        Object date = nullable(data, "appointmentDate");
+        Object time = nullable(data, "appointmentTime");
+        boolean fixed = date != null && time != null;
+        int reservation = -reservations.incrementAndGet();
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            syncSlots(c);
+            List<Integer> doctors = new ArrayList<>(specialists(c).getOrDefault(specialization, List.of()));
+            if (doctors.isEmpty()) {
+                req.send(400, failure("No doctor with specialization " + specialization));
+                return;
+            }
+            LocalDate today = LocalDate.now();
+            LocalDate until = today.plusDays(BALANCE_DAYS - 1);
+            Map<Integer, Integer> load = new HashMap<>();
+            for (int d : doctors) {
+                load.put(d, slotIndex.load(d, today, until));
+            }
+            // stable: equal loads keep doctor id order
+            doctors.sort(Comparator.comparingInt(load::get));
+
+            Integer chosen = null;
+            SlotIndex.Slot slot = null;
+            for (int d : doctors) {
+                if (fixed) {
+                    slot = slotFor(d, date, time, "scheduled");
+                    if (!slotIndex.place(reservation, slot)) continue;
+                } else {
+                    slot = slotIndex.reserveEarliest(reservation, d, today,
+                        SlotIndex.slotsFrom(LocalTime.now()), SlotIndex.WORKING_HOURS, ALLOCATE_DAYS);
+                    if (slot == null) continue;
+                }
+                chosen = d;
+                break;
+            }
+            if (chosen == null) {
+                if (fixed) {
+                    req.send(409, slotTaken("No " + specialization + " doctor is free at that time"));
+                    return;
+                }
+                chosen = doctors.get(0);
+            }
+
+            PreparedStatement ps = c.prepareWithKeys(SQL_INSERT);
+            ps.setObject(1, patientId);
+            ps.setInt(2, chosen);
+            ps.setObject(3, fixed ? date : slot != null ? java.sql.Date.valueOf(slot.date()) : date);
+            ps.setObject(4, fixed ? time : slot != null ? Time.valueOf(slot.start()) : null);
+            ps.setObject(5, nullable(data, "notes"));
+            ps.executeUpdate();
+
+            long newId = 0;
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) newId = keys.getLong(1);
+            }
+            slotIndex.rename(reservation, (int) newId);
+            JSONObject result = new JSONObject()
+                .put("success", true)
+                .put("appointment_id", String.valueOf(newId))
+                .put("doctor_id", chosen)
+                .put("message", "Appointment created successfully");
+            if (slot != null) {
+                result.put("appointment_date", slot.date().toString())
+                    .put("appointment_time", fixed ? time.toString() : slot.start().toString());
+            }
+            req.send(result);
+        } catch (SQLException e) {
+            slotIndex.place(reservation, null);
+            sendWriteFailure(req, e);
+        }
+    }
+
+    /** Doctor ids by specialization, from memory unless the doctors table changed. */
+    private Map<String, List<Integer>> specialists(ConnectionPool.PooledConnection c) throws SQLException {
+        String version = tableVersionETag(c, "doctors");
+        synchronized (specialistsLock) {
+            if (version == null || !version.equals(specialistsVersion)) {
+                Map<String, List<Integer>> bySpecialization = new HashMap<>();
+                try (ResultSet rs = c.prepare(SQL_SPECIALISTS).executeQuery()) {
+                    while (rs.next()) {
+                        String s = rs.getString("specialization");
+                        if (s == null) continue;
+                        bySpecialization.computeIfAbsent(s.trim(), k -> new ArrayList<>()).add(rs.getInt("doctor_id"));
+                    }
+                }
+                specialists = bySpecialization;
+                specialistsVersion = version;
+            }
+            return specialists;
+        }
+    }
+
+    private void updateAppointment(ApiRequest req, int id) throws Exception {
+        JSONObject data = req.bodyJSON();
+        Object patientId = nullable(data, "patientId");
+        Object doctorId  = nullable(data, "doctorId");
+        Object date      = nullable(data, "appointmentDate");
+        Object time      = nullable(data, "appointmentTime");
+        if (patientId == null || doctorId == null || date == null || time == null) {
+            req.send(new JSONObject()
+                .put("success", false)
+                .put("message", "Missing one of: patientId, doctorId, appointmentDate, appointmentTime"));
+            return;
+        }
+
+        Object status = nullable(data, "status");
+        SlotIndex.Slot target = slotFor(doctorId, date, time, status);
+        SlotIndex.Slot previous = null;
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            syncSlots(c);
+            previous = slotIndex.slotOf(id);
+            if (!slotIndex.place(id, target)) {
+                req.send(409, slotTaken(SLOT_TAKEN));
+                return;
+            }
+            PreparedStatement ps = c.prepare(SQL_UPDATE);
+            ps.setObject(1, patientId);
+            ps.setObject(2, doctorId);
+            ps.setObject(3, date);
+            ps.setObject(4, time);
+            ps.setObject(5, status);
+            ps.setString(6, data.optString("notes", ""));
+            ps.setInt(7, id);
+            if (ps.executeUpdate() == 0) {
+                slotIndex.force(id, previous);
+            }
+            req.send(new JSONObject()
+                .put("success", true)
+                .put("message", "Appointment updated successfully"));
+        } catch (SQLException e) {
+            slotIndex.force(id, previous);
+            sendWriteFailure(req, e);
+        }
+    }
+
+    /**
+     * PUT /status with {"ids":[...],"status":"completed","notes":"..."}.
+     * Moves every listed appointment to {@code status} in one transaction;
+     * notes are replaced only when given. Ids that do not exist are reported
+     * back in "missing" rather than failing the whole batch.
+     */
+    private void updateStatuses(ApiRequest req) throws Exception {
+        JSONObject data = req.bodyJSON();
+        JSONArray rawIds = data.optJSONArray("ids");
+        String status = data.optString("status", null);
+        if (rawIds == null || rawIds.isEmpty()) {
+            req.send(400, failure("Expected a non-empty ids array"));
+            return;
+        }
+        if (rawIds.length() > MAX_BATCH_SIZE) {
+            req.send(400, failure("At most " + MAX_BATCH_SIZE + " ids per request"));
+            return;
+        }
+        if (status == null || !STATUSES.contains(status)) {
+            req.send(400, failure("Invalid status: " + status));
+            return;
+        }
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (int i = 0; i < rawIds.length(); i++) {
+            ids.add(rawIds.getInt(i));
+        }
+
+        int slots = inListSize(ids.size());
+        String in = placeholders(slots);
+        List<Object> params = new ArrayList<>(ids);
+        while (params.size() < slots) {
+            // repeat the first id; duplicates in an IN list are harmless
+            params.add(params.get(0));
+        }
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            c.connection().setAutoCommit(false);
+
+            Set<Integer> found = new LinkedHashSet<>();
+            Map<Integer, SlotIndex.Slot> moved = new LinkedHashMap<>();
+            PreparedStatement lock = c.prepare(
+                SQL_SLOTS + "WHERE appointment_id IN " + in + " FOR UPDATE");
+            bind(lock, params);
+            try (ResultSet rs = lock.executeQuery()) {
+                while (rs.next()) {
+                    found.add(rs.getInt(1));
+                    moved.put(rs.getInt(1), slotFor(rs.getInt("doctor_id"), rs.getDate("appointment_date"),
+                        rs.getTime("appointment_time"), status));
+                }
+            }
+
+            PreparedStatement ps = c.prepare(
+                "UPDATE appointments SET status = ?, notes = COALESCE(?, notes), version = version + 1 "
+                + "WHERE appointment_id IN " + in);
+            ps.setString(1, status);
+            ps.setObject(2, nullable(data, "notes"));
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 3, params.get(i));
+            }
+            ps.executeUpdate();
+            c.connection().commit();
+            // re-activating a cancelled row may take a slot; the unique key has already vouched for it
+            moved.forEach((movedId, slot) -> slotIndex.force(movedId, slot));
+
+            JSONArray missing = new JSONArray();
+            for (int id : ids) {
+                if (!found.contains(id)) missing.put(id);
+            }
+            req.send(new JSONObject()
+                .put("success", true)
+                .put("updated", found.size())
+                .put("missing", missing)
+                .put("message", found.size() + " appointment(s) set to " + status));
+        } catch (SQLException e) {
+            sendWriteFailure(req, e);
+        }
+    }
+
+    /**
+     * PUT /allocate: give pending requests (scheduled, but without a date or
+     * time) the earliest free slot of their doctor within working hours,
+     * oldest request first. The body picks the requests: "ids", or every
+     * pending one of a "doctorId" or of a "specialization". Optional "from"
+     * (yyyy-MM-dd, default today; today only counts slots still ahead) and
+     * "days" (default {@value #ALLOCATE_DAYS}) bound the search; a request
+     * that already has a date is not moved before it.
+     *
+     * All requests are placed in one pass over the slot index, each taking
+     * the lowest free bit of its doctor's day, and written in one
+     * transaction. A request the unique key still refuses (a booking made
+     * elsewhere since the last catch-up) is left pending and reported.
+     */
+    private void allocateSlots(ApiRequest req) throws Exception {
+        JSONObject data = req.bodyJSON();
+        StringBuilder sql = new StringBuilder(SQL_PENDING);
+        List<Object> params = new ArrayList<>();
+        JSONArray rawIds = data.optJSONArray("ids");
+        if (rawIds != null && !rawIds.isEmpty()) {
+            if (rawIds.length() > MAX_BATCH_SIZE) {
+                req.send(400, failure("At most " + MAX_BATCH_SIZE + " ids per request"));
+                return;
+            }
+            int slots = inListSize(rawIds.length());
+            for (int i = 0; i < slots; i++) {
+                // pad with the first id; duplicates in an IN list are harmless
+                params.add(rawIds.getInt(i < rawIds.length() ? i : 0));
+            }
+            sql.append("AND a.appointment_id IN ").append(placeholders(slots)).append(' ');
+        } else if (data.has("doctorId")) {
+            sql.append(PENDING_BY_DOCTOR);
+            params.add(data.getInt("doctorId"));
+        } else if (data.has("specialization")) {
+            sql.append(PENDING_BY_SPECIALIZATION);
+            params.add(data.getString("specialization"));
+        } else {
+            req.send(400, failure("Expected ids, doctorId or specialization"));
+            return;
+        }
+        sql.append(PENDING_ORDER);
+
+        LocalDate today = LocalDate.now();
+        LocalDate from;
+        try {
+            from = data.has("from") ? LocalDate.parse(data.getString("from")) : today;
+        } catch (DateTimeParseException e) {
+            req.send(400, failure("Invalid from: " + data.get("from")));
+            return;
+        }
+        int days = Math.max(1, Math.min(data.optInt("days", ALLOCATE_DAYS), MAX_ALLOCATE_DAYS));
+        if (from.isBefore(today)) from = today;
+
+        JSONArray assigned = new JSONArray();
+        JSONArray unassigned = new JSONArray();
+        List<Integer> reserved = new ArrayList<>();
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            syncSlots(c);
+            c.connection().setAutoCommit(false);
+            PreparedStatement pending = c.prepare(sql.toString());
+            bind(pending, params);
+            PreparedStatement assign = c.prepare(SQL_ASSIGN);
+            try (ResultSet rs = pending.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt("appointment_id");
+                    int doctorId = rs.getInt("doctor_id");
+                    java.sql.Date own = rs.getDate("appointment_date");
+                    LocalDate start = own != null && own.toLocalDate().isAfter(from) ? own.toLocalDate() : from;
+                    long firstDay = start.equals(today) ? SlotIndex.slotsFrom(LocalTime.now()) : -1L;
+
+                    SlotIndex.Slot slot = slotIndex.reserveEarliest(
+                        id, doctorId, start, firstDay, SlotIndex.WORKING_HOURS, days);
+                    if (slot == null) {
+                        unassigned.put(id);
+                        continue;
+                    }
+                    reserved.add(id);
+                    assign.setDate(1, java.sql.Date.valueOf(slot.date()));
+                    assign.setTime(2, Time.valueOf(slot.start()));
+                    assign.setInt(3, id);
+                    boolean written;
+                    try {
+                        written = assign.executeUpdate() == 1;
+                    } catch (SQLException e) {
+                        // only a lost race for the slot leaves the row pending; anything else fails the call
+                        if (!isSlotTaken(e)) throw e;
+                        written = false;
+                    }
+                    if (!written) {
+                        slotIndex.place(id, null);
+                        reserved.remove(Integer.valueOf(id));
+                        unassigned.put(id);
+                        continue;
+                    }
+                    assigned.put(new JSONObject()
+                        .put("appointment_id", id)
+                        .put("doctor_id", doctorId)
+                        .put("appointment_date", slot.date().toString())
+                        .put("appointment_time", slot.start().toString()));
+                }
+            }
+            c.connection().commit();
+        } catch (SQLException e) {
+            for (int id : reserved) slotIndex.place(id, null);
+            req.send(failure(e.getMessage()));
+            return;
+        }
+        req.send(new JSONObject()
+            .put("success", true)
+            .put("assigned", assigned)
+            .put("unassigned", unassigned)
+            .put("message", assigned.length() + " appointment(s) scheduled, "
+                + unassigned.length() + " left pending"));
+    }
+
+    /**
+     * PATCH /{id}: applies only the fields present in the body with one
+     * UPDATE. With "expectedVersion" the row is only changed if its version
+     * still matches; otherwise 409 with the current version is returned, so
+     * a concurrent edit is never silently overwritten.
+     */
+    private void patchAppointment(ApiRequest req, int id) throws Exception {
+        JSONObject data = req.bodyJSON();
+        Integer expected = data.has("expectedVersion") ? data.getInt("expectedVersion") : null;
+
+        for (String key : data.keySet()) {
+            if (!key.equals("expectedVersion") && !PATCHABLE.containsKey(key)) {
+                req.send(400, failure("Unknown field: " + key));
+                return;
+            }
+        }
+        if (data.has("status") && !STATUSES.contains(data.optString("status"))) {
+            req.send(400, failure("Invalid status: " + data.optString("status")));
+            return;
+        }
+
+        // columns always in PATCHABLE order, so the statement cache sees few variants
+        StringBuilder sql = new StringBuilder("UPDATE appointments SET ");
+        List<Object> params = new ArrayList<>();
+        for (Map.Entry<String, String> field : PATCHABLE.entrySet()) {
+            if (!data.has(field.getKey())) continue;
+            sql.append(field.getValue()).append(" = ?, ");
+            params.add(nullable(data, field.getKey()));
+        }
+        if (params.isEmpty()) {
+            req.send(400, failure("Nothing to update"));
+            return;
+        }
+        sql.append("version = version + 1 WHERE appointment_id = ?");
+        params.add(id);
+        if (expected != null) {
+            sql.append(" AND version = ?");
+            params.add(expected);
+        }
+
+        boolean movesSlot = data.has("doctorId") || data.has("appointmentDate")
+            || data.has("appointmentTime") || data.has("status");
+        SlotIndex.Slot previous = null;
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            c.connection().setAutoCommit(false);
+            if (movesSlot) {
+                syncSlots(c);
+                previous = slotIndex.slotOf(id);
+                SlotIndex.Slot target = patchedSlot(c, id, data);
+                if (!slotIndex.place(id, target)) {
+                    req.send(409, slotTaken(SLOT_TAKEN));
+                    return;
+                }
+            }
+            PreparedStatement ps = c.prepare(sql.toString());
+            bind(ps, params);
+            int changed = ps.executeUpdate();
+            if (changed == 0 && movesSlot) {
+                slotIndex.force(id, previous);
+            }
+
+            PreparedStatement versionQuery = c.prepare(SQL_GET_VERSION);
+            versionQuery.setInt(1, id);
+            Integer current = null;
+            try (ResultSet rs = versionQuery.executeQuery()) {
+                if (rs.next()) current = rs.getInt(1);
+            }
+            c.connection().commit();
+
+            if (current == null) {
+                req.send(404, failure("Appointment not found"));
+            } else if (changed == 0) {
+                req.send(409, failure("Appointment was modified by someone else")
+                    .put("reason", REASON_VERSION)
+                    .put("version", current));
+            } else {
+                req.send(new JSONObject()
+                    .put("success", true)
+                    .put("version", current)
+                    .put("message", "Appointment updated successfully"));
+            }
+        } catch (SQLException e) {
+            if (movesSlot) slotIndex.force(id, previous);
+            sendWriteFailure(req, e);
+        }
+    }
+
+    /** The slot row {@code id} will hold once {@code data} is applied; locks the row. */
+    private static SlotIndex.Slot patchedSlot(ConnectionPool.PooledConnection c, int id, JSONObject data)
+            throws SQLException {
+        PreparedStatement ps = c.prepare(SQL_SLOT_OF);
+        ps.setInt(1, id);
+        try (ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) return null;
+            return slotFor(
+                data.has("doctorId") ? nullable(data, "doctorId") : rs.getInt("doctor_id"),
+                data.has("appointmentDate") ? nullable(data, "appointmentDate") : rs.getDate("appointment_date"),
+                data.has("appointmentTime") ? nullable(data, "appointmentTime") : rs.getTime("appointment_time"),
+                data.has("status") ? nullable(data, "status") : rs.getString("status"));
+        }
+    }
+
+    /**
+     * IN-list length used for {@code n} values: the next power of two, so the
+     * per-connection statement cache only ever sees a handful of distinct
+     * statements however many ids are sent.
+     */
+    static int inListSize(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /** "(?, ?, ...)" with {@code n} placeholders. */
+    static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.append(')').toString();
+    }
+
+    /** Deletes the row and leaves a tombstone for /changes in the same transaction. */
+    private void deleteAppointment(ApiRequest req, int id) throws Exception {
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            c.connection().setAutoCommit(false);
+            PreparedStatement purge = c.prepare(SQL_PURGE_TOMBSTONES);
+            purge.setTimestamp(1, new Timestamp(System.currentTimeMillis() - TOMBSTONE_RETENTION_MS));
+            purge.executeUpdate();
+            PreparedStatement tombstone = c.prepare(SQL_TOMBSTONE);
+            tombstone.setInt(1, id);
+            tombstone.executeUpdate();
+            PreparedStatement ps = c.prepare(SQL_DELETE);
+            ps.setInt(1, id);
+            ps.executeUpdate();
+            c.connection().commit();
+            slotIndex.place(id, null);
+            req.send(new JSONObject()
+                .put("success", true)
+                .put("message", "Appointment deleted successfully"));
+        } catch (SQLException e) {
+            req.send(new JSONObject().put("error", e.getMessage()));
+        }
+    }
+}
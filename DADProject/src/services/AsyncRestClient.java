@@ -0,0 +1,194 @@
+package services;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.swing.SwingUtilities;
+
+import models.Appointment;
+import models.AppointmentEvent;
+import models.Doctor;
+import models.Patient;
+
+import org.json.JSONObject;
+
+/**
+ * Non-blocking front for {@link RestClient}. Every call runs on its own
+ * virtual thread and returns a {@link CompletableFuture} that completes on
+ * the EDT, so callbacks chained with {@code thenAccept}/{@code whenComplete}
+ * may touch Swing components directly.
+ *
+ * Cancelling a returned future interrupts the request: a panel that reloads
+ * before the previous load has finished cancels the old future, and its
+ * result is never delivered.
+ *
+ * <pre>
+ * pending = async.getAllDoctors();
+ * pending.thenAccept(this::showDoctors);
+ * </pre>
+ */
+public class AsyncRestClient {
+
+    /** Runs a stage on the EDT, for {@code thenApplyAsync(fn, EDT)} and friends. */
+    public static final Executor EDT = SwingUtilities::invokeLater;
+
+    private static final AsyncRestClient INSTANCE = new AsyncRestClient(RestClient.getInstance());
+
+    private final RestClient client;
+    private final ExecutorService executor =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rest-", 0).factory());
+
+    public AsyncRestClient(RestClient client) {
+        this.client = client;
+    }
+
+    public static AsyncRestClient getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Run {@code task} on a virtual thread. The future completes on the EDT;
+     * cancelling it interrupts the task.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = executor.submit(() -> {
+            try {
+                T value = task.call();
+                SwingUtilities.invokeLater(() -> result.complete(value));
+            } catch (Throwable t) {
+                SwingUtilities.invokeLater(() -> result.completeExceptionally(t));
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) running.cancel(true);
+        });
+        return result;
+    }
+
+    /** True when {@code error} (as passed to a completion handler) means "cancelled". */
+    public static boolean isCancellation(Throwable error) {
+        Throwable t = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return t instanceof CancellationException;
+    }
+
+    /** Stop accepting work; requests already running are interrupted. */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ------------------------------------------------------------- patients
+
+    public CompletableFuture<List<Patient>> getAllPatients() {
+        return submit(client::getAllPatients);
+    }
+
+    public CompletableFuture<List<Patient>> getPatientsPage(Patient after, int limit) {
+        return submit(() -> client.getPatientsPage(after, limit));
+    }
+
+    public CompletableFuture<Boolean> createPatient(Patient patient) {
+        return submit(() -> client.createPatient(patient));
+    }
+
+    /** Progress callbacks arrive on the request's thread, not the EDT. */
+    public CompletableFuture<BatchResult> createPatients(List<Patient> patients, BatchResult.ProgressListener progress) {
+        return submit(() -> client.createPatients(patients, progress));
+    }
+
+    public CompletableFuture<Boolean> updatePatient(Patient patient) {
+        return submit(() -> client.updatePatient(patient));
+    }
+
+    // -------------------------------------------------------------- doctors
+
+    public CompletableFuture<List<Doctor>> getAllDoctors() {
+        return submit(client::getAllDoctors);
+    }
+
+    public CompletableFuture<JSONObject> authenticateDoctor(String email, String password) {
+        return submit(() -> client.authenticateDoctor(email, password));
+    }
+
+    public CompletableFuture<Boolean> registerDoctor(String firstName, String lastName, String email,
+                                                     String phone, String specialization, String password) {
+        return submit(() -> client.registerDoctor(firstName, lastName, email, phone, specialization, password));
+    }
+
+    // --------------------------------------------------------- appointments
+
+    public CompletableFuture<List<Appointment>> getAppointments(AppointmentQuery query) {
+        return submit(() -> client.getAppointments(query));
+    }
+
+    public CompletableFuture<Appointment> getAppointment(int appointmentId) {
+        return submit(() -> client.getAppointment(appointmentId));
+    }
+
+    public CompletableFuture<AppointmentChanges> getAppointmentChanges(long since) {
+        return submit(() -> client.getAppointmentChanges(since));
+    }
+
+    public CompletableFuture<DaySlots> getDaySlots(int doctorId, LocalDate date) {
+        return submit(() -> client.getDaySlots(doctorId, date));
+    }
+
+    public CompletableFuture<MonthAvailability> getMonthAvailability(int doctorId, YearMonth month) {
+        return submit(() -> client.getMonthAvailability(doctorId, month));
+    }
+
+    /**
+     * The store is updated on the request's thread; don't cancel this one
+     * halfway, or the returned changes are lost while the store keeps them.
+     */
+    public CompletableFuture<List<AppointmentEvent>> syncAppointments(AppointmentStore store) {
+        return submit(() -> client.syncAppointments(store));
+    }
+
+    public CompletableFuture<Integer> createAppointmentReturningId(String patientId, String doctorId,
+                                                                  String date, String time, String notes) {
+        return submit(() -> client.createAppointmentReturningId(patientId, doctorId, date, time, notes));
+    }
+
+    public CompletableFuture<Boolean> updateAppointment(Appointment appt) {
+        return submit(() -> client.updateAppointment(appt));
+    }
+
+    public CompletableFuture<RestClient.PatchResult> patchAppointment(Appointment appt, JSONObject changes) {
+        return submit(() -> client.patchAppointment(appt, changes));
+    }
+
+    public CompletableFuture<Integer> updateAppointmentStatuses(List<Integer> appointmentIds, String status, String notes) {
+        return submit(() -> client.updateAppointmentStatuses(appointmentIds, status, notes));
+    }
+
+    public CompletableFuture<SlotAllocation.Assignment> createAppointmentBySpecialization(
+            String patientId, String specialization, String date, String time, String notes) {
+        return submit(() -> client.createAppointmentBySpecialization(patientId, specialization, date, time, notes));
+    }
+
+    public CompletableFuture<SlotAllocation> allocateSlots(List<Integer> appointmentIds) {
+        return submit(() -> client.allocateSlots(appointmentIds));
+    }
+
+    public CompletableFuture<SlotAllocation> allocateSlotsForDoctor(int doctorId) {
+        return submit(() -> client.allocateSlotsForDoctor(doctorId));
+    }
+
+    public CompletableFuture<SlotAllocation> allocateSlotsForSpecialization(String specialization) {
+        return submit(() -> client.allocateSlotsForSpecialization(specialization));
+    }
+
+    public CompletableFuture<Boolean> deleteAppointment(int appointmentId) {
+        return submit(() -> client.deleteAppointment(appointmentId));
+    }
+}
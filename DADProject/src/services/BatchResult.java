@@ -0,0 +1,80 @@
+package services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of a bulk call such as {@link RestClient#createPatients}: for each
+ * input row either the id the server assigned or the reason it was rejected.
+ * Row numbers are positions in the list that was submitted.
+ */
+public class BatchResult {
+
+    /** Progress of a running bulk call; invoked on the calling thread after each chunk. */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(int processed, int total);
+    }
+
+    private final int[] ids;
+    private final String[] errors;
+
+    public BatchResult(int size) {
+        this.ids = new int[size];
+        this.errors = new String[size];
+    }
+
+    void succeed(int row, int id) {
+        ids[row] = id;
+        errors[row] = null;
+    }
+
+    void fail(int row, String error) {
+        ids[row] = 0;
+        errors[row] = error;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /** Id created for {@code row}, or 0 when that row failed. */
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    /** Why {@code row} failed, or null when it was created. */
+    public String getError(int row) {
+        return errors[row];
+    }
+
+    public boolean isCreated(int row) {
+        return ids[row] != 0;
+    }
+
+    public int getCreatedCount() {
+        int n = 0;
+        for (int id : ids) {
+            if (id != 0) n++;
+        }
+        return n;
+    }
+
+    public int getFailedCount() {
+        return ids.length - getCreatedCount();
+    }
+
+    /** Failed rows in input order, mapped to their error message. */
+    public Map<Integer, String> getErrors() {
+        Map<Integer, String> failed = new LinkedHashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == 0) failed.put(i, errors[i] != null ? errors[i] : "Not processed");
+        }
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult[created=" + getCreatedCount() + ", failed=" + getFailedCount() + "]";
+    }
+}
@@ -0,0 +1,181 @@
+package services;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded JDBC connection pool used by the embedded {@link AppointmentServer}.
+ * Each physical connection keeps its own prepared-statement cache, so a hot
+ * query is parsed once per connection instead of once per request.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final String DEFAULT_URL =
+        "jdbc:mysql://127.0.0.1:4306/hospital_management"
+        + "?cachePrepStmts=true&useServerPrepStmts=true&rewriteBatchedStatements=true";
+    private static final long VALIDATE_AFTER_IDLE_MS = 30_000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final long borrowTimeoutMillis;
+    private final Semaphore permits;
+    private final BlockingQueue<PooledConnection> idle;
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * Pool configured from -Dhospital.db.url / .user / .password / .poolSize,
+     * defaulting to the same database config.php points at.
+     */
+    public static ConnectionPool fromSystemProperties() {
+        return new ConnectionPool(
+            System.getProperty("hospital.db.url", DEFAULT_URL),
+            System.getProperty("hospital.db.user", "root"),
+            System.getProperty("hospital.db.password", ""),
+            Integer.getInteger("hospital.db.poolSize", 10),
+            Long.getLong("hospital.db.borrowTimeoutMs", 5_000L));
+    }
+
+    /**
+     * Borrow a connection; close the returned lease to hand it back.
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pc;
+            while ((pc = idle.poll()) != null) {
+                if (pc.isUsable()) {
+                    pc.lastUsed = System.currentTimeMillis();
+                    return pc;
+                }
+                pc.closeQuietly();
+            }
+            return new PooledConnection(DriverManager.getConnection(url, user, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        try {
+            if (closed || pc.connection.isClosed()) {
+                pc.closeQuietly();
+            } else {
+                if (!pc.connection.getAutoCommit()) {
+                    // a caller left a transaction open; never leak it to the next borrower
+                    pc.connection.rollback();
+                    pc.connection.setAutoCommit(true);
+                }
+                pc.lastUsed = System.currentTimeMillis();
+                if (!idle.offer(pc)) pc.closeQuietly();
+            }
+        } catch (SQLException e) {
+            pc.closeQuietly();
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pc;
+        while ((pc = idle.poll()) != null) {
+            pc.closeQuietly();
+        }
+    }
+
+    /**
+     * A borrowed connection plus its statement cache.
+     */
+    public class PooledConnection implements AutoCloseable {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        public Connection connection() {
+            return connection;
+        }
+
+        /** Cached statement for {@code sql}; parameters are cleared before reuse. */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            return cached(sql, false);
+        }
+
+        /** Same as {@link #prepare} but the statement returns generated keys. */
+        public PreparedStatement prepareWithKeys(String sql) throws SQLException {
+            return cached(sql, true);
+        }
+
+        private PreparedStatement cached(String sql, boolean keys) throws SQLException {
+            String cacheKey = keys ? "K:" + sql : sql;
+            PreparedStatement ps = statements.get(cacheKey);
+            if (ps == null || ps.isClosed()) {
+                ps = keys
+                    ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : connection.prepareStatement(sql);
+                statements.put(cacheKey, ps);
+            } else {
+                ps.clearParameters();
+            }
+            return ps;
+        }
+
+        private boolean isUsable() {
+            try {
+                if (connection.isClosed()) return false;
+                if (System.currentTimeMillis() - lastUsed > VALIDATE_AFTER_IDLE_MS) {
+                    return connection.isValid(2);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void closeQuietly() {
+            for (PreparedStatement ps : statements.values()) {
+                try { ps.close(); } catch (SQLException ignored) { }
+            }
+            statements.clear();
+            try { connection.close(); } catch (SQLException ignored) { }
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package services;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Reply of {@code GET appointments_api.php/slots?doctor_id=&date=}: which
+ * of a doctor's slots that day are still free within working hours and
+ * which are booked. A doctor holds one appointment per slot, so a time is
+ * bookable when the slot it falls in is free. Immutable.
+ */
+public class DaySlots {
+
+    private final int doctorId;
+    private final LocalDate date;
+    private final int slotMinutes;
+    private final List<LocalTime> free;
+    private final List<LocalTime> booked;
+
+    DaySlots(int doctorId, LocalDate date, int slotMinutes, List<LocalTime> free, List<LocalTime> booked) {
+        this.doctorId = doctorId;
+        this.date = date;
+        this.slotMinutes = slotMinutes;
+        this.free = Collections.unmodifiableList(free);
+        this.booked = Collections.unmodifiableList(booked);
+    }
+
+    static DaySlots fromJSON(JSONObject json) {
+        return new DaySlots(json.getInt("doctor_id"), LocalDate.parse(json.getString("date")),
+            json.optInt("slot_minutes", 30), times(json.optJSONArray("free")), times(json.optJSONArray("booked")));
+    }
+
+    private static List<LocalTime> times(JSONArray array) {
+        List<LocalTime> times = new ArrayList<>();
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                times.add(LocalTime.parse(array.getString(i)));
+            }
+        }
+        return times;
+    }
+
+    /** Start of the slot {@code time} falls in. */
+    public LocalTime slotStart(LocalTime time) {
+        int minutes = time.getHour() * 60 + time.getMinute();
+        return LocalTime.MIDNIGHT.plusMinutes(minutes - minutes % slotMinutes);
+    }
+
+    /** True when another appointment already holds the slot {@code time} falls in. */
+    public boolean isBooked(LocalTime time) {
+        return booked.contains(slotStart(time));
+    }
+
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    public List<LocalTime> getFree() {
+        return free;
+    }
+
+    public List<LocalTime> getBooked() {
+        return booked;
+    }
+
+    @Override
+    public String toString() {
+        return "DaySlots[doctor=" + doctorId + ", date=" + date + ", free=" + free.size()
+            + ", booked=" + booked.size() + "]";
+    }
+}
@@ -0,0 +1,127 @@
+package services;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.json.JSONObject;
+
+/**
+ * Java port of doctors_api.php.
+ */
+class DoctorsHandler extends ApiHandler {
+
+    static final String SQL_GET_ALL =
+        "SELECT doctor_id, first_name, last_name, specialization, phone, email "
+        + "FROM doctors ORDER BY last_name, first_name";
+    static final String SQL_GET_ONE =
+        "SELECT doctor_id, first_name, last_name, specialization, phone, email "
+        + "FROM doctors WHERE doctor_id = ?";
+    static final String SQL_INSERT =
+        "INSERT INTO doctors (first_name, last_name, email, phone, specialization) VALUES (?, ?, ?, ?, ?)";
+    static final String SQL_UPDATE =
+        "UPDATE doctors SET first_name = ?, last_name = ?, email = ?, phone = ?, specialization = ? "
+        + "WHERE doctor_id = ?";
+    static final String SQL_DELETE = "DELETE FROM doctors WHERE doctor_id = ?";
+
+    DoctorsHandler(ConnectionPool pool) {
+        super(pool);
+    }
+
+    @Override
+    protected void dispatch(ApiRequest req) throws Exception {
+        Integer id = req.pathId();
+        switch (req.method) {
+            case "GET":
+                if (id != null) getDoctor(req, id);
+                else getAllDoctors(req);
+                break;
+            case "POST":
+                createDoctor(req);
+                break;
+            case "PUT":
+                if (id != null) updateDoctor(req, id);
+                else req.send(400, failure("Missing doctor id"));
+                break;
+            case "DELETE":
+                if (id != null) deleteDoctor(req, id);
+                else req.send(400, failure("Missing doctor id"));
+                break;
+            default:
+                req.send(405, failure("Method not allowed"));
+        }
+    }
+
+    private void getAllDoctors(ApiRequest req) throws Exception {
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            if (req.notModified(tableVersionETag(c, "doctors"))) return;
+            try (ResultSet rs = c.prepare(SQL_GET_ALL).executeQuery()) {
+                req.send(rowsToJSON(rs));
+            }
+        }
+    }
+
+    private void getDoctor(ApiRequest req, int id) throws Exception {
+        Object result;
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            PreparedStatement ps = c.prepare(SQL_GET_ONE);
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                // doctors_api.php echoes json_encode(false) when nothing matches
+                result = rs.next() ? rowToJSON(rs) : Boolean.FALSE;
+            }
+        }
+        req.send(result);
+    }
+
+    private void createDoctor(ApiRequest req) throws Exception {
+        JSONObject data = req.bodyJSON();
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            PreparedStatement ps = c.prepareWithKeys(SQL_INSERT);
+            ps.setObject(1, nullable(data, "firstName"));
+            ps.setObject(2, nullable(data, "lastName"));
+            ps.setObject(3, nullable(data, "email"));
+            ps.setObject(4, nullable(data, "phone"));
+            ps.setObject(5, nullable(data, "specialization"));
+            ps.executeUpdate();
+
+            long newId = 0;
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) newId = keys.getLong(1);
+            }
+            req.send(new JSONObject()
+                .put("success", true)
+                .put("doctor_id", String.valueOf(newId)));
+        } catch (SQLException e) {
+            req.send(new JSONObject().put("error", e.getMessage()));
+        }
+    }
+
+    private void updateDoctor(ApiRequest req, int id) throws Exception {
+        JSONObject data = req.bodyJSON();
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            PreparedStatement ps = c.prepare(SQL_UPDATE);
+            ps.setObject(1, nullable(data, "firstName"));
+            ps.setObject(2, nullable(data, "lastName"));
+            ps.setObject(3, nullable(data, "email"));
+            ps.setObject(4, nullable(data, "phone"));
+            ps.setObject(5, nullable(data, "specialization"));
+            ps.setInt(6, id);
+            ps.executeUpdate();
+            req.send(new JSONObject().put("success", true));
+        } catch (SQLException e) {
+            req.send(new JSONObject().put("error", e.getMessage()));
+        }
+    }
+
+    private void deleteDoctor(ApiRequest req, int id) throws Exception {
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            PreparedStatement ps = c.prepare(SQL_DELETE);
+            ps.setInt(1, id);
+            ps.executeUpdate();
+            req.send(new JSONObject().put("success", true));
+        } catch (SQLException e) {
+            req.send(new JSONObject().put("error", e.getMessage()));
+        }
+    }
+}
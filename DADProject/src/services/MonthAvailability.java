@@ -0,0 +1,88 @@
+package services;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Reply of {@code GET appointments_api.php/availability?doctor_id=&month=}:
+ * one doctor's bookings for a whole month as a bitmask per day (bit i = the
+ * slot starting i * slot minutes after midnight is booked), plus the mask of
+ * slots inside working hours. Immutable.
+ */
+public class MonthAvailability {
+
+    private final int doctorId;
+    private final YearMonth month;
+    private final int slotMinutes;
+    private final long working;
+    private final long[] days;
+
+    MonthAvailability(int doctorId, YearMonth month, int slotMinutes, long working, long[] days) {
+        this.doctorId = doctorId;
+        this.month = month;
+        this.slotMinutes = slotMinutes;
+        this.working = working;
+        this.days = days;
+    }
+
+    static MonthAvailability fromJSON(JSONObject json) {
+        YearMonth month = YearMonth.parse(json.getString("month"));
+        JSONArray masks = json.getJSONArray("days");
+        long[] days = new long[month.lengthOfMonth()];
+        for (int i = 0; i < days.length && i < masks.length(); i++) {
+            days[i] = masks.getLong(i);
+        }
+        return new MonthAvailability(json.getInt("doctor_id"), month, json.optInt("slot_minutes", 30),
+            json.getLong("working"), days);
+    }
+
+    /** Booked slots of {@code date} as a bitmask; 0 for a date outside this month. */
+    public long occupied(LocalDate date) {
+        return YearMonth.from(date).equals(month) ? days[date.getDayOfMonth() - 1] : 0L;
+    }
+
+    /** True when the slot {@code time} falls in is booked on {@code date}. */
+    public boolean isBooked(LocalDate date, LocalTime time) {
+        return (occupied(date) & (1L << slotOf(time))) != 0;
+    }
+
+    /** True when every slot within working hours is booked on {@code date}. */
+    public boolean isFull(LocalDate date) {
+        return (occupied(date) & working) == working;
+    }
+
+    /** Number of booked slots within working hours on {@code date}. */
+    public int bookedCount(LocalDate date) {
+        return Long.bitCount(occupied(date) & working);
+    }
+
+    /** Slot number within the day that {@code time} falls in. */
+    public int slotOf(LocalTime time) {
+        return (time.getHour() * 60 + time.getMinute()) / slotMinutes;
+    }
+
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    @Override
+    public String toString() {
+        int busy = 0;
+        for (long day : days) {
+            if (day != 0) busy++;
+        }
+        return "MonthAvailability[doctor=" + doctorId + ", month=" + month + ", busyDays=" + busy + "]";
+    }
+}
@@ -0,0 +1,267 @@
+package services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import models.AppointmentEvent;
+import org.json.JSONException;
+
+/**
+ * Connection to the {@link NotificationHub}. One persistent socket per
+ * application carries every subscription and publish. If the hub goes away
+ * the client reconnects in the background and re-subscribes.
+ *
+ * Host and port come from -Dhospital.notify.host / .port (default
+ * localhost:6000). When the hub is on this machine and nobody is running
+ * it yet, the first client starts one in-process, so a single-host setup
+ * needs no extra process.
+ *
+ * Lines are written by one background thread in call order, so subscribe
+ * and publish return at once even while the hub is being (re)connected;
+ * they are safe to call from the EDT.
+ */
+public class NotificationClient {
+
+    /** Receives hub events; called on the notification reader thread, not the EDT. */
+    @FunctionalInterface
+    public interface Listener {
+        void onEvent(AppointmentEvent event);
+    }
+
+    private static final NotificationClient INSTANCE = new NotificationClient(
+        System.getProperty("hospital.notify.host", "localhost"),
+        Integer.getInteger("hospital.notify.port", NotificationHub.DEFAULT_PORT));
+
+    private static final int CONNECT_TIMEOUT_MS = 2_000;
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    private final String host;
+    private final int port;
+    // doctor id (0 = every doctor) -> listeners
+    private final Map<Integer, List<Listener>> listeners = new ConcurrentHashMap<>();
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "NotificationSender");
+        t.setDaemon(true);
+        return t;
+    });
+    private Socket socket;
+    private Writer out;
+    private boolean reconnecting = false;
+
+    public NotificationClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public static NotificationClient getInstance() {
+        return INSTANCE;
+    }
+
+    /** Listen for events about {@code doctorId}; 0 means every doctor. */
+    public void subscribe(int doctorId, Listener listener) {
+        boolean first = listeners.computeIfAbsent(doctorId, k -> new CopyOnWriteArrayList<>()).isEmpty();
+        listeners.get(doctorId).add(listener);
+        if (first) {
+            sendLine("SUBSCRIBE " + target(doctorId));
+        }
+    }
+
+    public void unsubscribe(int doctorId, Listener listener) {
+        List<Listener> list = listeners.get(doctorId);
+        if (list == null) return;
+        list.remove(listener);
+        if (list.isEmpty()) {
+            listeners.remove(doctorId);
+            sendLine("UNSUBSCRIBE " + target(doctorId));
+        }
+    }
+
+    /** Tell everyone watching the event's doctor that an appointment changed. */
+    public void publish(AppointmentEvent event) {
+        String line = "PUBLISH " + event.getDoctorId() + " " + event.getType() + " " + event.getAppointmentId();
+        String snapshot = event.snapshotJSON();
+        sendLine(snapshot != null ? line + " " + snapshot : line);
+    }
+
+    private static String target(int doctorId) {
+        return doctorId == NotificationHub.ALL_DOCTORS ? "*" : String.valueOf(doctorId);
+    }
+
+    private void sendLine(String line) {
+        sender.execute(() -> send(line));
+    }
+
+    private synchronized void send(String line) {
+        if (!ensureConnected()) {
+            System.err.println("Notification hub unavailable, dropping: " + line);
+            return;
+        }
+        try {
+            out.write(line + "\n");
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Notification send failed: " + e.getMessage());
+            disconnected();
+        }
+    }
+
+    private synchronized boolean ensureConnected() {
+        if (socket != null && !socket.isClosed()) return true;
+        try {
+            connect();
+            return true;
+        } catch (ConnectException refused) {
+            if (startEmbeddedHub()) {
+                try {
+                    connect();
+                    return true;
+                } catch (IOException e) {
+                    System.err.println("Notification hub still unreachable: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot reach notification hub at " + host + ":" + port + ": " + e.getMessage());
+        }
+        scheduleReconnect();
+        return false;
+    }
+
+    private void connect() throws IOException {
+        Socket s = new Socket();
+        try {
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            s.setTcpNoDelay(true);
+            Writer w = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+            for (Integer doctorId : listeners.keySet()) {
+                w.write("SUBSCRIBE " + target(doctorId) + "\n");
+            }
+            w.flush();
+            socket = s;
+            out = w;
+        } catch (IOException e) {
+            s.close();
+            throw e;
+        }
+
+        Socket mine = s;
+        Thread reader = new Thread(() -> readLoop(mine), "NotificationClient");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /** Start a hub in this JVM when the configured host is this machine. */
+    private boolean startEmbeddedHub() {
+        if (!Boolean.parseBoolean(System.getProperty("hospital.notify.embedded", "true"))) return false;
+        try {
+            if (!InetAddress.getByName(host).isLoopbackAddress()) return false;
+            new NotificationHub(port).start();
+            return true;
+        } catch (BindException taken) {
+            // another process just started one; connecting again will find it
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not start notification hub: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void readLoop(Socket s) {
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split("\\s+", 5);
+                if (parts.length >= 4 && parts[0].equals("EVENT")) {
+                    try {
+                        dispatch(AppointmentEvent.parse(Integer.parseInt(parts[1]), parts[2],
+                            Integer.parseInt(parts[3]), parts.length == 5 ? parts[4] : null));
+                    } catch (IllegalArgumentException | JSONException e) {
+                        System.err.println("Bad notification: " + line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // connection dropped; handled below
+        }
+        synchronized (this) {
+            if (socket == s) disconnected();
+        }
+    }
+
+    private void dispatch(AppointmentEvent event) {
+        int doctorId = event.getDoctorId();
+        notify(listeners.get(doctorId), event);
+        if (doctorId != NotificationHub.ALL_DOCTORS) {
+            notify(listeners.get(NotificationHub.ALL_DOCTORS), event);
+        }
+    }
+
+    private static void notify(List<Listener> list, AppointmentEvent event) {
+        if (list == null) return;
+        for (Listener l : list) {
+            try {
+                l.onEvent(event);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private synchronized void disconnected() {
+        try {
+            if (socket != null) socket.close();
+        } catch (IOException ignored) { }
+        socket = null;
+        out = null;
+        if (!listeners.isEmpty()) scheduleReconnect();
+    }
+
+    /** Keep trying in the background while anyone is subscribed. */
+    private synchronized void scheduleReconnect() {
+        if (reconnecting || listeners.isEmpty()) return;
+        reconnecting = true;
+        Thread retry = new Thread(() -> {
+            long delay = 1_000;
+            while (true) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                synchronized (this) {
+                    if (listeners.isEmpty() || (socket != null && !socket.isClosed())) break;
+                    try {
+                        connect();
+                        System.out.println("Reconnected to notification hub");
+                        break;
+                    } catch (ConnectException refused) {
+                        startEmbeddedHub();
+                    } catch (IOException e) {
+                        // try again later
+                    }
+                }
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+            }
+            synchronized (this) {
+                reconnecting = false;
+            }
+        }, "NotificationReconnect");
+        retry.setDaemon(true);
+        retry.start();
+    }
+}
@@ -0,0 +1,282 @@
+package services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Push hub for appointment notifications. A single selector thread serves
+ * every connection: clients subscribe to doctor ids over one persistent
+ * socket, and each published event is fanned out to the matching
+ * subscribers. Replaces the one-ServerSocket-per-doctor listeners.
+ *
+ * Line protocol (UTF-8, one command per line):
+ * <pre>
+ *   SUBSCRIBE &lt;doctorId|*&gt;
+ *   UNSUBSCRIBE &lt;doctorId|*&gt;
+ *   PUBLISH &lt;doctorId&gt; &lt;CREATED|UPDATED|DELETED&gt; &lt;appointmentId&gt; [&lt;snapshot json&gt;]
+ * </pre>
+ * Subscribers of that doctor, and of {@code *}, receive
+ * {@code EVENT <doctorId> <type> <appointmentId> [<snapshot json>]}. The hub
+ * does not look inside the snapshot; it is passed through as-is.
+ */
+public class NotificationHub {
+
+    public static final int DEFAULT_PORT = 6000;
+    /** Subscription key for "every doctor". */
+    static final int ALL_DOCTORS = 0;
+
+    // room for an event line with its appointment snapshot
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    // a subscriber this far behind is dropped rather than buffered forever
+    private static final int MAX_PENDING_BYTES = 1 << 20;
+
+    private final int port;
+    private final Map<Integer, Set<Connection>> subscribers = new HashMap<>();
+    private Selector selector;
+    private ServerSocketChannel server;
+    private volatile boolean running = false;
+
+    public NotificationHub(int port) {
+        this.port = port;
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) return;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        running = true;
+
+        Thread loop = new Thread(this::run, "NotificationHub");
+        loop.setDaemon(true);
+        loop.start();
+        System.out.println("Notification hub listening on port " + getPort());
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (selector != null) selector.wakeup();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        if (key.isReadable()) read(key);
+                        if (key.isValid() && key.isWritable()) write(key);
+                    } catch (IOException e) {
+                        close((Connection) key.attachment());
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) e.printStackTrace();
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection c = new Connection(channel);
+        c.key = channel.register(selector, SelectionKey.OP_READ, c);
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+        int n = c.channel.read(c.readBuffer);
+        if (n < 0) {
+            close(c);
+            return;
+        }
+        c.readBuffer.flip();
+        while (c.readBuffer.hasRemaining()) {
+            byte b = c.readBuffer.get();
+            if (b == '\n') {
+                String line = c.line.toString(StandardCharsets.UTF_8).trim();
+                c.line.reset();
+                if (!line.isEmpty()) handle(c, line);
+                if (!c.channel.isOpen()) return;
+            } else if (c.line.size() >= MAX_LINE_BYTES) {
+                close(c);
+                return;
+            } else {
+                c.line.write(b);
+            }
+        }
+        c.readBuffer.clear();
+    }
+
+    private void handle(Connection c, String line) {
+        String[] parts = line.split("\\s+", 5);
+        try {
+            switch (parts[0]) {
+                case "SUBSCRIBE":
+                    if (parts.length != 2) break;
+                    int target = parseTarget(parts[1]);
+                    subscribers.computeIfAbsent(target, k -> new HashSet<>()).add(c);
+                    c.topics.add(target);
+                    return;
+                case "UNSUBSCRIBE":
+                    if (parts.length != 2) break;
+                    unsubscribe(c, parseTarget(parts[1]));
+                    return;
+                case "PUBLISH":
+                    if (parts.length < 4) break;
+                    int doctorId = Integer.parseInt(parts[1]);
+                    int appointmentId = Integer.parseInt(parts[3]);
+                    String payload = parts.length == 5 ? " " + parts[4] : "";
+                    fanOut(doctorId, "EVENT " + doctorId + " " + parts[2] + " " + appointmentId + payload + "\n");
+                    return;
+                case "PING":
+                    enqueue(c, "PONG\n".getBytes(StandardCharsets.UTF_8));
+                    return;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the error reply
+        }
+        enqueue(c, ("ERROR " + parts[0] + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int parseTarget(String token) {
+        return "*".equals(token) ? ALL_DOCTORS : Integer.parseInt(token);
+    }
+
+    private void fanOut(int doctorId, String message) {
+        Set<Connection> targets = new LinkedHashSet<>();
+        Set<Connection> direct = subscribers.get(doctorId);
+        if (direct != null) targets.addAll(direct);
+        Set<Connection> all = subscribers.get(ALL_DOCTORS);
+        if (all != null) targets.addAll(all);
+
+        // every subscriber gets its own buffer over the same bytes
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        for (Connection c : targets) {
+            enqueue(c, bytes);
+        }
+    }
+
+    private void enqueue(Connection c, byte[] bytes) {
+        if (c.pendingBytes + bytes.length > MAX_PENDING_BYTES) {
+            System.err.println("Dropping slow notification subscriber " + c.channel);
+            close(c);
+            return;
+        }
+        c.outbox.add(ByteBuffer.wrap(bytes));
+        c.pendingBytes += bytes.length;
+        c.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+        while (!c.outbox.isEmpty()) {
+            ByteBuffer head = c.outbox.peek();
+            c.channel.write(head);
+            if (head.hasRemaining()) return; // socket buffer full; wait for the next OP_WRITE
+            c.outbox.poll();
+            c.pendingBytes -= head.capacity();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void unsubscribe(Connection c, int target) {
+        Set<Connection> set = subscribers.get(target);
+        if (set != null) {
+            set.remove(c);
+            if (set.isEmpty()) subscribers.remove(target);
+        }
+        c.topics.remove(target);
+    }
+
+    private void close(Connection c) {
+        if (c == null) return;
+        for (Integer target : new HashSet<>(c.topics)) {
+            unsubscribe(c, target);
+        }
+        if (c.key != null) c.key.cancel();
+        try {
+            c.channel.close();
+        } catch (IOException ignored) { }
+    }
+
+    private void shutdown() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection c) close(c);
+            }
+            selector.close();
+            server.close();
+        } catch (IOException | ClosedSelectorException ignored) { }
+        subscribers.clear();
+    }
+
+    /** One client socket and its buffered input/output. */
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer readBuffer = ByteBuffer.allocate(1024);
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        final ArrayDeque<ByteBuffer> outbox = new ArrayDeque<>();
+        final Set<Integer> topics = new HashSet<>();
+        SelectionKey key;
+        int pendingBytes = 0;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /** Run a standalone hub: {@code NotificationHub [port]}. */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        NotificationHub hub = new NotificationHub(port);
+        hub.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(hub::stop));
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            hub.stop();
+        }
+    }
+}
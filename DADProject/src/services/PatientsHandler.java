@@ -0,0 +1,277 @@
+package services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Java port of patients_api.php.
+ */
+class PatientsHandler extends ApiHandler {
+
+    static final int MAX_BATCH_SIZE = 1000;
+
+    static final String SQL_GET_ALL = "SELECT * FROM patients ORDER BY last_name, first_name, patient_id";
+    static final String SQL_PAGE_FIRST =
+        "SELECT * FROM patients ORDER BY last_name, first_name, patient_id LIMIT ?";
+    static final String SQL_PAGE_AFTER =
+        "SELECT * FROM patients "
+        + "WHERE last_name > ? OR (last_name = ? AND (first_name > ? OR (first_name = ? AND patient_id > ?))) "
+        + "ORDER BY last_name, first_name, patient_id LIMIT ?";
+    static final String SQL_GET_ONE = "SELECT * FROM patients WHERE patient_id = ?";
+    static final String SQL_INSERT =
+        "INSERT INTO patients (first_name, last_name, phone, email, address, date_of_birth) "
+        + "VALUES (?, ?, ?, ?, ?, ?)";
+    static final String SQL_UPDATE =
+        "UPDATE patients SET first_name = ?, last_name = ?, phone = ?, email = ?, address = ?, "
+        + "date_of_birth = ? WHERE patient_id = ?";
+    static final String SQL_DELETE = "DELETE FROM patients WHERE patient_id = ?";
+
+    PatientsHandler(ConnectionPool pool) {
+        super(pool);
+    }
+
+    @Override
+    protected void dispatch(ApiRequest req) throws Exception {
+        Integer id = req.pathId();
+        switch (req.method) {
+            case "GET":
+                if (id != null) getPatient(req, id);
+                else getAllPatients(req);
+                break;
+            case "POST":
+                if (req.pathIs("batch")) createPatients(req);
+                else createPatient(req);
+                break;
+            case "PUT":
+                if (id != null) updatePatient(req, id);
+                else req.send(400, failure("Missing patient id"));
+                break;
+            case "DELETE":
+                if (id != null) deletePatient(req, id);
+                else req.send(400, failure("Missing patient id"));
+                break;
+            default:
+                req.send(405, failure("Method not allowed"));
+        }
+    }
+
+    /**
+     * Without {@code limit} returns every patient. With it, returns one keyset
+     * page ordered by (last_name, first_name, patient_id) starting after
+     * after_last / after_first / after_id when those are given.
+     */
+    private void getAllPatients(ApiRequest req) throws Exception {
+        Integer limit = req.intParam("limit");
+        Integer afterId = req.intParam("after_id");
+
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            if (req.notModified(tableVersionETag(c, "patients"))) return;
+            PreparedStatement ps;
+            if (limit == null) {
+                ps = c.prepare(SQL_GET_ALL);
+            } else if (afterId == null) {
+                ps = c.prepare(SQL_PAGE_FIRST);
+                ps.setInt(1, clampLimit(limit));
+            } else {
+                String last = req.query.getOrDefault("after_last", "");
+                String first = req.query.getOrDefault("after_first", "");
+                ps = c.prepare(SQL_PAGE_AFTER);
+                ps.setString(1, last);
+                ps.setString(2, last);
+                ps.setString(3, first);
+                ps.setString(4, first);
+                ps.setInt(5, afterId);
+                ps.setInt(6, clampLimit(limit));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                req.send(rowsToJSON(rs));
+            }
+        }
+    }
+
+    private void getPatient(ApiRequest req, int id) throws Exception {
+        JSONObject result;
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            PreparedStatement ps = c.prepare(SQL_GET_ONE);
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                result = rs.next() ? rowToJSON(rs) : new JSONObject().put("error", "Patient not found");
+            }
+        }
+        req.send(result);
+    }
+
+    private void createPatient(ApiRequest req) throws Exception {
+        JSONObject data = req.bodyJSON();
+        if (!data.has("firstName") || !data.has("lastName")) {
+            req.send(new JSONObject().put("error", "Missing required patient data"));
+            return;
+        }
+
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            PreparedStatement ps = c.prepareWithKeys(SQL_INSERT);
+            bindInsert(ps, data);
+            ps.executeUpdate();
+
+            long newId = 0;
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) newId = keys.getLong(1);
+            }
+            req.send(new JSONObject()
+                .put("success", true)
+                .put("patient_id", String.valueOf(newId))
+                .put("message", "Patient created successfully"));
+        } catch (SQLException e) {
+            req.send(new JSONObject().put("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * POST /batch with {"patients":[...]}. Every valid row is inserted in one
+     * transaction as a single JDBC batch, and the reply carries one entry per
+     * input row: {"index":i,"patient_id":"..."} or {"index":i,"error":"..."}.
+     * If the batch fails, the rows are replayed one by one behind savepoints
+     * so only the offending rows are reported and the rest still commit.
+     */
+    private void createPatients(ApiRequest req) throws Exception {
+        JSONArray rows = req.bodyJSON().optJSONArray("patients");
+        if (rows == null) {
+            req.send(400, failure("Expected a patients array"));
+            return;
+        }
+        if (rows.length() > MAX_BATCH_SIZE) {
+            req.send(400, failure("At most " + MAX_BATCH_SIZE + " patients per batch"));
+            return;
+        }
+
+        JSONObject[] results = new JSONObject[rows.length()];
+        List<Integer> valid = new ArrayList<>();
+        for (int i = 0; i < rows.length(); i++) {
+            JSONObject data = rows.optJSONObject(i);
+            if (data == null || !data.has("firstName") || !data.has("lastName")) {
+                results[i] = rowError(i, "Missing required patient data");
+            } else {
+                valid.add(i);
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            try (ConnectionPool.PooledConnection c = pool.borrow()) {
+                Connection conn = c.connection();
+                PreparedStatement ps = c.prepareWithKeys(SQL_INSERT);
+                conn.setAutoCommit(false);
+                ps.clearBatch();
+                try {
+                    for (int i : valid) {
+                        bindInsert(ps, rows.getJSONObject(i));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        for (int i : valid) {
+                            results[i] = keys.next() ? rowCreated(i, keys.getLong(1)) : rowError(i, "No id generated");
+                        }
+                    }
+                } catch (SQLException batchFailure) {
+                    conn.rollback();
+                    ps.clearBatch();
+                    for (int i : valid) {
+                        results[i] = insertOne(conn, ps, i, rows.getJSONObject(i));
+                    }
+                }
+                conn.commit();
+                conn.setAutoCommit(true);
+            }
+        }
+
+        int inserted = 0;
+        JSONArray out = new JSONArray();
+        for (JSONObject r : results) {
+            if (r.has("patient_id")) inserted++;
+            out.put(r);
+        }
+        req.send(new JSONObject()
+            .put("success", true)
+            .put("inserted", inserted)
+            .put("failed", results.length - inserted)
+            .put("results", out));
+    }
+
+    private static JSONObject insertOne(Connection conn, PreparedStatement ps, int index, JSONObject data)
+            throws SQLException {
+        Savepoint sp = conn.setSavepoint();
+        try {
+            bindInsert(ps, data);
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                return keys.next() ? rowCreated(index, keys.getLong(1)) : rowError(index, "No id generated");
+            }
+        } catch (SQLException e) {
+            conn.rollback(sp);
+            return rowError(index, e.getMessage());
+        }
+    }
+
+    private static void bindInsert(PreparedStatement ps, JSONObject data) throws SQLException {
+        ps.setObject(1, nullable(data, "firstName"));
+        ps.setObject(2, nullable(data, "lastName"));
+        ps.setString(3, data.optString("phone", ""));
+        ps.setString(4, data.optString("email", ""));
+        ps.setString(5, data.optString("address", ""));
+        ps.setObject(6, nullable(data, "dateOfBirth"));
+    }
+
+    private static JSONObject rowCreated(int index, long id) {
+        return new JSONObject().put("index", index).put("patient_id", String.valueOf(id));
+    }
+
+    private static JSONObject rowError(int index, String error) {
+        return new JSONObject().put("index", index).put("error", error);
+    }
+
+    private void updatePatient(ApiRequest req, int id) throws Exception {
+        JSONObject data = req.bodyJSON();
+        if (!data.has("firstName") || !data.has("lastName")) {
+            req.send(new JSONObject().put("error", "Missing required fields"));
+            return;
+        }
+
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            PreparedStatement ps = c.prepare(SQL_UPDATE);
+            ps.setObject(1, nullable(data, "firstName"));
+            ps.setObject(2, nullable(data, "lastName"));
+            ps.setObject(3, nullable(data, "phone"));
+            ps.setObject(4, nullable(data, "email"));
+            ps.setObject(5, nullable(data, "address"));
+            ps.setObject(6, nullable(data, "dateOfBirth"));
+            ps.setInt(7, id);
+            ps.executeUpdate();
+            req.send(new JSONObject()
+                .put("success", true)
+                .put("message", "Patient updated successfully"));
+        } catch (SQLException e) {
+            req.send(new JSONObject().put("error", e.getMessage()));
+        }
+    }
+
+    private void deletePatient(ApiRequest req, int id) throws Exception {
+        try (ConnectionPool.PooledConnection c = pool.borrow()) {
+            PreparedStatement ps = c.prepare(SQL_DELETE);
+            ps.setInt(1, id);
+            ps.executeUpdate();
+            req.send(new JSONObject()
+                .put("success", true)
+                .put("message", "Patient deleted successfully"));
+        } catch (SQLException e) {
+            req.send(new JSONObject().put("error", e.getMessage()));
+        }
+    }
+}
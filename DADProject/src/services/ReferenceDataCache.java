@@ -0,0 +1,132 @@
+package services;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Small in-memory cache for reference data (doctor and patient lists) shared
+ * by every {@link RestClient}. Entries expire after a fixed TTL, the least
+ * recently used entry is evicted once {@code maxEntries} is reached, and
+ * writes that change the data call {@link #invalidate} so the next read goes
+ * back to the server.
+ */
+public class ReferenceDataCache {
+
+    public static final String PATIENTS = "patients";
+    public static final String DOCTORS = "doctors";
+
+    private static final ReferenceDataCache SHARED = new ReferenceDataCache(
+        Long.getLong("hospital.cache.ttlMs", 60_000L),
+        Integer.getInteger("hospital.cache.maxEntries", 64));
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+    // bumped per key on invalidate so a load that started earlier is not stored
+    private final Map<String, Long> versions = new HashMap<>();
+    private long clears = 0;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ReferenceDataCache(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ReferenceDataCache.this.maxEntries;
+            }
+        };
+    }
+
+    /** Cache used by all RestClient instances, sized from -Dhospital.cache.*. */
+    public static ReferenceDataCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Cached value for {@code key}, or the result of {@code loader} when it is
+     * missing or expired. A null result means the load failed and is not cached.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        long version;
+        long cleared;
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (e != null && !e.isExpired()) {
+                hits.incrementAndGet();
+                return (T) e.value;
+            }
+            if (e != null) entries.remove(key);
+            version = versions.getOrDefault(key, 0L);
+            cleared = clears;
+        }
+
+        misses.incrementAndGet();
+        T value = loader.get();
+        if (value != null) {
+            synchronized (this) {
+                if (versions.getOrDefault(key, 0L) == version && clears == cleared) {
+                    entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis));
+                }
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(String key) {
+        entries.remove(key);
+        versions.merge(key, 1L, Long::sum);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        clears++;
+    }
+
+    /** Drop expired entries; reads already ignore them, this just frees memory. */
+    public synchronized void purgeExpired() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isExpired()) it.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ReferenceDataCache[size=" + size() + ", hits=" + hits.get() + ", misses=" + misses.get() + "]";
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long expiresAt;
+
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
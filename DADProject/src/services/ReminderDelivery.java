@@ -0,0 +1,189 @@
+package services;
+
+import java.awt.AWTException;
+import java.awt.Image;
+import java.awt.SystemTray;
+import java.awt.TrayIcon;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.JDialog;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+import models.Appointment;
+
+/**
+ * Hands due reminders from the {@link ReminderScheduler} to one or more
+ * {@link Sink}s on a thread of its own. {@link #offer} never blocks: the
+ * queue is bounded, and when it is full the oldest reminder is dropped and
+ * counted, so a slow sink cannot stall the scheduler. Reminders that are
+ * due together are delivered to each sink as one batch.
+ */
+public class ReminderDelivery {
+
+    /** Where reminders go; called on the delivery thread with one batch at a time. */
+    @FunctionalInterface
+    public interface Sink {
+        void deliver(List<Appointment> batch) throws Exception;
+    }
+
+    private static final int MAX_BATCH = 50;
+
+    private final BlockingQueue<Appointment> queue;
+    private final List<Sink> sinks;
+    private final AtomicLong dropped = new AtomicLong();
+    private Thread worker;
+
+    public ReminderDelivery(int capacity, List<Sink> sinks) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.sinks = new ArrayList<>(sinks);
+    }
+
+    public synchronized void start() {
+        if (worker != null) return;
+        worker = new Thread(this::run, "ReminderDelivery");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void stop() {
+        if (worker != null) worker.interrupt();
+        worker = null;
+    }
+
+    /** Queue a reminder; drops the oldest queued one if the sinks are behind. */
+    public void offer(Appointment appointment) {
+        while (!queue.offer(appointment)) {
+            if (queue.poll() != null) dropped.incrementAndGet();
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void run() {
+        List<Appointment> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                // anything that fell due meanwhile goes out with it
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException e) {
+                break;
+            }
+            for (Sink sink : sinks) {
+                try {
+                    sink.deliver(batch);
+                } catch (Exception e) {
+                    System.err.println("Reminder sink " + sink.getClass().getSimpleName() + " failed: " + e.getMessage());
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /** One-line reminder text. */
+    public static String message(Appointment a) {
+        return "Upcoming appointment: " + a.getPatientName()
+            + " with " + a.getDoctorName()
+            + " at " + a.getAppointmentTime();
+    }
+
+    /**
+     * Desktop notification: a tray balloon where the platform has a system
+     * tray, otherwise one non-modal dialog per batch. Always shown from the
+     * EDT, and the delivery thread never waits for the user.
+     */
+    public static class DesktopSink implements Sink {
+        private TrayIcon trayIcon;
+
+        @Override
+        public void deliver(List<Appointment> batch) {
+            StringBuilder text = new StringBuilder();
+            for (Appointment a : batch) {
+                if (text.length() > 0) text.append('\n');
+                text.append(message(a));
+            }
+            String title = batch.size() == 1 ? "Appointment Reminder" : batch.size() + " Appointment Reminders";
+            SwingUtilities.invokeLater(() -> show(title, text.toString()));
+        }
+
+        private void show(String title, String text) {
+            if (SystemTray.isSupported()) {
+                try {
+                    if (trayIcon == null) {
+                        Image blank = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+                        trayIcon = new TrayIcon(blank, "Hospital Management");
+                        trayIcon.setImageAutoSize(true);
+                        SystemTray.getSystemTray().add(trayIcon);
+                    }
+                    trayIcon.displayMessage(title, text, TrayIcon.MessageType.INFO);
+                    return;
+                } catch (AWTException e) {
+                    trayIcon = null; // fall back to a dialog
+                }
+            }
+            JOptionPane pane = new JOptionPane(text, JOptionPane.INFORMATION_MESSAGE);
+            JDialog dialog = pane.createDialog(null, title);
+            dialog.setModal(false);
+            dialog.setVisible(true);
+        }
+    }
+
+    /** Writes each reminder to standard output. */
+    public static class LogSink implements Sink {
+        @Override
+        public void deliver(List<Appointment> batch) {
+            for (Appointment a : batch) {
+                System.out.println("🔔 " + message(a));
+            }
+        }
+    }
+
+    /**
+     * Sends each reminder as one UDP datagram (UTF-8 text) to
+     * {@code host:port}, e.g. a ward display or pager gateway.
+     */
+    public static class UdpSink implements Sink {
+        private final InetSocketAddress target;
+        private final DatagramSocket socket;
+
+        public UdpSink(String host, int port) throws SocketException {
+            this.target = new InetSocketAddress(host, port);
+            this.socket = new DatagramSocket();
+        }
+
+        /** Sink for -Dhospital.reminder.udp=host:port, or null when unset. */
+        public static UdpSink fromSystemProperty() {
+            String spec = System.getProperty("hospital.reminder.udp");
+            if (spec == null || spec.isEmpty()) return null;
+            int colon = spec.lastIndexOf(':');
+            try {
+                return new UdpSink(spec.substring(0, colon), Integer.parseInt(spec.substring(colon + 1)));
+            } catch (RuntimeException | SocketException e) {
+                System.err.println("Ignoring hospital.reminder.udp=" + spec + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        @Override
+        public void deliver(List<Appointment> batch) throws IOException {
+            for (Appointment a : batch) {
+                byte[] bytes = message(a).getBytes(StandardCharsets.UTF_8);
+                socket.send(new DatagramPacket(bytes, bytes.length, target));
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package services;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import models.Appointment;
+import models.AppointmentEvent;
+
+/**
+ * Fires one reminder per appointment, {@code lead} before it starts.
+ * All timing is epoch-millis arithmetic on {@link Appointment#getStartMillis()},
+ * which the model computes once from its date, time and zone.
+ * Upcoming appointments wait in a {@link DelayQueue} ordered by fire time,
+ * so the worker thread sleeps until exactly the next one is due instead of
+ * polling. It is fed incrementally: {@link #apply} takes the events from the
+ * notification hub or from a delta sync, re-queues rescheduled appointments
+ * and drops cancelled or deleted ones. An appointment is announced at most
+ * once per start time, however often it is fed in again.
+ */
+public class ReminderScheduler {
+
+    /** Called on the scheduler thread when a reminder is due. */
+    @FunctionalInterface
+    public interface ReminderListener {
+        void onReminder(Appointment appointment);
+    }
+
+    // forget announcements this long after the appointment started
+    private static final long ANNOUNCED_RETENTION_MS = Duration.ofDays(1).toMillis();
+
+    private final long leadMillis;
+    private final ReminderListener listener;
+    private final DelayQueue<Reminder> queue = new DelayQueue<>();
+    // appointment id -> its live queue entry; superseded entries are flagged, not removed
+    private final Map<Integer, Reminder> pending = new HashMap<>();
+    // appointment id -> start (epoch millis) already announced
+    private final Map<Integer, Long> announced = new HashMap<>();
+    private Thread worker;
+
+    public ReminderScheduler(Duration lead, ReminderListener listener) {
+        this.leadMillis = lead.toMillis();
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (worker != null) return;
+        worker = new Thread(this::run, "ReminderScheduler");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void stop() {
+        if (worker != null) worker.interrupt();
+        worker = null;
+    }
+
+    /** Fold one change in: (re)schedule, or cancel for a deletion. */
+    public void apply(AppointmentEvent event) {
+        if (event.getType() == AppointmentEvent.Type.DELETED || event.getSnapshot() == null) {
+            cancel(event.getAppointmentId());
+        } else {
+            schedule(event.getSnapshot());
+        }
+    }
+
+    /**
+     * Queue a reminder for {@code a}, replacing any earlier one for the same
+     * appointment. Appointments that are not scheduled, have no start time,
+     * have already started, or were already announced for this start time
+     * are left out.
+     */
+    public synchronized void schedule(Appointment a) {
+        int id = a.getAppointmentId();
+        long start = a.getStartMillis();
+        if (!a.hasStart() || !"scheduled".equals(a.getStatus()) || start <= System.currentTimeMillis()) {
+            cancel(id);
+            return;
+        }
+        Long done = announced.get(id);
+        if (done != null && done == start) return;
+
+        Reminder old = pending.get(id);
+        if (old != null) old.cancelled = true;
+        Reminder r = new Reminder(a, start, start - leadMillis);
+        pending.put(id, r);
+        queue.add(r);
+        // superseded entries normally just expire; sweep them if edits pile up
+        if (queue.size() > 2 * pending.size() + 64) {
+            queue.removeIf(x -> x.cancelled);
+        }
+    }
+
+    public synchronized void cancel(int appointmentId) {
+        Reminder old = pending.remove(appointmentId);
+        if (old != null) old.cancelled = true;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Reminder due;
+            try {
+                due = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            synchronized (this) {
+                if (due.cancelled) continue;
+                pending.remove(due.appointment.getAppointmentId());
+                announced.put(due.appointment.getAppointmentId(), due.start);
+                pruneAnnounced();
+            }
+            try {
+                listener.onReminder(due.appointment);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void pruneAnnounced() {
+        long cutoff = System.currentTimeMillis() - ANNOUNCED_RETENTION_MS;
+        Iterator<Long> it = announced.values().iterator();
+        while (it.hasNext()) {
+            if (it.next() < cutoff) it.remove();
+        }
+    }
+
+    private static final class Reminder implements Delayed {
+        final Appointment appointment;
+        final long start;
+        final long fireAt;
+        volatile boolean cancelled = false;
+
+        Reminder(Appointment appointment, long start, long fireAt) {
+            this.appointment = appointment;
+            this.start = start;
+            this.fireAt = fireAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(fireAt, ((Reminder) other).fireAt);
+        }
+    }
+}
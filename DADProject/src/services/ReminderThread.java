@@ -1,59 +1,86 @@
 package services;
 
-import java.util.Calendar;
-import java.util.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
-import javax.swing.JOptionPane;
-
 import models.Appointment;
+import models.AppointmentEvent;
 
+/**
+ * Appointment reminders. Upcoming appointments are handed to a
+ * {@link ReminderScheduler}, which announces each one exactly
+ * -Dhospital.reminder.leadMinutes (default 60) before it starts. Changes
+ * arrive as they happen through the notification hub; the periodic delta
+ * sync only catches whatever a dropped hub connection missed. Due
+ * reminders go through a {@link ReminderDelivery} queue to the desktop, the
+ * log and, with -Dhospital.reminder.udp=host:port, a UDP listener.
+ */
 public class ReminderThread extends Thread{
+	 private static final long SYNC_INTERVAL_MS = 300000; // 5 minutes
+
 	 private RestClient restClient;
 	    private boolean running = true;
+	    private final ReminderDelivery delivery = new ReminderDelivery(256, sinks());
+	    private final ReminderScheduler scheduler = new ReminderScheduler(
+	            Duration.ofMinutes(Integer.getInteger("hospital.reminder.leadMinutes", 60)),
+	            delivery::offer);
+	    private final NotificationClient.Listener changeListener = scheduler::apply;
+	    // today's and tomorrow's scheduled appointments; each sync only
+	    // transfers what changed, and a new store is started every day
+	    private AppointmentStore store;
+	    private LocalDate storeDay;
 	    
 	    public ReminderThread() {
-	        this.restClient = new RestClient();
+	        this.restClient = RestClient.getInstance();
 	    }
 	    
 	    @Override
 	    public void run() {
+	        delivery.start();
+	        scheduler.start();
+	        NotificationClient.getInstance().subscribe(0, changeListener);
 	        while(running) {
 	            try {
-	                checkUpcomingAppointments();
-	                Thread.sleep(300000); // Check every 5 minutes
+	                syncUpcomingAppointments();
+	                Thread.sleep(SYNC_INTERVAL_MS);
 	            } catch(InterruptedException e) {
 	                break;
 	            }
 	        }
+	        NotificationClient.getInstance().unsubscribe(0, changeListener);
+	        scheduler.stop();
+	        delivery.stop();
 	    }
 	    
-	    private void checkUpcomingAppointments() {
-	        List<Appointment> appointments = restClient.getAllAppointments();
-	        Date now = new Date();
-	        Calendar cal = Calendar.getInstance();
-	        cal.setTime(now);
-	        cal.add(Calendar.HOUR, 1); // Check appointments in next hour
-	        Date nextHour = cal.getTime();
-	        
-	        for(Appointment appointment : appointments) {
-	            if(appointment.getAppointmentDate() != null && 
-	               appointment.getStatus().equals("scheduled")) {
-	                
-	                Date appointmentDateTime = appointment.getAppointmentDate();
-	                
-	                if(appointmentDateTime.after(now) && appointmentDateTime.before(nextHour)) {
-	                    // Send UDP notification
-	                    String message = "Upcoming appointment: " + 
-	                                   appointment.getPatientName() + 
-	                                   " with " + appointment.getDoctorName() + 
-	                                   " at " + appointment.getAppointmentTime();
-	                    
-	                    
-	                    // Also show desktop notification
-	                    JOptionPane.showMessageDialog(null, message, "Appointment Reminder", JOptionPane.INFORMATION_MESSAGE);
-	                }
-	            }
+	    private static List<ReminderDelivery.Sink> sinks() {
+	        List<ReminderDelivery.Sink> sinks = new ArrayList<>();
+	        sinks.add(new ReminderDelivery.DesktopSink());
+	        sinks.add(new ReminderDelivery.LogSink());
+	        ReminderDelivery.UdpSink udp = ReminderDelivery.UdpSink.fromSystemProperty();
+	        if(udp != null) {
+	            sinks.add(udp);
+	        }
+	        return sinks;
+	    }
+	    
+	    private void syncUpcomingAppointments() {
+	        LocalDate today = LocalDate.now(Appointment.ZONE);
+	        if(store == null || !today.equals(storeDay)) {
+	            store = new AppointmentStore(new AppointmentQuery()
+	                    .status("scheduled")
+	                    .dateFrom(today)
+	                    .dateTo(today.plusDays(1)));
+	            storeDay = today;
+	        }
+	        List<AppointmentEvent> changes = restClient.syncAppointments(store);
+	        if(changes == null) {
+	            return; // server unreachable; try again next round
+	        }
+	        // the scheduler skips appointments it has already announced
+	        for(AppointmentEvent change : changes) {
+	            scheduler.apply(change);
 	        }
 	    }
 	    
@@ -1,117 +1,407 @@
 package services;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.Reader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.*;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import models.Appointment;
+import models.AppointmentEvent;
 import models.Patient;
 import models.Doctor;
+import utils.JSONHelper;
 
 public class RestClient {
-    private static final String BASE_URL = "http://localhost/hospital_management/php_backend";
-    private CloseableHttpClient httpClient;
+    private static final String PHP_BACKEND_URL = "http://localhost/hospital_management/php_backend";
+    // REST endpoints may be served by the PHP scripts or by AppointmentServer
+    private static final String BASE_URL = System.getProperty("hospital.api.url", PHP_BACKEND_URL);
+    // login/registration always go to PHP (bcrypt password hashes)
+    private static final String AUTH_URL = System.getProperty("hospital.auth.url", PHP_BACKEND_URL);
+    // rows per request for createPatients; the endpoint accepts up to 1000
+    private static final int PATIENT_BATCH_SIZE = Integer.getInteger("hospital.import.batchSize", 500);
+    private final CloseableHttpClient httpClient;
+    private final ReferenceDataCache cache = ReferenceDataCache.shared();
+    // identical GETs in flight at the same time share one request
+    private final SingleFlight reads = SingleFlight.shared();
+
+    /**
+     * One pooled HTTP client for the whole application, created on first use.
+     * Sized and timed from -Dhospital.http.* properties.
+     */
+    private static final class SharedHttpClient {
+        static final PoolingHttpClientConnectionManager CONNECTIONS = new PoolingHttpClientConnectionManager();
+        static final CloseableHttpClient CLIENT;
+
+        static {
+            CONNECTIONS.setMaxTotal(Integer.getInteger("hospital.http.maxTotal", 20));
+            CONNECTIONS.setDefaultMaxPerRoute(Integer.getInteger("hospital.http.maxPerRoute", 10));
+            // re-check a connection that sat idle before handing it out again
+            CONNECTIONS.setValidateAfterInactivity(2_000);
+
+            long keepAliveMillis = Long.getLong("hospital.http.keepAliveMs", 30_000L);
+            RequestConfig config = RequestConfig.custom()
+                .setConnectTimeout(Integer.getInteger("hospital.http.connectTimeoutMs", 5_000))
+                .setSocketTimeout(Integer.getInteger("hospital.http.socketTimeoutMs", 15_000))
+                .setConnectionRequestTimeout(Integer.getInteger("hospital.http.poolTimeoutMs", 5_000))
+                .build();
+
+            CLIENT = HttpClients.custom()
+                .setConnectionManager(CONNECTIONS)
+                .setDefaultRequestConfig(config)
+                .setKeepAliveStrategy((response, context) -> {
+                    // honour Keep-Alive: timeout=... when the server sends it
+                    long fromServer = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return fromServer > 0 ? Math.min(fromServer, keepAliveMillis) : keepAliveMillis;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS)
+                .build();
+        }
+    }
+
+    private static final RestClient INSTANCE = new RestClient();
+
+    /**
+     * The application-wide client. Every RestClient shares the same
+     * connection pool, so this is only a convenience.
+     */
+    public static RestClient getInstance() {
+        return INSTANCE;
+    }
 
     public RestClient() {
-        this.httpClient =  HttpClients.createDefault();
+        this.httpClient = SharedHttpClient.CLIENT;
     }
 
-    private String makeHTTPRequest(String url, String method, String jsonData) {
-        try {
-            HttpUriRequest request;
-            switch (method) {
-                case "GET":
-                    request = new HttpGet(url);
-                    break;
-                case "POST":
-                    HttpPost post = new HttpPost(url);
-                    if (jsonData != null) {
-                        StringEntity entity = new StringEntity(jsonData, "UTF-8");
-                        post.setEntity(entity);
-                    }
-                    request = post;
-                    break;
-                case "PUT":
-                    HttpPut put = new HttpPut(url);
-                    if (jsonData != null) {
-                        StringEntity entity = new StringEntity(jsonData, "UTF-8");
-                        put.setEntity(entity);
-                    }
-                    request = put;
-                    break;
-                case "DELETE":
-                    request = new HttpDelete(url);
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unknown method: " + method);
-            }
+    /** Status and body of a completed request. */
+    private record HttpResult(int status, String body) {
+        boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
 
-            // ALWAYS set this header on POST/PUT
-            if (method.equals("POST") || method.equals("PUT")) {
-                request.setHeader("Content-Type", "application/json; charset=UTF-8");
-            }
+    // last list decoded per URL with its ETag; a 304 hands it out again
+    private record ValidatedList(String etag, List<?> rows) {
+    }
+
+    private static final int VALIDATED_LISTS = Integer.getInteger("hospital.http.etagEntries", 32);
+    private static final Map<String, ValidatedList> validated = Collections.synchronizedMap(
+        new LinkedHashMap<String, ValidatedList>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
 
-            System.out.println("➡️  " + method + " " + url);
-            if (jsonData != null) {
-                System.out.println("   Payload: " + jsonData);
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ValidatedList> eldest) {
+                return size() > VALIDATED_LISTS;
             }
+        });
 
-            HttpResponse response = httpClient.execute(request);
-            int status = response.getStatusLine().getStatusCode();
-            System.out.println("⬅️  HTTP " + status);
+    private static final AtomicLong requestCount = new AtomicLong();
+    private static final AtomicLong failureCount = new AtomicLong();
+    private static final AtomicLong totalNanos = new AtomicLong();
 
+    /**
+     * The single request pipeline every call goes through: pooled connection,
+     * shared timeouts, timing and failure counters. Returns null only when the
+     * request never got a response (connect/read failure, pool timeout).
+     */
+    private HttpResult execute(String method, String url, String jsonData) {
+        HttpUriRequest request;
+        switch (method) {
+            case "GET":
+                request = new HttpGet(url);
+                break;
+            case "POST":
+                request = withBody(new HttpPost(url), jsonData);
+                break;
+            case "PUT":
+                request = withBody(new HttpPut(url), jsonData);
+                break;
+            case "PATCH":
+                request = withBody(new HttpPatch(url), jsonData);
+                break;
+            case "DELETE":
+                request = new HttpDelete(url);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown method: " + method);
+        }
+
+        System.out.println("➡️  " + method + " " + url
+            + (jsonData != null ? " (" + jsonData.length() + " chars)" : ""));
+        long start = System.nanoTime();
+        requestCount.incrementAndGet();
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
             HttpEntity entity = response.getEntity();
             String body = entity != null 
                 ? EntityUtils.toString(entity, "UTF-8") 
                 : "";
+            long millis = elapsedMillis(start);
+            System.out.println("⬅️  HTTP " + status + " in " + millis + " ms");
+            if (status >= 400) {
+                failureCount.incrementAndGet();
+                System.err.println("   Body: " + body);
+            }
+            return new HttpResult(status, body);
+        } catch (IOException e) {
+            elapsedMillis(start);
+            failureCount.incrementAndGet();
+            System.err.println("❌ " + method + " " + url + " failed: " + e);
+            return null;
+        } finally {
+            if (!method.equals("GET")) {
+                // don't hand out reads of this resource from before the write
+                reads.invalidatePrefix(resourceOf(url));
+            }
+        }
+    }
 
-            System.out.println("   Body: " + body);
-            return body;
+    /** {@code .../appointments_api.php/42?x=1} -> {@code .../appointments_api.php} */
+    private static String resourceOf(String url) {
+        int php = url.indexOf(".php");
+        return php >= 0 ? url.substring(0, php + 4) : url;
+    }
+
+    private static HttpUriRequest withBody(HttpEntityEnclosingRequestBase request, String jsonData) {
+        if (jsonData != null) {
+            request.setEntity(new StringEntity(jsonData, "UTF-8"));
+        }
+        // ALWAYS set this header on POST/PUT/PATCH
+        request.setHeader("Content-Type", "application/json; charset=UTF-8");
+        return request;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        totalNanos.addAndGet(nanos);
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /** Raw response body, or null when the request failed to complete. */
+    private String makeHTTPRequest(String url, String method, String jsonData) {
+        HttpResult result = execute(method, url, jsonData);
+        return result != null ? result.body() : null;
+    }
+
+    /**
+     * Send a write and map every outcome onto the backend's JSON reply
+     * shape: the server's object when it sent one, otherwise
+     * {@code {"success":false,"error":...}} for a failed connection, an HTTP
+     * error without a JSON body, or a reply that is not JSON.
+     */
+    private JSONObject sendJSON(String method, String url, JSONObject payload) {
+        HttpResult result = execute(method, url, payload != null ? payload.toString() : null);
+        if (result == null) {
+            return failure("Could not reach the server");
+        }
+        String body = result.body().trim();
+        if (body.startsWith("{")) {
+            try {
+                return new JSONObject(body);
+            } catch (JSONException e) {
+                // fall through to the generic mapping
+            }
+        }
+        return failure(result.isSuccess()
+            ? "Unexpected response: " + body
+            : "HTTP " + result.status() + (body.isEmpty() ? "" : ": " + body));
+    }
+
+    private static JSONObject failure(String error) {
+        return new JSONObject().put("success", false).put("error", error);
+    }
+
+    /** True when {@code resp} reports success; logs the server's reason otherwise. */
+    private static boolean succeeded(String operation, JSONObject resp) {
+        boolean ok = resp.optBoolean("success", false);
+        if (!ok) {
+            System.err.println("❌ " + operation + " failed → "
+                + resp.optString("message", resp.optString("error", resp.toString())));
+        }
+        return ok;
+    }
+
+    /**
+     * True when a 409 body is a version conflict rather than a taken slot:
+     * its "reason" says so, or, from a server without that field, it carries
+     * the current "version".
+     */
+    private static boolean isVersionConflict(String body) {
+        if (body == null) return false;
+        try {
+            JSONObject resp = new JSONObject(body);
+            return resp.has("reason") ? "version".equals(resp.optString("reason")) : resp.has("version");
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Requests sent, failures (no response or HTTP 4xx/5xx), mean latency
+     * and reads answered by another caller's request since start-up, across
+     * every RestClient.
+     */
+    public static String getRequestStats() {
+        long count = requestCount.get();
+        long meanMillis = count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / count);
+        return "requests=" + count + ", failures=" + failureCount.get() + ", meanMs=" + meanMillis
+            + ", coalesced=" + SingleFlight.shared().getSharedCount();
+    }
+
+
+    /**
+     * GET a JSON array and decode it straight from the response stream, one
+     * element at a time, instead of buffering the body into a String and a
+     * JSONArray first.
+     * @return true if the whole array was read
+     */
+    private <T> boolean streamJSONArray(String url, JSONHelper.JSONMapper<T> mapper, Consumer<? super T> sink) {
+        System.out.println("➡️  GET " + url);
+        long start = System.nanoTime();
+        requestCount.incrementAndGet();
+        try (CloseableHttpResponse response = httpClient.execute(new HttpGet(url))) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (status >= 400 || entity == null) {
+                failureCount.incrementAndGet();
+                System.err.println("⬅️  HTTP " + status + " in " + elapsedMillis(start) + " ms");
+                EntityUtils.consume(entity);
+                return false;
+            }
+            try (Reader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8)) {
+                int count = JSONHelper.streamArray(reader, mapper, sink);
+                System.out.println("⬅️  HTTP " + status + ", streamed " + count + " rows in " + elapsedMillis(start) + " ms");
+                return true;
+            }
         } catch (Exception e) {
-            e.printStackTrace();
+            elapsedMillis(start);
+            failureCount.incrementAndGet();
+            System.err.println("❌ GET " + url + " failed: " + e);
+            return false;
+        }
+    }
+
+
+    /**
+     * GET a JSON array as a read-only list. The list last decoded for this
+     * URL is kept with the server's ETag and offered back as If-None-Match;
+     * on 304 it is returned again, with no body transferred or parsed. The
+     * pooled client asks for gzip and inflates replies transparently.
+     * Null if the request failed.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> fetchList(String url, JSONHelper.JSONMapper<T> mapper) {
+        ValidatedList last = validated.get(url);
+        HttpGet get = new HttpGet(url);
+        if (last != null) {
+            get.setHeader("If-None-Match", last.etag());
+        }
+        System.out.println("➡️  GET " + url + (last != null ? " (If-None-Match " + last.etag() + ")" : ""));
+        long start = System.nanoTime();
+        requestCount.incrementAndGet();
+        try (CloseableHttpResponse response = httpClient.execute(get)) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (status == 304 && last != null) {
+                EntityUtils.consume(entity);
+                System.out.println("⬅️  HTTP 304, reused " + last.rows().size() + " rows in " + elapsedMillis(start) + " ms");
+                return (List<T>) last.rows();
+            }
+            if (status >= 400 || entity == null) {
+                failureCount.incrementAndGet();
+                System.err.println("⬅️  HTTP " + status + " in " + elapsedMillis(start) + " ms");
+                EntityUtils.consume(entity);
+                return null;
+            }
+            List<T> rows = new ArrayList<>();
+            try (Reader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8)) {
+                JSONHelper.streamArray(reader, mapper, rows::add);
+            }
+            List<T> result = Collections.unmodifiableList(rows);
+            Header etag = response.getFirstHeader("ETag");
+            if (etag != null) {
+                validated.put(url, new ValidatedList(etag.getValue(), result));
+            } else {
+                validated.remove(url);
+            }
+            System.out.println("⬅️  HTTP " + status + ", streamed " + rows.size() + " rows in " + elapsedMillis(start) + " ms");
+            return result;
+        } catch (Exception e) {
+            elapsedMillis(start);
+            failureCount.incrementAndGet();
+            System.err.println("❌ GET " + url + " failed: " + e);
             return null;
         }
     }
 
 
     // Patient operations
+    /**
+     * All patients, served from the shared reference-data cache while fresh.
+     * The returned list is a copy and may be modified by the caller.
+     */
     public List<Patient> getAllPatients() {
-        List<Patient> patients = new ArrayList<>();
-        String response = makeHTTPRequest(BASE_URL + "/patients_api.php", "GET", null);
+        String url = BASE_URL + "/patients_api.php";
+        List<Patient> cached = cache.get(ReferenceDataCache.PATIENTS,
+            () -> reads.get(url, () -> fetchList(url, Patient::fromJSON)));
+        return cached != null ? new ArrayList<>(cached) : new ArrayList<>();
+    }
 
-        if (response != null) {
-            try {
-                JSONArray jsonArray = new JSONArray(response);
-                for (int i = 0; i < jsonArray.length(); i++) {
-                    JSONObject patientJson = jsonArray.getJSONObject(i);
-                    Patient patient = Patient.fromJSON(patientJson);
-                    patients.add(patient);
-                  
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    /**
+     * Decode every patient one at a time into {@code sink}.
+     */
+    public boolean streamPatients(Consumer<? super Patient> sink) {
+        return streamJSONArray(BASE_URL + "/patients_api.php", Patient::fromJSON, sink);
+    }
+   
+    /**
+     * One keyset page of patients in (last name, first name, id) order,
+     * starting after {@code after}, or the first page when it is null.
+     */
+    public List<Patient> getPatientsPage(Patient after, int limit) {
+        StringBuilder url = new StringBuilder(BASE_URL + "/patients_api.php?limit=" + limit);
+        if (after != null) {
+            url.append("&after_id=").append(after.getPatientId())
+               .append("&after_last=").append(URLEncoder.encode(nullToEmpty(after.getLastName()), StandardCharsets.UTF_8))
+               .append("&after_first=").append(URLEncoder.encode(nullToEmpty(after.getFirstName()), StandardCharsets.UTF_8));
         }
+
+        List<Patient> patients = new ArrayList<>();
+        streamJSONArray(url.toString(), Patient::fromJSON, patients::add);
         return patients;
     }
-   
+
+    private static String nullToEmpty(String s) {
+        return s != null ? s : "";
+    }
+
     public List<String> getAllPatientNames() {
         List<String> names = new ArrayList<>();
         for (Patient p : getAllPatients()) {
@@ -126,82 +416,101 @@ public class RestClient {
     
 
     public boolean createPatient(Patient patient) {
-        try {
-            URL url = new URL(BASE_URL + "/patients_api.php");
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setDoOutput(true);
-
-            JSONObject json = new JSONObject();
-            json.put("firstName", patient.getFirstName());
-            json.put("lastName", patient.getLastName());
-            json.put("phone", patient.getPhone());
-            json.put("email", patient.getEmail());
-            json.put("address", patient.getAddress());
-            json.put("dateOfBirth", JSONObject.NULL); // optional, if you're not using it yet
-
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = json.toString().getBytes("utf-8");
-                os.write(input, 0, input.length);
-            }
-
-            BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), "utf-8"));
-            StringBuilder response = new StringBuilder();
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                response.append(responseLine.trim());
-            }
-
+        JSONObject resp = sendJSON("POST", BASE_URL + "/patients_api.php", newPatientJSON(patient));
+        cache.invalidate(ReferenceDataCache.PATIENTS);
+        return succeeded("createPatient", resp);
+    }
 
-            JSONObject resJson = new JSONObject(response.toString());
-            return resJson.optBoolean("success", false);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
+    private static JSONObject newPatientJSON(Patient patient) {
+        JSONObject json = new JSONObject();
+        json.put("firstName", patient.getFirstName());
+        json.put("lastName", patient.getLastName());
+        json.put("phone", patient.getPhone());
+        json.put("email", patient.getEmail());
+        json.put("address", patient.getAddress());
+        json.put("dateOfBirth", JSONObject.NULL); // optional, if you're not using it yet
+        return json;
     }
 
+    public BatchResult createPatients(List<Patient> patients) {
+        return createPatients(patients, null);
+    }
 
-    public boolean updatePatient(Patient patient) {
+    /**
+     * Bulk import. Patients are sent in chunks to patients_api.php/batch,
+     * each chunk inserted server-side in one transaction. Created patients
+     * get their new id set; rows the server rejects are reported in the
+     * result. {@code progress} (may be null) is called after every chunk.
+     */
+    public BatchResult createPatients(List<Patient> patients, BatchResult.ProgressListener progress) {
+        int total = patients.size();
+        BatchResult result = new BatchResult(total);
         try {
-        	String url = BASE_URL + "/patients_api.php/" + patient.getPatientId();
-
-            JSONObject json = patient.toJSON(); // make sure toJSON() returns a JSONObject
-            
-
-            String response = makeHTTPRequest(url, "PUT", json.toString());
+            for (int from = 0; from < total; from += PATIENT_BATCH_SIZE) {
+                int to = Math.min(from + PATIENT_BATCH_SIZE, total);
+                JSONArray rows = new JSONArray();
+                for (Patient p : patients.subList(from, to)) {
+                    rows.put(newPatientJSON(p));
+                }
 
+                JSONObject resp = sendJSON("POST", BASE_URL + "/patients_api.php/batch",
+                                           new JSONObject().put("patients", rows));
+                JSONArray rowResults = resp.optJSONArray("results");
+                if (rowResults == null) {
+                    String error = resp.optString("error", "Batch failed");
+                    for (int i = from; i < to; i++) {
+                        result.fail(i, error);
+                    }
+                } else {
+                    for (int k = 0; k < rowResults.length(); k++) {
+                        JSONObject r = rowResults.getJSONObject(k);
+                        int row = from + r.getInt("index");
+                        int id = r.optInt("patient_id");
+                        if (id > 0) {
+                            result.succeed(row, id);
+                            patients.get(row).setPatientId(id);
+                        } else {
+                            result.fail(row, r.optString("error", "Not created"));
+                        }
+                    }
+                }
 
-            if (response != null) {
-                JSONObject resJson = new JSONObject(response);
-                return resJson.optBoolean("success", false);
+                if (progress != null) {
+                    progress.onProgress(to, total);
+                }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+        } finally {
+            cache.invalidate(ReferenceDataCache.PATIENTS);
         }
-        return false;
+        return result;
+    }
+
+
+    public boolean updatePatient(Patient patient) {
+        String url = BASE_URL + "/patients_api.php/" + patient.getPatientId();
+        JSONObject resp = sendJSON("PUT", url, patient.toJSON());
+        cache.invalidate(ReferenceDataCache.PATIENTS);
+        return succeeded("updatePatient", resp);
     }
 
 
     // Doctor operations
+    /**
+     * All doctors, served from the shared reference-data cache while fresh.
+     * The returned list is a copy and may be modified by the caller.
+     */
     public List<Doctor> getAllDoctors() {
-        List<Doctor> doctors = new ArrayList<>();
-        String response = makeHTTPRequest(BASE_URL + "/doctors_api.php", "GET", null);
-
-        try {
-            JSONArray jsonArray = new JSONArray(response);
-            for (int i = 0; i < jsonArray.length(); i++) {
-                JSONObject doctorJson = jsonArray.getJSONObject(i);
-                Doctor doctor = Doctor.fromJSON(doctorJson);
-                doctors.add(doctor);
-            }
-        } catch (Exception e) {
-            System.err.println("⚠️ Error parsing doctors: " + e.getMessage());
-            e.printStackTrace();
-        }
+        String url = BASE_URL + "/doctors_api.php";
+        List<Doctor> cached = cache.get(ReferenceDataCache.DOCTORS,
+            () -> reads.get(url, () -> fetchList(url, Doctor::fromJSON)));
+        return cached != null ? new ArrayList<>(cached) : new ArrayList<>();
+    }
 
-        return doctors;
+    /**
+     * Decode every doctor one at a time into {@code sink}.
+     */
+    public boolean streamDoctors(Consumer<? super Doctor> sink) {
+        return streamJSONArray(BASE_URL + "/doctors_api.php", Doctor::fromJSON, sink);
     }
     
     public List<String> getAllDoctorNames() {
@@ -218,27 +527,125 @@ public class RestClient {
 
     // Appointment operations
     public List<Appointment> getAllAppointments() {
+        return getAppointments(new AppointmentQuery());
+    }
+
+    /**
+     * Fetch only the appointments matching {@code query}; filtering and
+     * paging happen on the server. Callers asking for the same query at the
+     * same time share one request; each gets its own copies of the rows.
+     */
+    public List<Appointment> getAppointments(AppointmentQuery query) {
+        List<Appointment> shared = fetchAppointments(query);
         List<Appointment> appointments = new ArrayList<>();
-        String response = makeHTTPRequest(BASE_URL + "/appointments_api.php", "GET", null);
+        if (shared != null) {
+            for (Appointment a : shared) {
+                appointments.add(new Appointment(a));
+            }
+        }
+        return appointments;
+    }
 
+    /** The coalesced, read-only result of one query; null if the request failed. */
+    private List<Appointment> fetchAppointments(AppointmentQuery query) {
+        String url = BASE_URL + "/appointments_api.php" + query.toQueryString();
+        return reads.get(url, () -> fetchList(url, Appointment::fromJSON));
+    }
+
+    /**
+     * Decode matching appointments one at a time into {@code sink}, so a
+     * caller that only filters or counts never holds the whole list.
+     */
+    public boolean streamAppointments(AppointmentQuery query, Consumer<? super Appointment> sink) {
+        return streamJSONArray(BASE_URL + "/appointments_api.php" + query.toQueryString(), Appointment::fromJSON, sink);
+    }
+
+    /**
+     * Appointments written or deleted since {@code since}, a token from an
+     * earlier call. With {@code since == 0} only a fresh token comes back,
+     * to start following changes from now. Null if the request failed.
+     */
+    public AppointmentChanges getAppointmentChanges(long since) {
+        String url = BASE_URL + "/appointments_api.php/changes" + (since != 0 ? "?since=" + since : "");
+        HttpResult result = execute("GET", url, null);
+        if (result == null || result.status() >= 400) return null;
         try {
-            JSONArray jsonArray = new JSONArray(response);
+            return AppointmentChanges.fromJSON(new JSONObject(result.body()));
+        } catch (JSONException e) {
+            System.err.println("Bad changes reply: " + e.getMessage());
+            return null;
+        }
+    }
 
-            for (int i = 0; i < jsonArray.length(); i++) {
-                JSONObject appointmentJson = jsonArray.getJSONObject(i);
-                Appointment appointment = Appointment.fromJSON(appointmentJson);
-                appointments.add(appointment);
+    /**
+     * Free and booked slots of one doctor's day. Concurrent identical calls
+     * share one request. Null if the request failed.
+     */
+    public DaySlots getDaySlots(int doctorId, LocalDate date) {
+        String url = BASE_URL + "/appointments_api.php/slots?doctor_id=" + doctorId + "&date=" + date;
+        return reads.get(url, () -> {
+            HttpResult result = execute("GET", url, null);
+            if (result == null || result.status() >= 400) return null;
+            try {
+                return DaySlots.fromJSON(new JSONObject(result.body()));
+            } catch (JSONException e) {
+                System.err.println("Bad slots reply: " + e.getMessage());
+                return null;
             }
+        });
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error parsing appointments: " + e.getMessage());
-            e.printStackTrace();
-        }
+    /**
+     * Booked slots of every day of {@code month} for one doctor, in one
+     * request. Concurrent identical calls share it. Null if the request failed.
+     */
+    public MonthAvailability getMonthAvailability(int doctorId, YearMonth month) {
+        String url = BASE_URL + "/appointments_api.php/availability?doctor_id=" + doctorId + "&month=" + month;
+        return reads.get(url, () -> {
+            HttpResult result = execute("GET", url, null);
+            if (result == null || result.status() >= 400) return null;
+            try {
+                return MonthAvailability.fromJSON(new JSONObject(result.body()));
+            } catch (JSONException e) {
+                System.err.println("Bad availability reply: " + e.getMessage());
+                return null;
+            }
+        });
+    }
 
-        return appointments;
+    /**
+     * Bring {@code store} up to date and return what changed in it. The
+     * first call (or one whose token the server no longer covers) loads the
+     * store's whole query; after that only the delta is transferred.
+     * Returns null, leaving the store as it was, if the server is unreachable.
+     */
+    public List<AppointmentEvent> syncAppointments(AppointmentStore store) {
+        if (store.isLoaded()) {
+            AppointmentChanges changes = getAppointmentChanges(store.getToken());
+            if (changes == null) return null;
+            if (!changes.isReset()) return store.merge(changes);
+        }
+        // take the token first so nothing written during the load is missed
+        AppointmentChanges start = getAppointmentChanges(0);
+        if (start == null) return null;
+        List<Appointment> shared = fetchAppointments(store.getScope());
+        if (shared == null) return null;
+        List<Appointment> rows = new ArrayList<>(shared.size());
+        for (Appointment a : shared) {
+            rows.add(new Appointment(a));
+        }
+        return store.load(rows, start.getToken());
     }
 
     public boolean createAppointment(String patientId, String doctorId, String date, String time, String notes) {
+        return createAppointmentReturningId(patientId, doctorId, date, time, notes) > 0;
+    }
+
+    /**
+     * Same as {@link #createAppointment} but returns the new appointment's
+     * id, or -1 if it was not created.
+     */
+    public int createAppointmentReturningId(String patientId, String doctorId, String date, String time, String notes) {
         JSONObject jsonData = new JSONObject();
         jsonData.put("patientId", patientId);
         jsonData.put("doctorId", doctorId);
@@ -246,18 +653,8 @@ public class RestClient {
         jsonData.put("appointmentTime", time);
         jsonData.put("notes", notes);
 
-        String response = makeHTTPRequest(BASE_URL + "/appointments_api.php", "POST", jsonData.toString());
-        System.out.println("📡 Server response: " + response);
-
-        if (response != null) {
-            try {
-                JSONObject jsonResponse = new JSONObject(response);
-                return jsonResponse.optBoolean("success", false);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
-        return false;
+        JSONObject resp = sendJSON("POST", BASE_URL + "/appointments_api.php", jsonData);
+        return succeeded("createAppointment", resp) ? resp.optInt("appointment_id", 0) : -1;
     }
     /**
      * Fetch a single appointment by its ID.
@@ -281,28 +678,161 @@ public class RestClient {
         return Appointment.fromJSON(json);
     }
     /**
-     * Update only the status and notes of an appointment.
-     * Internally fetches the full appointment, applies changes, and re-submits the entire object.
+     * Update only the status and notes of an appointment with a single
+     * PATCH; no read first. A null {@code notes} leaves the notes unchanged.
      */
     public boolean updateAppointmentStatus(int appointmentId, String status, String notes) {
-        try {
-            // 1. Fetch existing appointment
-            Appointment appt = getAppointment(appointmentId);
-            if (appt == null) {
-                System.err.println("Appointment not found: " + appointmentId);
-                return false;
-            }
+        JSONObject changes = new JSONObject().put("status", status);
+        if (notes != null) {
+            changes.put("notes", notes);
+        }
+        return patchAppointment(appointmentId, changes, -1) == PatchResult.UPDATED;
+    }
 
-            // 2. Apply new status and notes
-            appt.setStatus(status);
-            appt.setNotes(notes);
+    /** Outcome of {@link #patchAppointment}. */
+    public enum PatchResult {
+        UPDATED,
+        /** the row changed since the caller read it; nothing was written */
+        CONFLICT,
+        /** the doctor already has an appointment in the new slot; nothing was written */
+        SLOT_TAKEN,
+        NOT_FOUND,
+        FAILED
+    }
 
-            // 3. Delegate to the full-payload update
-            return updateAppointment(appt);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
+    /**
+     * Send only {@code changes} (same keys as {@link #updateAppointment}
+     * sends, e.g. "status", "notes") and apply them server-side with one
+     * UPDATE. When {@code expectedVersion} is 0 or more the write only
+     * happens if the appointment is still at that version.
+     */
+    public PatchResult patchAppointment(int appointmentId, JSONObject changes, int expectedVersion) {
+        return patch(appointmentId, changes, expectedVersion, null);
+    }
+
+    /**
+     * Like {@link #patchAppointment(int, JSONObject, int)}, checked against
+     * {@code appt}'s version (when known); on success {@code appt} is given
+     * the new version so it can be patched again.
+     */
+    public PatchResult patchAppointment(Appointment appt, JSONObject changes) {
+        return patch(appt.getAppointmentId(), changes, appt.getVersion(), appt);
+    }
+
+    private PatchResult patch(int appointmentId, JSONObject changes, int expectedVersion, Appointment target) {
+        JSONObject body = new JSONObject();
+        for (String key : changes.keySet()) {
+            body.put(key, changes.get(key));
+        }
+        if (expectedVersion >= 0) {
+            body.put("expectedVersion", expectedVersion);
+        }
+        HttpResult result = execute("PATCH", BASE_URL + "/appointments_api.php/" + appointmentId, body.toString());
+        if (result == null) {
+            return PatchResult.FAILED;
+        }
+        switch (result.status()) {
+            case 409:
+                if (isVersionConflict(result.body())) {
+                    System.err.println("⚠️ Appointment " + appointmentId + " changed since it was loaded");
+                    return PatchResult.CONFLICT;
+                }
+                return PatchResult.SLOT_TAKEN;
+            case 404:
+                return PatchResult.NOT_FOUND;
+            default:
+                try {
+                    JSONObject resp = new JSONObject(result.body());
+                    if (!succeeded("patchAppointment", resp)) {
+                        return PatchResult.FAILED;
+                    }
+                    if (target != null) {
+                        target.setVersion(resp.optInt("version", -1));
+                    }
+                    return PatchResult.UPDATED;
+                } catch (JSONException e) {
+                    System.err.println("⚠️ Bad JSON from patchAppointment: " + result.body());
+                    return PatchResult.FAILED;
+                }
+        }
+    }
+
+    /**
+     * Move every appointment in {@code appointmentIds} to {@code status} in a
+     * single request and server-side transaction. A null {@code notes} leaves
+     * each appointment's notes unchanged.
+     * @return how many appointments were updated, or -1 if the call failed
+     */
+    public int updateAppointmentStatuses(List<Integer> appointmentIds, String status, String notes) {
+        if (appointmentIds.isEmpty()) {
+            return 0;
+        }
+        JSONObject data = new JSONObject()
+            .put("ids", new JSONArray(appointmentIds))
+            .put("status", status)
+            .put("notes", notes != null ? notes : JSONObject.NULL);
+        JSONObject resp = sendJSON("PUT", BASE_URL + "/appointments_api.php/status", data);
+        if (!succeeded("updateAppointmentStatuses", resp)) {
+            return -1;
+        }
+        JSONArray missing = resp.optJSONArray("missing");
+        if (missing != null && !missing.isEmpty()) {
+            System.err.println("⚠️ Appointments not found: " + missing);
+        }
+        return resp.optInt("updated");
+    }
+
+    /**
+     * Create an appointment with whichever doctor of {@code specialization}
+     * has the fewest booked slots; the server picks the doctor and, without
+     * a date and time, that doctor's earliest free slot. Returns what it
+     * chose (date and time null if the request was left pending), or null
+     * if nothing was created.
+     */
+    public SlotAllocation.Assignment createAppointmentBySpecialization(String patientId, String specialization,
+                                                                       String date, String time, String notes) {
+        JSONObject jsonData = new JSONObject();
+        jsonData.put("patientId", patientId);
+        jsonData.put("specialization", specialization);
+        jsonData.put("appointmentDate", date);
+        jsonData.put("appointmentTime", time);
+        jsonData.put("notes", notes);
+
+        JSONObject resp = sendJSON("POST", BASE_URL + "/appointments_api.php", jsonData);
+        if (!succeeded("createAppointmentBySpecialization", resp)) {
+            return null;
+        }
+        String chosenDate = resp.optString("appointment_date", null);
+        String chosenTime = resp.optString("appointment_time", null);
+        return new SlotAllocation.Assignment(resp.optInt("appointment_id"), resp.optInt("doctor_id"),
+            chosenDate != null ? LocalDate.parse(chosenDate) : null,
+            chosenTime != null ? LocalTime.parse(chosenTime) : null);
+    }
+
+    /**
+     * Give the listed pending requests the earliest free slot of their
+     * doctor. Null if the request failed.
+     */
+    public SlotAllocation allocateSlots(List<Integer> appointmentIds) {
+        return allocate(new JSONObject().put("ids", new JSONArray(appointmentIds)));
+    }
+
+    /** Same as {@link #allocateSlots(List)} for every pending request of one doctor. */
+    public SlotAllocation allocateSlotsForDoctor(int doctorId) {
+        return allocate(new JSONObject().put("doctorId", doctorId));
+    }
+
+    /** Same as {@link #allocateSlots(List)} for every pending request in one specialization. */
+    public SlotAllocation allocateSlotsForSpecialization(String specialization) {
+        return allocate(new JSONObject().put("specialization", specialization));
+    }
+
+    private SlotAllocation allocate(JSONObject scope) {
+        JSONObject resp = sendJSON("PUT", BASE_URL + "/appointments_api.php/allocate", scope);
+        if (!succeeded("allocateSlots", resp)) {
+            return null;
         }
+        return SlotAllocation.fromJSON(resp);
     }
 
     public boolean updateAppointment(Appointment appt) {
@@ -318,97 +848,36 @@ public class RestClient {
 
         // 2) Send the PUT
         String url = BASE_URL + "/appointments_api.php/" + appt.getAppointmentId();
-        System.out.println("➡️ PUT " + url);
-        System.out.println("   Payload: " + data);
-        String raw = makeHTTPRequest(url, "PUT", data.toString());
-        System.out.println("⬅️ Body: " + raw);
-
-        if (raw == null) return false;
-        raw = raw.trim();
-        try {
-            JSONObject resp = new JSONObject(raw);
-            boolean ok = resp.optBoolean("success", false);
-            if (!ok) {
-                System.err.println("❌ update failed → "
-                  + resp.optString("message", resp.optString("error", raw)));
-            }
-            return ok;
-        } catch (JSONException ex) {
-            System.err.println("⚠️ Bad JSON from updateAppointment: >>>" + raw + "<<<");
-            ex.printStackTrace();
-            return false;
-        }
+        return succeeded("updateAppointment", sendJSON("PUT", url, data));
     }
 
 
+    /**
+     * Push {@code appt}'s status and notes only, refusing to overwrite the
+     * row if someone else changed it since {@code appt} was loaded.
+     */
     public boolean updateAppointmentStatus(Appointment appt) {
-        // build a FULL JSON payload
-        JSONObject data = new JSONObject();
-        data.put("patientId",       appt.getPatientId());
-        data.put("doctorId",        appt.getDoctorId());
-        data.put("appointmentDate", new SimpleDateFormat("yyyy-MM-dd")
-                                    .format(appt.getAppointmentDate()));
-        data.put("appointmentTime", appt.getAppointmentTime());
-        data.put("status",          appt.getStatus());
-        data.put("notes",           appt.getNotes());
-
-        String url = BASE_URL + "/appointments_api.php/" + appt.getAppointmentId();
-        System.out.println("▶️ PUT "+url+"\n   Payload: "+data);
-        String raw = makeHTTPRequest(url, "PUT", data.toString());
-        System.out.println("📡 Raw response: "+raw);
-
-        if (raw == null) return false;
-        raw = raw.trim();
-        try {
-            JSONObject resp = new JSONObject(raw);
-            boolean ok = resp.optBoolean("success", false);
-            if (!ok) {
-                System.err.println("❌ update failed → "+ resp.optString("message", resp.optString("error", raw)));
-            }
-            return ok;
-        } catch (JSONException ex) {
-            System.err.println("⚠️ Bad JSON from updateAppointment: >>>"+raw+"<<<");
-            ex.printStackTrace();
-            return false;
-        }
+        JSONObject changes = new JSONObject()
+            .put("status", appt.getStatus())
+            .put("notes",  appt.getNotes() != null ? appt.getNotes() : JSONObject.NULL);
+        return patchAppointment(appt, changes) == PatchResult.UPDATED;
     }
 
 
 
     public boolean deleteAppointment(int appointmentId) {
-        String response = makeHTTPRequest(BASE_URL + "/appointments_api.php/" + appointmentId, "DELETE", null);
-
-        if (response != null) {
-            try {
-                JSONObject jsonResponse = new JSONObject(response);
-                return jsonResponse.optBoolean("success", false);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
-        return false;
+        JSONObject resp = sendJSON("DELETE", BASE_URL + "/appointments_api.php/" + appointmentId, null);
+        return succeeded("deleteAppointment", resp);
     }
     
     /**
      * Call your PHP login endpoint.
      */
     public JSONObject  authenticateDoctor(String email, String password) {
-    	try {
-            JSONObject req = new JSONObject()
-                .put("email",    email)
-                .put("password", password);
-            String raw = makeHTTPRequest(
-                BASE_URL + "/doctor_auth.php",
-                "POST",
-                req.toString()
-            );
-            return raw != null
-                 ? new JSONObject(raw)
-                 : null;
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return null;
-        }
+        JSONObject req = new JSONObject()
+            .put("email",    email)
+            .put("password", password);
+        return sendJSON("POST", AUTH_URL + "/doctor_auth.php", req);
     }
 
     /**
@@ -421,32 +890,25 @@ public class RestClient {
                                   String specialization,
                                   String password)
     {
-    	try {
-            JSONObject req = new JSONObject()
-                .put("firstName",      firstName)
-                .put("lastName",       lastName)
-                .put("email",          email)
-                .put("phone",          phone)
-                .put("specialization", specialization)
-                .put("password",       password);
-            String raw = makeHTTPRequest(
-                BASE_URL + "/doctor_registration.php",
-                "POST",
-                req.toString()
-            );
-            JSONObject resp = new JSONObject(raw);
-            return resp.optBoolean("success", false);
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return false;
-        }
+        JSONObject req = new JSONObject()
+            .put("firstName",      firstName)
+            .put("lastName",       lastName)
+            .put("email",          email)
+            .put("phone",          phone)
+            .put("specialization", specialization)
+            .put("password",       password);
+        JSONObject resp = sendJSON("POST", AUTH_URL + "/doctor_registration.php", req);
+        cache.invalidate(ReferenceDataCache.DOCTORS);
+        return succeeded("registerDoctor", resp);
     }
 
-    public void close() {
-    	try {
-            if (httpClient != null) {
-                httpClient.close();
-            }
+    /**
+     * Close the shared HTTP client and its pooled connections. Call once on
+     * application exit; no RestClient can be used afterwards.
+     */
+    public static void shutdown() {
+        try {
+            SharedHttpClient.CLIENT.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,155 @@
+package services;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical reads into one. The first caller for a key
+ * runs the loader; callers arriving while it runs wait for it and get the
+ * same result instead of sending the request again. A finished result is
+ * also handed out for {@code freshMillis} afterwards (0 disables that), so a
+ * burst of refreshes costs one round trip.
+ *
+ * Values are shared between callers, so they should be immutable or copied
+ * by the caller. A null result means the load failed; it is passed to the
+ * callers that were waiting but never reused after that.
+ *
+ * The load runs on its own virtual thread, not the first caller's: a caller
+ * that is cancelled (its thread interrupted and its request aborted) only
+ * stops waiting, and the others still get the result.
+ */
+public class SingleFlight {
+
+    private static final SingleFlight SHARED = new SingleFlight(
+        Long.getLong("hospital.http.coalesceMs", 250L));
+
+    private static final ExecutorService LOADERS =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("single-flight-", 0).factory());
+
+    private final long freshMillis;
+    private final Map<String, Call> calls = new HashMap<>();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    public SingleFlight(long freshMillis) {
+        this.freshMillis = freshMillis;
+    }
+
+    /** Instance used by all RestClients, window from -Dhospital.http.coalesceMs. */
+    public static SingleFlight shared() {
+        return SHARED;
+    }
+
+    /**
+     * Result of the load for {@code key} that is running or finished within
+     * the freshness window, or of {@code loader} started now. A caller
+     * interrupted while waiting gets null, with its interrupt flag set; the
+     * load carries on for the rest. An exception thrown by the loader is
+     * rethrown to every caller.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        Call call;
+        boolean leader = false;
+        synchronized (this) {
+            call = calls.get(key);
+            if (call == null || call.isStale()) {
+                purgeStale();
+                call = new Call();
+                calls.put(key, call);
+                leader = true;
+            }
+        }
+
+        if (leader) {
+            loads.incrementAndGet();
+            Call started = call;
+            LOADERS.execute(() -> load(key, started, loader));
+        } else {
+            shared.incrementAndGet();
+        }
+        try {
+            call.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (call.error != null) throw call.error;
+        return (T) call.value;
+    }
+
+    private void load(String key, Call call, Supplier<?> loader) {
+        Object value = null;
+        try {
+            value = loader.get();
+        } catch (RuntimeException e) {
+            call.error = e;
+        } finally {
+            call.finish(value);
+            synchronized (this) {
+                if (value == null || freshMillis <= 0) {
+                    calls.remove(key, call);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget everything under {@code prefix}, running or finished, so the
+     * next read goes to the server. Callers already waiting on a running
+     * load still get its result.
+     */
+    public synchronized void invalidatePrefix(String prefix) {
+        Iterator<String> it = calls.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) it.remove();
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        calls.clear();
+    }
+
+    private void purgeStale() {
+        calls.values().removeIf(Call::isStale);
+    }
+
+    /** Loads actually run. */
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    /** Reads answered by someone else's load. */
+    public long getSharedCount() {
+        return shared.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlight[loads=" + loads.get() + ", shared=" + shared.get() + "]";
+    }
+
+    private final class Call {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Object value;
+        volatile RuntimeException error;
+        volatile long finishedAt = 0;
+
+        void finish(Object value) {
+            this.value = value;
+            this.finishedAt = System.currentTimeMillis();
+            done.countDown();
+        }
+
+        boolean isStale() {
+            long at = finishedAt;
+            return at != 0 && System.currentTimeMillis() - at >= freshMillis;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package services;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Reply of {@code PUT appointments_api.php/allocate}: the slot each pending
+ * request was given, and the ids left pending because their doctor had no
+ * free slot within the search window.
+ */
+public class SlotAllocation {
+
+    /** One request and the slot it now holds. */
+    public record Assignment(int appointmentId, int doctorId, LocalDate date, LocalTime time) {
+    }
+
+    private final List<Assignment> assigned;
+    private final List<Integer> unassigned;
+
+    SlotAllocation(List<Assignment> assigned, List<Integer> unassigned) {
+        this.assigned = Collections.unmodifiableList(assigned);
+        this.unassigned = Collections.unmodifiableList(unassigned);
+    }
+
+    static SlotAllocation fromJSON(JSONObject json) {
+        List<Assignment> assigned = new ArrayList<>();
+        JSONArray rows = json.optJSONArray("assigned");
+        if (rows != null) {
+            for (int i = 0; i < rows.length(); i++) {
+                JSONObject row = rows.getJSONObject(i);
+                assigned.add(new Assignment(row.getInt("appointment_id"), row.getInt("doctor_id"),
+                    LocalDate.parse(row.getString("appointment_date")),
+                    LocalTime.parse(row.getString("appointment_time"))));
+            }
+        }
+        List<Integer> unassigned = new ArrayList<>();
+        JSONArray left = json.optJSONArray("unassigned");
+        if (left != null) {
+            for (int i = 0; i < left.length(); i++) {
+                unassigned.add(left.getInt(i));
+            }
+        }
+        return new SlotAllocation(assigned, unassigned);
+    }
+
+    public List<Assignment> getAssigned() {
+        return assigned;
+    }
+
+    public List<Integer> getUnassigned() {
+        return unassigned;
+    }
+
+    /** The slot given to {@code appointmentId}, or null if it got none. */
+    public Assignment find(int appointmentId) {
+        for (Assignment a : assigned) {
+            if (a.appointmentId() == appointmentId) return a;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "SlotAllocation[assigned=" + assigned.size() + ", unassigned=" + unassigned.size() + "]";
+    }
+}
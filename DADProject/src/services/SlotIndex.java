@@ -0,0 +1,214 @@
+package services;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory occupancy of every doctor's diary, for the embedded server.
+ * A day is cut into {@value #SLOT_MINUTES}-minute slots and held as one
+ * {@code long} bitmask per doctor and date (bit i = slot starting i * 30
+ * minutes after midnight), in a per-doctor {@link TreeMap} so a month or a
+ * search forward from a date is a sub-map walk.
+ *
+ * Checking or taking a slot is a map lookup plus a bit test. Each
+ * appointment holds at most one slot: scheduled or completed appointments
+ * with a date and time hold the slot their start falls in, cancelled ones
+ * and requests without a time hold none.
+ *
+ * The database's unique slot key stays the final word: this index only
+ * turns most conflicts into a fast 409 before a write is attempted, and is
+ * caught up from the database by {@link AppointmentsHandler}.
+ */
+class SlotIndex {
+
+    static final int SLOT_MINUTES = 30;
+    static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+
+    /** Bookable hours, -Dhospital.slot.dayStart / .dayEnd (default 08:00-20:00). */
+    static final LocalTime DAY_START = LocalTime.parse(System.getProperty("hospital.slot.dayStart", "08:00"));
+    static final LocalTime DAY_END = LocalTime.parse(System.getProperty("hospital.slot.dayEnd", "20:00"));
+    static final long WORKING_HOURS = hoursMask(DAY_START, DAY_END);
+
+    /** One slot: doctor, date and slot number within the day. */
+    record Slot(int doctorId, LocalDate date, int index) {
+        LocalTime start() {
+            return LocalTime.MIDNIGHT.plusMinutes((long) index * SLOT_MINUTES);
+        }
+    }
+
+    // doctor id -> date -> occupied slots of that day
+    private final Map<Integer, TreeMap<LocalDate, Long>> days = new HashMap<>();
+    private final Map<Slot, Integer> owners = new HashMap<>();
+    private final Map<Integer, Slot> byId = new HashMap<>();
+
+    /** Slot an appointment starting at {@code time} would hold. */
+    static Slot slotOf(int doctorId, LocalDate date, LocalTime time) {
+        return new Slot(doctorId, date, (time.getHour() * 60 + time.getMinute()) / SLOT_MINUTES);
+    }
+
+    /** Bits for the slots between {@code from} (inclusive) and {@code to} (exclusive). */
+    static long hoursMask(LocalTime from, LocalTime to) {
+        int first = (from.getHour() * 60 + from.getMinute()) / SLOT_MINUTES;
+        int end = to.equals(LocalTime.MIDNIGHT) ? SLOTS_PER_DAY
+            : (to.getHour() * 60 + to.getMinute() + SLOT_MINUTES - 1) / SLOT_MINUTES;
+        long mask = 0;
+        for (int i = first; i < end; i++) {
+            mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    /** Bits for the slots that start at or after {@code time}. */
+    static long slotsFrom(LocalTime time) {
+        int next = (time.getHour() * 60 + time.getMinute() + SLOT_MINUTES - 1) / SLOT_MINUTES;
+        return next >= SLOTS_PER_DAY ? 0L : -1L << next;
+    }
+
+    /**
+     * Give appointment {@code id} the earliest free slot of the doctor's
+     * within {@code mask}, searching {@code days} days from {@code from}
+     * (on that first day only slots in {@code firstDayMask} as well).
+     * A day is one map lookup: the free slots are the mask minus the
+     * occupied bits, and the earliest is their lowest set bit. Returns the
+     * slot taken, or null, changing nothing, when none is free.
+     */
+    synchronized Slot reserveEarliest(int id, int doctorId, LocalDate from, long firstDayMask, long mask, int days) {
+        for (int d = 0; d < days; d++) {
+            LocalDate date = from.plusDays(d);
+            long free = (d == 0 ? mask & firstDayMask : mask) & ~occupied(doctorId, date);
+            if (free != 0) {
+                Slot slot = new Slot(doctorId, date, Long.numberOfTrailingZeros(free));
+                put(id, slot);
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Give appointment {@code id} the slot {@code target} (null = none),
+     * releasing the one it held. Returns false, changing nothing, when
+     * another appointment holds {@code target}.
+     */
+    synchronized boolean place(int id, Slot target) {
+        if (target != null) {
+            Integer owner = owners.get(target);
+            if (owner != null && owner != id) return false;
+        }
+        put(id, target);
+        return true;
+    }
+
+    /**
+     * Same as {@link #place} but always succeeds: whoever held
+     * {@code target} loses it. Used when replaying what the database says.
+     */
+    synchronized void force(int id, Slot target) {
+        if (target != null) {
+            Integer owner = owners.get(target);
+            if (owner != null && owner != id) put(owner, null);
+        }
+        put(id, target);
+    }
+
+    /** Hand a reservation made under a temporary id to the real one. */
+    synchronized void rename(int fromId, int toId) {
+        Slot slot = byId.get(fromId);
+        put(fromId, null);
+        force(toId, slot);
+    }
+
+    synchronized Slot slotOf(int id) {
+        return byId.get(id);
+    }
+
+    synchronized boolean isFree(Slot slot) {
+        return !owners.containsKey(slot);
+    }
+
+    /** Occupied slots of one doctor's day as a bitmask. */
+    synchronized long occupied(int doctorId, LocalDate date) {
+        TreeMap<LocalDate, Long> diary = days.get(doctorId);
+        Long bits = diary != null ? diary.get(date) : null;
+        return bits != null ? bits : 0L;
+    }
+
+    /** Start times of the slots in {@code mask} that nobody holds. */
+    synchronized List<LocalTime> freeSlots(int doctorId, LocalDate date, long mask) {
+        List<LocalTime> free = new ArrayList<>();
+        long bits = mask & ~occupied(doctorId, date);
+        while (bits != 0) {
+            int i = Long.numberOfTrailingZeros(bits);
+            free.add(LocalTime.MIDNIGHT.plusMinutes((long) i * SLOT_MINUTES));
+            bits &= bits - 1;
+        }
+        return free;
+    }
+
+    /** Days in [from, to] on which the doctor holds anything, with their bitmasks. */
+    synchronized NavigableMap<LocalDate, Long> occupiedDays(int doctorId, LocalDate from, LocalDate to) {
+        TreeMap<LocalDate, Long> diary = days.get(doctorId);
+        if (diary == null) return new TreeMap<>();
+        return new TreeMap<>(diary.subMap(from, true, to, true));
+    }
+
+    /**
+     * Slots the doctor holds in [from, to]. The per-day bitmasks are
+     * updated on every placement, so this is a popcount per busy day in
+     * the window, never a pass over the appointments.
+     */
+    synchronized int load(int doctorId, LocalDate from, LocalDate to) {
+        TreeMap<LocalDate, Long> diary = days.get(doctorId);
+        if (diary == null) return 0;
+        int load = 0;
+        for (long bits : diary.subMap(from, true, to, true).values()) {
+            load += Long.bitCount(bits);
+        }
+        return load;
+    }
+
+    synchronized void clear() {
+        days.clear();
+        owners.clear();
+        byId.clear();
+    }
+
+    synchronized int size() {
+        return byId.size();
+    }
+
+    private void put(int id, Slot target) {
+        Slot old = target != null ? byId.put(id, target) : byId.remove(id);
+        if (old != null) {
+            owners.remove(old);
+            setBit(old, false);
+        }
+        if (target != null) {
+            owners.put(target, id);
+            setBit(target, true);
+        }
+    }
+
+    private void setBit(Slot slot, boolean on) {
+        TreeMap<LocalDate, Long> diary = days.computeIfAbsent(slot.doctorId(), k -> new TreeMap<>());
+        long bits = diary.getOrDefault(slot.date(), 0L);
+        bits = on ? bits | (1L << slot.index()) : bits & ~(1L << slot.index());
+        if (bits == 0) {
+            diary.remove(slot.date());
+            if (diary.isEmpty()) days.remove(slot.doctorId());
+        } else {
+            diary.put(slot.date(), bits);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SlotIndex[appointments=" + byId.size() + ", doctors=" + days.size() + "]";
+    }
+}
@@ -1,11 +1,14 @@
 package utils;
 
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
 public class JSONHelper {
 	 /**
@@ -61,6 +64,46 @@ public class JSONHelper {
         return list;
     }
 
+    /**
+     * Read a JSON array of objects element by element, mapping and handing
+     * each one to {@code sink} before the next is parsed. Only one element is
+     * held in memory at a time, unlike {@link #parseArray}.
+     * @param <T>    target type
+     * @param in     reader positioned at the start of the array
+     * @param mapper callback to convert JSONObject to T
+     * @param sink   receives each mapped element in order
+     * @return number of elements read
+     * @throws JSONException if the text is not an array of objects
+     */
+    public static <T> int streamArray(Reader in, JSONMapper<T> mapper, Consumer<? super T> sink) throws JSONException {
+        JSONTokener tokener = new JSONTokener(in);
+        if (tokener.nextClean() != '[') {
+            throw tokener.syntaxError("A JSONArray text must start with '['");
+        }
+        if (tokener.nextClean() == ']') {
+            return 0;
+        }
+        tokener.back();
+
+        int count = 0;
+        while (true) {
+            Object value = tokener.nextValue();
+            if (!(value instanceof JSONObject)) {
+                throw tokener.syntaxError("Expected a JSON object in the array");
+            }
+            sink.accept(mapper.map((JSONObject) value));
+            count++;
+
+            char c = tokener.nextClean();
+            if (c == ']') {
+                return count;
+            }
+            if (c != ',') {
+                throw tokener.syntaxError("Expected a ',' or ']'");
+            }
+        }
+    }
+
     /**
      * Convert a list of JSONConvertible objects to a JSONArray.
      * @param list list of objects implementing JSONConvertible
@@ -0,0 +1,64 @@
+package services;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * In-memory H2 stand-in for the MySQL database, in MySQL mode, with the
+ * dump's tables and the keys after every migration. Used by the checks under
+ * test/ to run the server's SQL without a MySQL server.
+ */
+final class EmbeddedDatabase {
+
+    /** H2 copies of the dump's tables; status is a VARCHAR as H2 has no inline enum in MySQL mode. */
+    private static final String[] SCHEMA = {
+        "CREATE TABLE doctors (doctor_id INT AUTO_INCREMENT PRIMARY KEY, first_name VARCHAR(50) NOT NULL, "
+            + "last_name VARCHAR(50) NOT NULL, specialization VARCHAR(100), phone VARCHAR(15), email VARCHAR(100), "
+            + "password_hash VARCHAR(255) NOT NULL DEFAULT '')",
+        "CREATE TABLE patients (patient_id INT AUTO_INCREMENT PRIMARY KEY, first_name VARCHAR(50) NOT NULL, "
+            + "last_name VARCHAR(50) NOT NULL, phone VARCHAR(15), email VARCHAR(100), address TEXT, "
+            + "date_of_birth DATE, created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+            + "version INT NOT NULL DEFAULT 0)",
+        "CREATE TABLE appointments (appointment_id INT AUTO_INCREMENT PRIMARY KEY, patient_id INT, doctor_id INT, "
+            + "appointment_date DATE, appointment_time TIME, status VARCHAR(20) DEFAULT 'scheduled', notes TEXT, "
+            + "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+            + "updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3), "
+            + "version INT NOT NULL DEFAULT 0, "
+            + "slot_start INT GENERATED ALWAYS AS (CASE WHEN status = 'cancelled' THEN NULL "
+            + "ELSE (HOUR(appointment_time) * 60 + MINUTE(appointment_time)) / 30 END))",
+        "CREATE TABLE appointment_tombstones (appointment_id INT PRIMARY KEY, doctor_id INT, "
+            + "deleted_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3))",
+        // without migration 006's triggers; only the PHP API reads it
+        "CREATE TABLE doctor_day_load (doctor_id INT NOT NULL, appointment_date DATE NOT NULL, booked INT NOT NULL DEFAULT 0, "
+            + "PRIMARY KEY (doctor_id, appointment_date))",
+        // no rows and no triggers: every ETag lookup misses, so replies are never 304
+        "CREATE TABLE table_versions (table_name VARCHAR(64) PRIMARY KEY, version BIGINT NOT NULL DEFAULT 0)",
+        "CREATE INDEX patient_date_time ON appointments (patient_id, appointment_date, appointment_time, appointment_id)",
+        "CREATE UNIQUE INDEX doctor_slot ON appointments (doctor_id, appointment_date, slot_start)",
+        "CREATE INDEX updated_at ON appointments (updated_at)",
+        "CREATE INDEX doctor_date_time ON appointments (doctor_id, appointment_date, appointment_time, appointment_id)",
+        "CREATE INDEX status_date ON appointments (status, appointment_date, appointment_time, appointment_id)",
+        "CREATE INDEX date_time ON appointments (appointment_date, appointment_time, appointment_id)",
+        "CREATE INDEX deleted_at ON appointment_tombstones (deleted_at)",
+        "ALTER TABLE appointments ADD CONSTRAINT appointments_ibfk_1 FOREIGN KEY (patient_id) REFERENCES patients (patient_id)",
+        "ALTER TABLE appointments ADD CONSTRAINT appointments_ibfk_2 FOREIGN KEY (doctor_id) REFERENCES doctors (doctor_id)",
+    };
+
+    private EmbeddedDatabase() {
+    }
+
+    /** JDBC URL of the in-memory database {@code name}; it lives until the JVM exits. */
+    static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+
+    /** Create the tables and keys in an empty database. */
+    static void create(Connection c) throws SQLException {
+        try (Statement s = c.createStatement()) {
+            for (String ddl : SCHEMA) {
+                s.execute(ddl);
+            }
+        }
+    }
+}
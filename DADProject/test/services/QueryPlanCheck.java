@@ -0,0 +1,334 @@
+package services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Query plan regression check for the appointments SQL. Runs EXPLAIN on the
+ * queries {@link AppointmentsHandler} and appointments_api.php send and
+ * exits with status 1 when one reads the whole appointments table or sorts
+ * rows that an index (migrations/005) should hand over in order. The Java
+ * queries are built by the handler's own SQL builders and constants; the
+ * PHP ones are read out of appointments_api.php (-Dhospital.php.dir, default
+ * the working directory), so neither can drift from what is checked.
+ *
+ * By default it builds an embedded H2 database in MySQL mode with the
+ * dump's tables and keys, seeds it with a year of appointments and checks
+ * the plans there. H2's EXPLAIN only reports full scans reliably; whether a
+ * sort is avoided is decided by {@link #keyGivesOrder} instead, and the run
+ * says so. Pointed at MySQL with -Dhospital.plan.url (user and password
+ * from -Dhospital.db.user / .password) it only runs EXPLAIN, reading its
+ * type and Extra columns, and writes nothing; that run is the one to trust
+ * after a migration. mvn -P db-checks verify runs the embedded check.
+ *
+ * The unpaged list without filters reads every row by design and is not
+ * checked. Pending requests and the doctor load ranking are allowed to
+ * sort: they order by arrival or by a count, which no key can give while
+ * also serving the lookup, and sort only the few rows they match.
+ */
+public class QueryPlanCheck {
+
+    static final String EMBEDDED_URL = EmbeddedDatabase.url("plans");
+
+    static final int DOCTORS = 30;
+    static final int PATIENTS = 2_000;
+    static final int APPOINTMENTS = 20_000;
+    static final LocalDate SEED_DAY = LocalDate.of(2025, 6, 2);
+
+    /** A WHERE term fixing one column to a single value. */
+    private static final Pattern PINNED = Pattern.compile("(?:a\\.)?(\\w+) = \\?");
+    /** Tables whose full scans fail the check; doctors is small and scanning it is fine. */
+    private static final Pattern H2_SCAN = Pattern.compile("\\b(appointments|appointment_tombstones|doctor_day_load)\\.tableScan");
+
+    private static final String[] SPECIALIZATIONS = {"Cardiology", "Neurology", "Orthopedics", "Pediatrics", "Dermatology"};
+
+    /** One statement as the backend sends it, with sample parameters. */
+    record Query(String name, String sql, boolean sortAllowed, Object... params) {
+        static Query of(String name, String sql, Object... params) {
+            return new Query(name, sql, false, params);
+        }
+
+        static Query sorting(String name, String sql, Object... params) {
+            return new Query(name, sql, true, params);
+        }
+    }
+
+    /** The list query AppointmentsHandler builds for a GET with {@code rawQuery}. */
+    static Query list(String name, String rawQuery) {
+        List<Object> params = new ArrayList<>();
+        String sql = AppointmentsHandler.listSql(new ApiHandler.ApiRequest("GET", rawQuery), params);
+        return Query.of(name, sql, params.toArray());
+    }
+
+    /**
+     * The first statement {@code function} prepares in appointments_api.php,
+     * whitespace collapsed, with {@code $in} standing for {@code inList} ? marks.
+     */
+    static String php(String source, String function, int inList) {
+        int at = source.indexOf("function " + function + "(");
+        int start = at < 0 ? -1 : source.indexOf("prepare(\"", at);
+        if (start < 0) throw new IllegalStateException("No prepared statement in " + function + "()");
+        start += "prepare(\"".length();
+        String sql = source.substring(start, source.indexOf("\")", start)).replaceAll("\\s+", " ").trim();
+        return sql.replace("($in)", AppointmentsHandler.placeholders(inList));
+    }
+
+    static List<Query> queries() throws IOException {
+        Date day = Date.valueOf(SEED_DAY);
+        String from = day.toString();
+        String monthEnd = SEED_DAY.plusDays(29).toString();
+        Timestamp recent = Timestamp.valueOf(SEED_DAY.atStartOfDay());
+        String keyset = "after_date=" + from + "&after_time=09:00&after_id=1000";
+        String pending = AppointmentsHandler.SQL_PENDING;
+        String arrival = AppointmentsHandler.PENDING_ORDER;
+        Time nine = Time.valueOf(LocalTime.of(9, 0));
+
+        List<Query> q = new ArrayList<>();
+        // AppointmentsHandler
+        q.add(Query.of("get one", AppointmentsHandler.SQL_GET_ONE, 5));
+        q.add(list("list by doctor", "doctor_id=3"));
+        q.add(list("list by patient", "patient_id=42"));
+        q.add(list("list by status", "status=completed&limit=50"));
+        q.add(list("list by dates", "date_from=" + from + "&date_to=" + monthEnd));
+        q.add(list("list by status and dates", "status=scheduled&date_from=" + from + "&date_to=" + monthEnd));
+        q.add(list("list by doctor and dates", "doctor_id=3&date_from=" + from + "&date_to=" + monthEnd));
+        q.add(list("list by doctor and status", "doctor_id=3&status=scheduled"));
+        q.add(list("page", "limit=50&offset=100"));
+        q.add(list("keyset page", keyset + "&limit=50"));
+        q.add(list("keyset page by doctor", "doctor_id=3&" + keyset + "&limit=50"));
+        q.add(Query.of("changes", AppointmentsHandler.SQL_CHANGED, recent.getTime()));
+        q.add(Query.of("deleted", AppointmentsHandler.SQL_DELETED, recent.getTime()));
+        q.add(Query.of("slot catch-up", AppointmentsHandler.SQL_SLOTS_CHANGED, recent.getTime()));
+        q.add(Query.of("version", AppointmentsHandler.SQL_GET_VERSION, 5));
+        q.add(Query.sorting("pending by doctor", pending + AppointmentsHandler.PENDING_BY_DOCTOR + arrival, 3));
+        q.add(Query.sorting("pending by specialization",
+            pending + AppointmentsHandler.PENDING_BY_SPECIALIZATION + arrival, "Cardiology"));
+        q.add(Query.sorting("pending by ids",
+            pending + "AND a.appointment_id IN " + AppointmentsHandler.placeholders(4) + " " + arrival,
+            7, 70, 700, 7000));
+        q.add(Query.of("assign", AppointmentsHandler.SQL_ASSIGN, day, nine, 5));
+        q.add(Query.of("update", AppointmentsHandler.SQL_UPDATE, 1, 3, day, nine, "scheduled", "", 5));
+        q.add(Query.of("delete", AppointmentsHandler.SQL_DELETE, 5));
+        q.add(Query.of("purge tombstones", AppointmentsHandler.SQL_PURGE_TOMBSTONES, recent));
+
+        // appointments_api.php
+        String api = Files.readString(Path.of(System.getProperty("hospital.php.dir", "."), "appointments_api.php"));
+        q.add(Query.of("php slots", php(api, "getAppointmentSlots", 0), 3, day));
+        q.add(Query.of("php availability", php(api, "getAppointmentAvailability", 0), 3, day, day));
+        q.add(Query.of("php booked masks", php(api, "bookedMasks", 2), 1, 4, day));
+        q.add(Query.sorting("php doctor load", php(api, "createBySpecialization", 0),
+            day, Date.valueOf(SEED_DAY.plusDays(13)), "Cardiology"));
+        return q;
+    }
+
+    /** What EXPLAIN said about one query. */
+    record Verdict(List<String> problems, boolean sortByHeuristic) {
+    }
+
+    /** Problems with {@code query}'s plan, none when it is fine. */
+    static Verdict check(Connection c, Query query) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        boolean heuristic = false;
+        boolean h2 = c.getMetaData().getDatabaseProductName().startsWith("H2");
+        try (PreparedStatement ps = c.prepareStatement("EXPLAIN " + query.sql())) {
+            for (int i = 0; i < query.params().length; i++) {
+                ps.setObject(i + 1, query.params()[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                if (h2) {
+                    // one row holding the plan as annotated SQL
+                    String plan = rs.next() ? rs.getString(1) : "";
+                    // the select list says nothing about access paths
+                    plan = plan.substring(Math.max(0, plan.indexOf("\nFROM ") + 1));
+                    if (H2_SCAN.matcher(plan).find()) problems.add("full scan\n" + plan);
+                    if (!query.sortAllowed() && query.sql().contains("ORDER BY") && !plan.contains("index sorted")) {
+                        heuristic = true;
+                        if (!keyGivesOrder(c, query.sql())) problems.add("sort\n" + plan);
+                    }
+                } else {
+                    // one row per table: type ALL is a full scan
+                    while (rs.next()) {
+                        String table = rs.getString("table");
+                        String type = rs.getString("type");
+                        String extra = rs.getString("Extra");
+                        String row = table + " type=" + type + " key=" + rs.getString("key") + " extra=" + extra;
+                        if ("ALL".equals(type) && isChecked(table)) problems.add("full scan: " + row);
+                        if (!query.sortAllowed() && extra != null && extra.contains("Using filesort")) {
+                            problems.add("filesort: " + row);
+                        }
+                    }
+                }
+            }
+        }
+        return new Verdict(problems, heuristic);
+    }
+
+    /**
+     * H2 neither skips key columns pinned by "col = ?" when matching an
+     * ORDER BY nor picks a key for the order it gives, so on H2 a sort
+     * counts as avoided when some key of appointments yields the ORDER BY
+     * once the columns the WHERE pins are skipped, which is what MySQL's
+     * optimizer does with the same keys.
+     */
+    static boolean keyGivesOrder(Connection c, String sql) throws SQLException {
+        int orderAt = sql.indexOf("ORDER BY ");
+        int whereAt = sql.indexOf("WHERE ");
+        Set<String> pinned = new HashSet<>();
+        if (whereAt >= 0 && whereAt < orderAt) {
+            for (String term : topLevelTerms(sql.substring(whereAt + 6, orderAt))) {
+                Matcher m = PINNED.matcher(term.trim());
+                if (m.matches()) pinned.add(m.group(1));
+            }
+        }
+        List<String> order = new ArrayList<>();
+        String orderBy = sql.substring(orderAt + 9).split(" LIMIT ")[0].trim();
+        for (String column : orderBy.split(",")) {
+            order.add(column.trim().replaceFirst("^a\\.", ""));
+        }
+
+        Map<String, List<String>> keys = new LinkedHashMap<>();
+        try (Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery("SELECT index_name, column_name FROM information_schema.index_columns "
+                 + "WHERE table_name = 'appointments' ORDER BY index_name, ordinal_position")) {
+            while (rs.next()) {
+                keys.computeIfAbsent(rs.getString(1), k -> new ArrayList<>()).add(rs.getString(2).toLowerCase(Locale.ROOT));
+            }
+        }
+        for (List<String> columns : keys.values()) {
+            int skip = 0;
+            while (skip < columns.size() && pinned.contains(columns.get(skip))) skip++;
+            List<String> rest = columns.subList(skip, columns.size());
+            if (rest.size() >= order.size() && rest.subList(0, order.size()).equals(order)) return true;
+        }
+        return false;
+    }
+
+    /** The AND-ed terms of a WHERE clause, leaving ANDs inside parentheses alone. */
+    private static List<String> topLevelTerms(String where) {
+        List<String> terms = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < where.length(); i++) {
+            char ch = where.charAt(i);
+            if (ch == '(') depth++;
+            else if (ch == ')') depth--;
+            else if (depth == 0 && where.startsWith(" AND ", i)) {
+                terms.add(where.substring(start, i));
+                start = i + 5;
+            }
+        }
+        terms.add(where.substring(start));
+        return terms;
+    }
+
+    private static boolean isChecked(String table) {
+        String t = table == null ? "" : table.toLowerCase(Locale.ROOT);
+        return t.equals("a") || t.equals("l") || t.equals("appointments") || t.equals("appointment_tombstones")
+            || t.equals("doctor_day_load");
+    }
+
+    /** Build and seed the embedded database: doctors, patients and a year of appointments around SEED_DAY. */
+    static void seed(Connection c) throws SQLException {
+        EmbeddedDatabase.create(c);
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO doctors (first_name, last_name, specialization) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= DOCTORS; i++) {
+                ps.setString(1, "Doctor");
+                ps.setString(2, "No" + i);
+                ps.setString(3, SPECIALIZATIONS[i % SPECIALIZATIONS.length]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO patients (first_name, last_name) VALUES (?, ?)")) {
+            for (int i = 1; i <= PATIENTS; i++) {
+                ps.setString(1, "Patient");
+                ps.setString(2, "No" + i);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO appointments "
+                + "(patient_id, doctor_id, appointment_date, appointment_time, status, created_at, updated_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < APPOINTMENTS; i++) {
+                // n-th appointment of its doctor: a different day, or a later slot, each time
+                int n = i / DOCTORS;
+                LocalDate date = SEED_DAY.plusDays(n % 360 - 180);
+                LocalTime time = SlotIndex.DAY_START.plusMinutes((long) (n / 360) * SlotIndex.SLOT_MINUTES + i % 2 * 15);
+                boolean pending = i % 50 == 0;
+                ps.setInt(1, i % PATIENTS + 1);
+                ps.setInt(2, i % DOCTORS + 1);
+                ps.setDate(3, pending ? null : Date.valueOf(date));
+                ps.setTime(4, pending ? null : Time.valueOf(time));
+                ps.setString(5, i % 5 == 1 ? "cancelled" : date.isBefore(SEED_DAY) ? "completed" : "scheduled");
+                Timestamp written = Timestamp.valueOf(date.minusDays(7).atStartOfDay());
+                ps.setTimestamp(6, written);
+                ps.setTimestamp(7, written);
+                ps.addBatch();
+                if (i % 1000 == 999) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+        try (Statement s = c.createStatement()) {
+            // what migration 006's backfill writes
+            s.execute("INSERT INTO doctor_day_load (doctor_id, appointment_date, booked) "
+                + "SELECT doctor_id, appointment_date, COUNT(*) FROM appointments "
+                + "WHERE doctor_id IS NOT NULL AND appointment_date IS NOT NULL AND slot_start IS NOT NULL "
+                + "GROUP BY doctor_id, appointment_date");
+            s.execute("ANALYZE");
+        }
+    }
+
+    public static void main(String[] args) throws SQLException, IOException {
+        String url = System.getProperty("hospital.plan.url", EMBEDDED_URL);
+        try (Connection c = DriverManager.getConnection(url,
+                System.getProperty("hospital.db.user", "root"), System.getProperty("hospital.db.password", ""))) {
+            if (url.equals(EMBEDDED_URL)) {
+                seed(c);
+            }
+            List<Query> queries = queries();
+            int failed = 0;
+            int guessed = 0;
+            for (Query query : queries) {
+                Verdict verdict = check(c, query);
+                List<String> problems = verdict.problems();
+                System.out.println((problems.isEmpty() ? "ok    " : "FAIL  ") + query.name()
+                    + (verdict.sortByHeuristic() ? "  (sort judged from the keys)" : ""));
+                for (String problem : problems) {
+                    System.out.println("      " + problem.replace("\n", "\n      "));
+                }
+                if (!problems.isEmpty()) failed++;
+                if (verdict.sortByHeuristic()) guessed++;
+            }
+            System.out.println(failed == 0 ? "All plans use an index"
+                : failed + " of " + queries.size() + " plans scan or sort");
+            if (guessed > 0) {
+                System.out.println(guessed + " sort verdict(s) come from matching the ORDER BY against the keys, "
+                    + "not from EXPLAIN; run with -Dhospital.plan.url against MySQL for the authoritative check");
+            }
+            if (failed > 0) System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package services;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.function.Predicate;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Smoke check of {@link AppointmentServer}: starts it on an empty
+ * {@link EmbeddedDatabase} and sends each route of appointments_api.php,
+ * patients_api.php and doctors_api.php one request, checking the status and
+ * the shape of the reply. Exits with status 1 when one is off.
+ * mvn -P db-checks verify runs it.
+ */
+public class ServerSmokeCheck {
+
+    private static final String DAY = "2030-01-07";
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final String base;
+    private int checks = 0;
+    private int failed = 0;
+
+    ServerSmokeCheck(int port) {
+        this.base = "http://localhost:" + port + AppointmentServer.CONTEXT + "/";
+    }
+
+    /**
+     * Send one request and check its reply; returns the parsed body (a
+     * JSONObject, JSONArray or Boolean), or null when the check failed.
+     */
+    Object call(String name, String method, String path, JSONObject body, int status, Predicate<Object> ok) {
+        checks++;
+        String text = null;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+                .header("Content-Type", "application/json")
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                    : HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            text = response.body();
+            Object json = new JSONTokener(text).nextValue();
+            if (response.statusCode() == status && ok.test(json)) {
+                System.out.println("ok    " + name);
+                return json;
+            }
+            System.out.println("FAIL  " + name + ": " + response.statusCode() + " " + text);
+        } catch (Exception e) {
+            System.out.println("FAIL  " + name + ": " + e + (text != null ? " " + text : ""));
+        }
+        failed++;
+        return null;
+    }
+
+    private static Predicate<Object> succeeded() {
+        return json -> json instanceof JSONObject o && o.optBoolean("success");
+    }
+
+    private static Predicate<Object> rows(int atLeast) {
+        return json -> json instanceof JSONArray a && a.length() >= atLeast;
+    }
+
+    private static Predicate<Object> row(String key, Object value) {
+        return json -> json instanceof JSONObject o && String.valueOf(value).equals(o.optString(key));
+    }
+
+    private static int id(Object reply, String key) {
+        return reply instanceof JSONObject o ? o.optInt(key) : 0;
+    }
+
+    void run() {
+        // doctors_api.php
+        JSONObject doctor = new JSONObject().put("firstName", "Aminah").put("lastName", "Yusof")
+            .put("email", "aminah@example.com").put("phone", "0123").put("specialization", "Cardiology");
+        int doctorId = id(call("POST doctor", "POST", "doctors_api.php", doctor, 200, succeeded()), "doctor_id");
+        call("POST second doctor", "POST", "doctors_api.php",
+            new JSONObject(doctor.toMap()).put("firstName", "Badrul").put("email", "badrul@example.com"),
+            200, succeeded());
+        call("GET doctors", "GET", "doctors_api.php", null, 200, rows(2));
+        call("GET doctor", "GET", "doctors_api.php/" + doctorId, null, 200, row("last_name", "Yusof"));
+        call("PUT doctor", "PUT", "doctors_api.php/" + doctorId, doctor.put("phone", "0456"), 200, succeeded());
+
+        // patients_api.php
+        JSONObject patient = new JSONObject().put("firstName", "Chong").put("lastName", "Wei")
+            .put("phone", "0789").put("email", "chong@example.com").put("address", "Ipoh").put("dateOfBirth", "1990-05-01");
+        int patientId = id(call("POST patient", "POST", "patients_api.php", patient, 200, succeeded()), "patient_id");
+        JSONArray batch = new JSONArray()
+            .put(new JSONObject(patient.toMap()).put("firstName", "Devi"))
+            .put(new JSONObject(patient.toMap()).put("firstName", "Elena"));
+        call("POST patients batch", "POST", "patients_api.php/batch", new JSONObject().put("patients", batch),
+            200, json -> json instanceof JSONObject o && o.optInt("inserted") == 2);
+        call("GET patients", "GET", "patients_api.php", null, 200, rows(3));
+        call("GET patients page", "GET", "patients_api.php?limit=2", null, 200,
+            json -> json instanceof JSONArray a && a.length() == 2);
+        call("GET patient", "GET", "patients_api.php/" + patientId, null, 200, row("first_name", "Chong"));
+        call("PUT patient", "PUT", "patients_api.php/" + patientId, patient.put("phone", "0790"), 200, succeeded());
+
+        // appointments_api.php
+        JSONObject booking = new JSONObject().put("patientId", patientId).put("doctorId", doctorId)
+            .put("appointmentDate", DAY).put("appointmentTime", "09:00").put("notes", "Checkup");
+        int appointmentId = id(call("POST appointment", "POST", "appointments_api.php", booking, 200, succeeded()),
+            "appointment_id");
+        call("POST appointment into a taken slot", "POST", "appointments_api.php", booking, 409,
+            json -> json instanceof JSONObject o && !o.optBoolean("success")
+                && AppointmentsHandler.REASON_SLOT.equals(o.optString("reason")));
+        call("POST appointment for an unknown patient", "POST", "appointments_api.php",
+            new JSONObject(booking.toMap()).put("patientId", 999_999).put("appointmentTime", "11:00"), 200,
+            json -> json instanceof JSONObject o && !o.optBoolean("success")
+                && !AppointmentsHandler.SLOT_TAKEN.equals(o.optString("error")));
+        int specializationId = id(call("POST appointment by specialization", "POST", "appointments_api.php",
+            new JSONObject().put("patientId", patientId).put("specialization", "Cardiology"), 200, succeeded()),
+            "appointment_id");
+        int pendingId = id(call("POST appointment request", "POST", "appointments_api.php",
+            new JSONObject().put("patientId", patientId).put("doctorId", doctorId), 200, succeeded()), "appointment_id");
+        call("GET appointments", "GET", "appointments_api.php", null, 200, rows(3));
+        call("GET appointments page", "GET", "appointments_api.php?doctor_id=" + doctorId + "&limit=10", null, 200,
+            rows(2));
+        Object one = call("GET appointment", "GET", "appointments_api.php/" + appointmentId, null, 200,
+            row("appointment_id", appointmentId));
+        call("GET slots", "GET", "appointments_api.php/slots?doctor_id=" + doctorId + "&date=" + DAY, null, 200,
+            json -> json instanceof JSONObject o && o.has("booked") && o.has("free"));
+        call("GET availability", "GET", "appointments_api.php/availability?doctor_id=" + doctorId + "&month="
+            + DAY.substring(0, 7), null, 200, succeeded());
+        Object token = call("GET changes token", "GET", "appointments_api.php/changes", null, 200, succeeded());
+
+        int version = one instanceof JSONObject o ? o.optInt("version") : 0;
+        call("PATCH appointment", "PATCH", "appointments_api.php/" + appointmentId,
+            new JSONObject().put("expectedVersion", version).put("notes", "Follow-up"), 200, succeeded());
+        call("PATCH appointment with a stale version", "PATCH", "appointments_api.php/" + appointmentId,
+            new JSONObject().put("expectedVersion", version).put("notes", "Lost"), 409,
+            json -> json instanceof JSONObject o && o.has("version")
+                && AppointmentsHandler.REASON_VERSION.equals(o.optString("reason")));
+        call("PUT appointment", "PUT", "appointments_api.php/" + appointmentId,
+            booking.put("appointmentTime", "10:00").put("status", "scheduled"), 200, succeeded());
+        call("PUT status", "PUT", "appointments_api.php/status",
+            new JSONObject().put("ids", new JSONArray().put(appointmentId)).put("status", "completed"), 200,
+            succeeded());
+        call("PUT allocate", "PUT", "appointments_api.php/allocate",
+            new JSONObject().put("ids", new JSONArray().put(pendingId)).put("from", DAY), 200,
+            json -> json instanceof JSONObject o && o.optJSONArray("assigned") != null
+                && o.getJSONArray("assigned").length() == 1);
+        call("DELETE appointment", "DELETE", "appointments_api.php/" + appointmentId, null, 200, succeeded());
+        long since = token instanceof JSONObject o ? o.optLong("token") : 0;
+        call("GET changes", "GET", "appointments_api.php/changes?since=" + since, null, 200,
+            json -> json instanceof JSONObject o && o.optJSONArray("deleted") != null
+                && o.getJSONArray("deleted").length() == 1);
+        call("DELETE appointment by specialization", "DELETE", "appointments_api.php/" + specializationId, null, 200,
+            succeeded());
+        call("DELETE appointment request", "DELETE", "appointments_api.php/" + pendingId, null, 200, succeeded());
+
+        call("DELETE patient", "DELETE", "patients_api.php/" + patientId, null, 200, succeeded());
+        call("DELETE doctor", "DELETE", "doctors_api.php/" + doctorId, null, 200, succeeded());
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = EmbeddedDatabase.url("smoke");
+        // held open so the in-memory database outlives the pool's connections
+        try (Connection keep = DriverManager.getConnection(url, "sa", "")) {
+            EmbeddedDatabase.create(keep);
+            AppointmentServer server = new AppointmentServer(0, new ConnectionPool(url, "sa", "", 4, 5_000L), 4);
+            server.start();
+            ServerSmokeCheck check = new ServerSmokeCheck(server.getPort());
+            try {
+                check.run();
+            } finally {
+                server.stop();
+            }
+            System.out.println(check.failed == 0 ? "All " + check.checks + " checks passed"
+                : check.failed + " of " + check.checks + " checks failed");
+            if (check.failed > 0) System.exit(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not create the embedded database", e);
+        }
+    }
+}